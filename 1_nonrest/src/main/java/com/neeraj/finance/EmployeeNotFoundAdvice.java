@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 // When an `EmployeeNotFoundException` is thrown, this extra tidbit of Spring MVC configuration is used to render an `HTTP 404`:
+//  the exception is created without a stack trace, since misses are routine and this 404 is all it is for.
 @ControllerAdvice
 class EmployeeNotFoundAdvice {
 
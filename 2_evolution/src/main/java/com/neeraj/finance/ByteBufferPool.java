@@ -0,0 +1,60 @@
+package com.neeraj.finance;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A pool of equally sized direct ByteBuffers.
+ *
+ * Direct buffers are expensive to allocate and are only freed by the GC, long after
+ * they went out of use, so they are worth keeping around. acquire() hands out an idle
+ * buffer if there is one and allocates a new one otherwise; release() returns it to
+ * the pool unless `maxPooled` are already idle, in which case it is left to the GC.
+ * The direct memory in use is thereby bounded by the peak number of buffers in use at
+ * once, not by the number of requests served.
+ *
+ * Every acquire() is counted in `<name>.buffers`, tagged with outcome reused or
+ * allocated; `<name>.buffers.idle` is the number of buffers waiting in the pool.
+ */
+class ByteBufferPool {
+
+	private final int bufferSize;
+	private final ArrayBlockingQueue<ByteBuffer> idle;
+
+	private final Counter reused;
+	private final Counter allocated;
+
+	ByteBufferPool(String name, int bufferSize, int maxPooled, MeterRegistry meterRegistry) {
+
+		this.bufferSize = bufferSize;
+		this.idle = new ArrayBlockingQueue<>(maxPooled);
+
+		this.reused = Counter.builder(name + ".buffers").tag("outcome", "reused").register(meterRegistry);
+		this.allocated = Counter.builder(name + ".buffers").tag("outcome", "allocated").register(meterRegistry);
+		Gauge.builder(name + ".buffers.idle", idle, ArrayBlockingQueue::size).register(meterRegistry);
+	}
+
+	ByteBuffer acquire() {
+
+		ByteBuffer buffer = idle.poll();
+		if (buffer != null) {
+			reused.increment();
+			return buffer;
+		}
+
+		allocated.increment();
+		return ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	void release(ByteBuffer buffer) {
+
+		// Through Buffer, whose clear() Java 8 has; ByteBuffer's own only came in 9.
+		((Buffer) buffer).clear();
+		idle.offer(buffer);
+	}
+}
@@ -0,0 +1,36 @@
+package com.neeraj.finance;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ The in-process caches (and the read coalescing) that sit in front of the
+ EmployeeRepository. Each one listens to the ClusterInvalidations, so it is also cleared
+ when another node changes an employee.
+*/
+@Configuration
+class CacheConfiguration {
+
+	@Bean
+	NegativeLookupCache employeeMisses(MeterRegistry meterRegistry, ClusterInvalidations invalidations,
+			@Value("${finance.employees.miss-cache.size:4096}") int size,
+			@Value("${finance.employees.miss-cache.ttl-ms:5000}") long ttlMillis) {
+
+		NegativeLookupCache employeeMisses = new NegativeLookupCache("employees", size, ttlMillis, meterRegistry);
+		invalidations.register(ClusterInvalidations.EMPLOYEES, employeeMisses::invalidate);
+		return employeeMisses;
+	}
+
+	@Bean
+	SingleFlight<String, byte[]> employeeReads(MeterRegistry meterRegistry, ClusterInvalidations invalidations,
+			@Value("${finance.employees.coalescing.enabled:true}") boolean enabled) {
+
+		SingleFlight<String, byte[]> employeeReads = new SingleFlight<>("employees.reads", enabled, meterRegistry);
+		invalidations.register(ClusterInvalidations.EMPLOYEES,
+				id -> employeeReads.forget(key -> key.contains(":" + id + ":") || key.contains(":all:")));
+		return employeeReads;
+	}
+}
@@ -0,0 +1,98 @@
+package com.neeraj.finance;
+
+import java.util.List;
+import java.util.TreeSet;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The change sequence behind delta sync (`GET /employees/changes`).
+ *
+ * Every save stamps the row with the next value of the `change_sequence` database
+ * sequence, so "what changed since X" is a range scan on an index instead of a full
+ * download. The database hands out increasing values (to every node sharing it), but
+ * transactions don't commit in that order: 11 may be visible while 10 is still in
+ * flight, and a client that moved its cursor past 11 would never see 10. So values
+ * taken inside a transaction are remembered until it completes, and readers only
+ * look up to horizon(), which stays below the oldest of them.
+ *
+ * Only this node's transactions are tracked. In a cluster another node's commit can
+ * still land behind a cursor, which is as long as that node's slowest transaction.
+ */
+@Component
+class ChangeSequence {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	// Guarded by `this`, values taken by transactions that haven't completed yet.
+	private final TreeSet<Long> inFlight = new TreeSet<>();
+
+	ChangeSequence(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@PostConstruct
+	void createSequence() {
+		jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS change_sequence");
+	}
+
+	long next() {
+		return next(1).get(0);
+	}
+
+	/**
+	 * `count` increasing values, held back from readers until the current transaction
+	 * (if any) completes.
+	 */
+	synchronized List<Long> next(int count) {
+
+		List<Long> values = jdbcTemplate.queryForList( //
+				"SELECT NEXT VALUE FOR change_sequence FROM SYSTEM_RANGE(1, ?)", Long.class, count);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			inFlight.addAll(values);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+				@Override
+				public void afterCompletion(int status) {
+					completed(values);
+				}
+			});
+		}
+
+		return values;
+	}
+
+	/**
+	 * The highest change that readers may see: every change up to it is either
+	 * committed or rolled back.
+	 *
+	 * With nothing in flight that is the last value handed out, not everything: a
+	 * transaction that takes a value after this returns can still commit behind one
+	 * that takes a later value, and the reader must not move past either. Read under
+	 * the lock, so no value of this node can be taken in between.
+	 */
+	synchronized long horizon() {
+		return inFlight.isEmpty() ? current() : inFlight.first() - 1;
+	}
+
+	/**
+	 * The last value handed out, to any node; its transaction may not have committed.
+	 */
+	long current() {
+
+		return jdbcTemplate.queryForObject(
+				"SELECT CURRENT_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'CHANGE_SEQUENCE'",
+				Long.class);
+	}
+
+	private synchronized void completed(List<Long> values) {
+		inFlight.removeAll(values);
+	}
+}
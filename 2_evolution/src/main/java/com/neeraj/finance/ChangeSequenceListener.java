@@ -0,0 +1,24 @@
+package com.neeraj.finance;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/*
+ * Stamps every employee JPA inserts or updates with the next change sequence value.
+ * Hibernate asks Spring for entity listeners, so the ChangeSequence is injected like
+ * into any other bean.
+ */
+class ChangeSequenceListener {
+
+	private final ChangeSequence changeSequence;
+
+	ChangeSequenceListener(ChangeSequence changeSequence) {
+		this.changeSequence = changeSequence;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void stamp(Employee employee) {
+		employee.setChangeSeq(changeSequence.next());
+	}
+}
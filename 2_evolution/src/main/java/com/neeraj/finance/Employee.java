@@ -3,11 +3,17 @@ package com.neeraj.finance;
 import java.util.Objects;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 
 // JPA annotation to make this object ready for storage in a JPA-based data store.
+// The index on changeSeq serves delta sync (see EmployeeChanges).
 @Entity
+@Table(indexes = @Index(name = "employee_change_seq", columnList = "changeSeq"))
+@EntityListeners(ChangeSequenceListener.class)
 class Employee {
 
 	// It’s the primary key and automatically populated by the JPA provider.
@@ -16,6 +22,9 @@ class Employee {
 	private String lastName;
 	private String role;
 
+	// Taken from the ChangeSequence on every insert and update.
+	private Long changeSeq;
+
 	Employee() {
 	}
 
@@ -45,6 +54,14 @@ class Employee {
 		return this.role;
 	}
 
+	public Long getChangeSeq() {
+		return this.changeSeq;
+	}
+
+	void setChangeSeq(Long changeSeq) {
+		this.changeSeq = changeSeq;
+	}
+
 	public void setId(Long id) {
 		this.id = id;
 	}
@@ -0,0 +1,102 @@
+package com.neeraj.finance;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/*
+ * Delta sync for the employee directory (GET /employees/changes).
+ *
+ * Saved employees carry the change sequence value of their last insert or update (see
+ * ChangeSequenceListener). A deleted employee has no row left to carry one, so
+ * delete() leaves a tombstone in EMPLOYEE_TOMBSTONE with the id and the change
+ * sequence value of the delete, in the same transaction. A page of changes is the
+ * employees and tombstones after the client's cursor, merged in change order.
+ *
+ * Tombstones are kept for good: a client that was offline for a year must still learn
+ * about the deletes it missed.
+ */
+@Component
+class EmployeeChanges {
+
+	private final EmployeeRepository repository;
+	private final ChangeSequence changeSequence;
+	private final JdbcTemplate jdbcTemplate;
+
+	EmployeeChanges(EmployeeRepository repository, ChangeSequence changeSequence, DataSource dataSource) {
+
+		this.repository = repository;
+		this.changeSequence = changeSequence;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@PostConstruct
+	void createTombstones() {
+
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS employee_tombstone (id BIGINT PRIMARY KEY, change_seq BIGINT NOT NULL)");
+		jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS employee_tombstone_change_seq ON employee_tombstone (change_seq)");
+	}
+
+	@Transactional
+	void delete(Long id) {
+
+		repository.deleteById(id);
+		jdbcTemplate.update("MERGE INTO employee_tombstone (id, change_seq) KEY (id) VALUES (?, ?)", id,
+				changeSequence.next());
+	}
+
+	/**
+	 * Up to `limit` changes after `since`, never past a change that hasn't committed.
+	 */
+	Page since(long since, int limit) {
+
+		long upTo = changeSequence.horizon();
+
+		List<Employee> employees = repository.findChanged(since, upTo, PageRequest.of(0, limit));
+		List<long[]> tombstones = jdbcTemplate.query( //
+				"SELECT id, change_seq FROM employee_tombstone WHERE change_seq > ? AND change_seq <= ?"
+						+ " ORDER BY change_seq LIMIT ?", //
+				(rs, rowNum) -> new long[] { rs.getLong("id"), rs.getLong("change_seq") }, since, upTo, limit);
+
+		// Merge both in change order and keep the first `limit`.
+		Page page = new Page();
+		page.next = since;
+		int e = 0;
+		int t = 0;
+		while (e + t < limit && (e < employees.size() || t < tombstones.size())) {
+			if (t == tombstones.size()
+					|| (e < employees.size() && employees.get(e).getChangeSeq() < tombstones.get(t)[1])) {
+				Employee employee = employees.get(e++);
+				page.changed.add(employee);
+				page.next = employee.getChangeSeq();
+			} else {
+				long[] tombstone = tombstones.get(t++);
+				page.deleted.add(tombstone[0]);
+				page.next = tombstone[1];
+			}
+		}
+
+		// An id that was deleted and then saved again only has its row left to show.
+		Set<Long> changedIds = new HashSet<>();
+		page.changed.forEach(employee -> changedIds.add(employee.getId()));
+		page.deleted.removeIf(changedIds::contains);
+
+		return page;
+	}
+
+	static class Page {
+
+		final List<Employee> changed = new ArrayList<>();
+		final List<Long> deleted = new ArrayList<>();
+		long next;
+	}
+}
@@ -0,0 +1,226 @@
+package com.neeraj.finance;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * The employee directory changes a few times a day but is read all the time, so
+ * instead of running the EmployeeModelAssembler and Jackson on every GET /employees
+ * we keep a materialized, already serialized HAL document around.
+ *
+ * 1. Every Employee is assembled into an EntityModel<Employee> exactly once and kept
+ *    in `models`. When the ClusterInvalidations report a new, replaced or deleted
+ *    employee (committed by this node's EmployeeController or by another node), its
+ *    id is noted, and the next reader re-reads and re-assembles (or drops) only that
+ *    entry. Assembling on the reader's request thread keeps the links absolute even
+ *    when the change arrived from another node.
+ * 2. After each change the collection is serialized once into a byte[] for the whole
+ *    collection plus one byte[] per page, and published as an immutable Snapshot.
+ * 3. Readers only grab the current Snapshot, so serving the collection is a plain
+ *    byte copy with no assembly or serialization.
+ *
+ * Writes that bypass the controller (LoadDatabase, a SQL console, ...) are not seen
+ * incrementally, so a snapshot older than `max-staleness-seconds` is thrown away and
+ * rebuilt from the repository on the next read. The age (time since that reload) and
+ * version of the snapshot being served are published as the `employees.cache.age` and
+ * `employees.cache.version` gauges and as `Age`/`ETag` headers on the response.
+ */
+@Component
+class EmployeeCollectionCache {
+
+	private final EmployeeRepository repository;
+	private final EmployeeModelAssembler assembler;
+	private final HalRenderer halRenderer;
+	private final int pageSize;
+	private final long maxStalenessMillis;
+
+	// Guarded by `this`, sorted by id so pages are stable.
+	private final Map<Long, EntityModel<Employee>> models = new TreeMap<>();
+	private final AtomicLong versions = new AtomicLong();
+
+	// Ids reported by employeeChanged() and not yet re-read.
+	private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+	private volatile Snapshot snapshot;
+
+	EmployeeCollectionCache(EmployeeRepository repository, EmployeeModelAssembler assembler, HalRenderer halRenderer,
+			ClusterInvalidations invalidations, MeterRegistry meterRegistry,
+			@Value("${finance.employees.cache.page-size:100}") int pageSize,
+			@Value("${finance.employees.cache.max-staleness-seconds:300}") long maxStalenessSeconds) {
+
+		this.repository = repository;
+		this.assembler = assembler;
+		this.pageSize = pageSize;
+		this.maxStalenessMillis = TimeUnit.SECONDS.toMillis(maxStalenessSeconds);
+
+		// Renders the same bytes all() used to produce from the model.
+		this.halRenderer = halRenderer;
+
+		invalidations.register(ClusterInvalidations.EMPLOYEES, this::employeeChanged);
+
+		Gauge.builder("employees.cache.age", this, cache -> cache.ageMillis(System.currentTimeMillis())) //
+				.description("Time since the /employees snapshot was last reloaded from the repository") //
+				.baseUnit("milliseconds") //
+				.register(meterRegistry);
+		Gauge.builder("employees.cache.version", this, cache -> cache.snapshot == null ? 0 : cache.snapshot.version) //
+				.description("Number of times the /employees snapshot has been rebuilt") //
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Returns the snapshot to serve, rebuilding it from the repository first if it is
+	 * missing or older than the staleness bound, or applying the employees changed
+	 * since it was published.
+	 */
+	Snapshot current() {
+
+		Snapshot current = this.snapshot;
+
+		if (current == null || current.ageMillis(System.currentTimeMillis()) > this.maxStalenessMillis) {
+			return reload();
+		}
+
+		if (!this.changed.isEmpty()) {
+			return applyChanges();
+		}
+
+		return current;
+	}
+
+	/**
+	 * Notes that one employee was saved or deleted.
+	 */
+	void employeeChanged(long id) {
+		this.changed.add(id);
+	}
+
+	private synchronized Snapshot applyChanges() {
+
+		// Another reader may have applied them while we were waiting for the lock.
+		if (this.changed.isEmpty()) {
+			return this.snapshot;
+		}
+
+		for (Iterator<Long> ids = this.changed.iterator(); ids.hasNext();) {
+			Long id = ids.next();
+			ids.remove();
+
+			Optional<Employee> employee = this.repository.findById(id);
+			if (employee.isPresent()) {
+				this.models.put(id, this.assembler.toModel(employee.get()));
+			} else {
+				this.models.remove(id);
+			}
+		}
+
+		return publish(this.snapshot.loadedAt);
+	}
+
+	private synchronized Snapshot reload() {
+
+		// Another reader may have reloaded while we were waiting for the lock.
+		Snapshot current = this.snapshot;
+		if (current != null && current.ageMillis(System.currentTimeMillis()) <= this.maxStalenessMillis) {
+			return current;
+		}
+
+		// Everything is read again, including whatever changed so far.
+		this.changed.clear();
+		this.models.clear();
+		this.repository.findAll().forEach(employee -> this.models.put(employee.getId(), this.assembler.toModel(employee)));
+
+		return publish(System.currentTimeMillis());
+	}
+
+	/*
+	 * Must be called while holding the lock on `this`. Incremental updates keep the
+	 * `loadedAt` of the last full reload: they only cover writes made through an
+	 * EmployeeController, so they don't reset the staleness clock.
+	 */
+	private Snapshot publish(long loadedAt) {
+
+		List<EntityModel<Employee>> all = new ArrayList<>(this.models.values());
+		int pageCount = Math.max(1, (all.size() + this.pageSize - 1) / this.pageSize);
+
+		List<byte[]> pages = new ArrayList<>(pageCount);
+		for (int page = 0; page < pageCount; page++) {
+
+			List<EntityModel<Employee>> content = all.subList(Math.min(all.size(), page * this.pageSize),
+					Math.min(all.size(), (page + 1) * this.pageSize));
+
+			List<Link> links = new ArrayList<>();
+			links.add(linkTo(methodOn(EmployeeController.class).page(page)).withSelfRel());
+			if (page > 0) {
+				links.add(linkTo(methodOn(EmployeeController.class).page(page - 1)).withRel(IanaLinkRelations.PREV));
+			}
+			if (page < pageCount - 1) {
+				links.add(linkTo(methodOn(EmployeeController.class).page(page + 1)).withRel(IanaLinkRelations.NEXT));
+			}
+
+			pages.add(serialize(CollectionModel.of(content, links)));
+		}
+
+		byte[] collection = serialize(
+				CollectionModel.of(all, linkTo(methodOn(EmployeeController.class).all()).withSelfRel()));
+
+		Snapshot published = new Snapshot(this.versions.incrementAndGet(), loadedAt, collection, pages);
+		this.snapshot = published;
+
+		return published;
+	}
+
+	private byte[] serialize(CollectionModel<EntityModel<Employee>> model) {
+
+		return this.halRenderer.render(model);
+	}
+
+	private long ageMillis(long now) {
+
+		Snapshot current = this.snapshot;
+		return current == null ? 0 : current.ageMillis(now);
+	}
+
+	/**
+	 * An immutable, fully serialized view of the employee collection.
+	 */
+	static class Snapshot {
+
+		final long version;
+		final long loadedAt;
+		final byte[] collection;
+		final List<byte[]> pages;
+
+		Snapshot(long version, long loadedAt, byte[] collection, List<byte[]> pages) {
+
+			this.version = version;
+			this.loadedAt = loadedAt;
+			this.collection = collection;
+			this.pages = Collections.unmodifiableList(pages);
+		}
+
+		long ageMillis(long now) {
+			return Math.max(0, now - this.loadedAt);
+		}
+	}
+}
@@ -2,12 +2,22 @@ package com.neeraj.finance;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,7 +25,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /*
  * This is a Spring MVC REST controller that actually produces hypermedia-powered content! 
@@ -29,14 +47,44 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 class EmployeeController {
 
+	// Ids one multi-get may ask for, and how many of them go into one IN list.
+	private static final int MAX_IDS = 1000;
+	private static final int IN_LIST_SIZE = 500;
+
+	// Changes one delta sync page may hold.
+	private static final int MAX_CHANGES = 10000;
+
 	private final EmployeeRepository repository;
 
 	private final EmployeeModelAssembler assembler;
 
+	private final EmployeeCollectionCache cache;
+
+	private final NegativeLookupCache employeeMisses;
+	private final EmployeeChanges changes;
+	private final ClusterInvalidations invalidations;
+	private final SingleFlight<String, byte[]> reads;
+	private final HalRenderer halRenderer;
+
+	// Pre-built writers for the plain JSON representation (see allAsJson()).
+	private final ObjectWriter employeeWriter;
+	private final ObjectWriter employeeListWriter;
+
 	// An EmployeeRepository is injected by constructor into the controller.
-	EmployeeController(EmployeeRepository repository, EmployeeModelAssembler assembler) {
+	EmployeeController(EmployeeRepository repository, EmployeeModelAssembler assembler, EmployeeCollectionCache cache,
+			NegativeLookupCache employeeMisses, EmployeeChanges changes, ClusterInvalidations invalidations,
+			SingleFlight<String, byte[]> employeeReads, HalRenderer halRenderer, ObjectMapper objectMapper) {
 		this.repository = repository;
 		this.assembler = assembler;
+		this.cache = cache;
+		this.employeeMisses = employeeMisses;
+		this.changes = changes;
+		this.invalidations = invalidations;
+		this.reads = employeeReads;
+		this.halRenderer = halRenderer;
+		this.employeeWriter = objectMapper.writerFor(Employee.class);
+		this.employeeListWriter = objectMapper.writerFor(new TypeReference<List<Employee>>() {
+		});
 	}
 
 	// Aggregate root
@@ -56,12 +104,152 @@ class EmployeeController {
 	 * into a list of EntityModel<Employee> objects. (Thanks Java 8 Stream API!)
 	 */
 	@GetMapping("/employees")
-	CollectionModel<EntityModel<Employee>> all() {
+	ResponseEntity<byte[]> all() {
+
+		/*
+		 * The CollectionModel described above is no longer assembled per request. The
+		 * EmployeeCollectionCache keeps it materialized and pre-serialized, so all we do
+		 * here is hand out the byte[] and tell the client how old it is.
+		 */
+		EmployeeCollectionCache.Snapshot snapshot = cache.current();
+
+		return serialized(snapshot, snapshot.collection);
+	}
+
+	// The same collection, one pre-serialized page at a time.
+	@GetMapping(value = "/employees", params = "page")
+	ResponseEntity<byte[]> page(@RequestParam int page) {
+
+		EmployeeCollectionCache.Snapshot snapshot = cache.current();
+
+		if (page < 0 || page >= snapshot.pages.size()) {
+			return ResponseEntity.notFound().build();
+		}
+
+		return serialized(snapshot, snapshot.pages.get(page));
+	}
+
+	/*
+	 * Several employees at once, `GET /employees?ids=3,1,2`: one IN query (per
+	 * IN_LIST_SIZE ids) instead of a round trip per id. They are rendered in the order
+	 * they were asked for, and ids nobody has are listed under `missing` instead of
+	 * answering 404.
+	 */
+	@GetMapping(value = "/employees", params = "ids")
+	ResponseEntity<byte[]> some(@RequestParam List<Long> ids) {
+
+		Set<Long> requested = new LinkedHashSet<>(ids);
+		requested.remove(null);
+
+		if (requested.size() > MAX_IDS) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"At most " + MAX_IDS + " ids can be fetched at once, got " + requested.size());
+		}
+
+		String baseUri = ServletUriComponentsBuilder.fromCurrentContextPath().toUriString();
+		String key = "hal:" + requested.stream().map(String::valueOf).collect(Collectors.joining(":", "ids:", ":"))
+				+ baseUri;
+
+		byte[] body = reads.load(key, () -> halRenderer.render(findEmployees(requested)));
+
+		return ResponseEntity.ok() //
+				.contentType(MediaTypes.HAL_JSON) //
+				.body(body);
+	}
+
+	private MultiGetModel<EntityModel<Employee>> findEmployees(Set<Long> ids) {
+
+		List<Long> wanted = new ArrayList<>(ids);
+		Map<Long, Employee> found = new HashMap<>();
+		for (int from = 0; from < wanted.size(); from += IN_LIST_SIZE) {
+			repository.findAllById(wanted.subList(from, Math.min(wanted.size(), from + IN_LIST_SIZE)))
+					.forEach(employee -> found.put(employee.getId(), employee));
+		}
+
+		List<EntityModel<Employee>> employees = new ArrayList<>(ids.size());
+		List<Long> missing = new ArrayList<>();
+		for (Long id : ids) {
+			if (found.containsKey(id)) {
+				employees.add(assembler.toModel(found.get(id)));
+			} else {
+				missing.add(id);
+			}
+		}
+
+		// The self link lists the ids the way they're documented, `ids=3,1,2`.
+		String self = linkTo(methodOn(EmployeeController.class).all()).toUriComponentsBuilder() //
+				.queryParam("ids", ids.stream().map(String::valueOf).collect(Collectors.joining(","))) //
+				.toUriString();
+
+		return new MultiGetModel<>(employees, missing, Link.of(self).withSelfRel());
+	}
+
+	/*
+	 * Delta sync for clients that keep a local copy of the directory: the employees
+	 * saved after change sequence `since` (0 for everything) in their current state,
+	 * plus the ids deleted since then, at most `limit` changes in all. Pass the
+	 * returned `next` as `since` to continue; an empty page means the client is up to
+	 * date. Both come from indexes on the change sequence, so this costs what changed,
+	 * not the size of the directory.
+	 */
+	@GetMapping("/employees/changes")
+	ChangeSetModel<EntityModel<Employee>> changes(@RequestParam(defaultValue = "0") long since,
+			@RequestParam(defaultValue = "1000") int limit) {
+
+		if (limit < 1 || limit > MAX_CHANGES) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Invalid limit " + limit + ", use 1 to " + MAX_CHANGES);
+		}
+
+		EmployeeChanges.Page page = changes.since(since, limit);
+
+		return new ChangeSetModel<>(page.changed.stream().map(assembler::toModel).collect(Collectors.toList()),
+				page.deleted, page.next, //
+				linkTo(methodOn(EmployeeController.class).changes(since, limit)).withSelfRel(), //
+				linkTo(methodOn(EmployeeController.class).changes(page.next, limit)).withRel(IanaLinkRelations.NEXT));
+	}
+
+	private static ResponseEntity<byte[]> serialized(EmployeeCollectionCache.Snapshot snapshot, byte[] body) {
+
+		return ResponseEntity.ok() //
+				.contentType(MediaTypes.HAL_JSON) //
+				.eTag("\"" + snapshot.version + "\"") //
+				.header(HttpHeaders.AGE, Long.toString(snapshot.ageMillis(System.currentTimeMillis()) / 1000)) //
+				.body(body);
+	}
+
+	/*
+	 * Service-to-service callers that don't need hypermedia can ask for plain
+	 * application/json. HAL stays the default for everybody else, but for them the
+	 * EmployeeModelAssembler is skipped entirely and the entities are written with a
+	 * pre-built Jackson ObjectWriter, like the 1_nonrest version of this controller
+	 * returned them.
+	 */
+	@GetMapping(value = "/employees", produces = MediaType.APPLICATION_JSON_VALUE)
+	ResponseEntity<byte[]> allAsJson() {
+		return json(reads.load("json:all:", () -> write(employeeListWriter, repository.findAll())));
+	}
+
+	@GetMapping(value = "/employees/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+	ResponseEntity<byte[]> oneAsJson(@PathVariable Long id) {
+
+		return json(reads.load("json:" + id + ":", () -> write(employeeWriter, findEmployee(id))));
+	}
 
-		List<EntityModel<Employee>> employees = repository.findAll().stream().map(assembler::toModel)
-				.collect(Collectors.toList());
+	private static ResponseEntity<byte[]> json(byte[] body) {
 
-		return CollectionModel.of(employees, linkTo(methodOn(EmployeeController.class).all()).withSelfRel());
+		return ResponseEntity.ok() //
+				.contentType(MediaType.APPLICATION_JSON) //
+				.body(body);
+	}
+
+	private static byte[] write(ObjectWriter writer, Object value) {
+
+		try {
+			return writer.writeValueAsBytes(value);
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	@PostMapping("/employees")
@@ -69,7 +257,10 @@ class EmployeeController {
 
 		// After saving the new Employee object, the resulting object is wrapped using
 		// the EmployeeModelAssembler.
-		EntityModel<Employee> entityModel = assembler.toModel(repository.save(newEmployee));
+		Employee savedEmployee = repository.save(newEmployee);
+		invalidations.invalidate(ClusterInvalidations.EMPLOYEES, savedEmployee.getId());
+
+		EntityModel<Employee> entityModel = assembler.toModel(savedEmployee);
 
 		/*
 		 * Spring MVC’s ResponseEntity is used to create an HTTP 201 Created status
@@ -97,13 +288,32 @@ class EmployeeController {
 	 * only the data but a collection of links.
 	 */
 	@GetMapping("/employees/{id}")
-	EntityModel<Employee> one(@PathVariable Long id) {
-		// `EmployeeNotFoundException` is an exception used to indicate when an employee
-		// is looked up but not found.
-		Employee employee = repository.findById(id) //
-				.orElseThrow(() -> new EmployeeNotFoundException(id));
+	ResponseEntity<byte[]> one(@PathVariable Long id) {
+
+		/*
+		 * Concurrent requests for the same employee share one lookup, assembly and
+		 * serialization through the `reads` SingleFlight. The links depend on the
+		 * request's base URI, so that is part of the key.
+		 */
+		String baseUri = ServletUriComponentsBuilder.fromCurrentContextPath().toUriString();
 
-		return assembler.toModel(employee);
+		byte[] body = reads.load("hal:" + id + ":" + baseUri,
+				() -> halRenderer.render(assembler.toModel(findEmployee(id))));
+
+		return ResponseEntity.ok() //
+				.contentType(MediaTypes.HAL_JSON) //
+				.body(body);
+	}
+
+	/*
+	 * `EmployeeNotFoundException` is an exception used to indicate when an employee is
+	 * looked up but not found. Ids that missed a moment ago are answered by the
+	 * NegativeLookupCache without going back to the database.
+	 */
+	private Employee findEmployee(Long id) {
+
+		return employeeMisses.find(id, repository::findById) //
+				.orElseThrow(() -> new EmployeeNotFoundException(id));
 	}
 
 	/*
@@ -124,6 +334,7 @@ class EmployeeController {
 					newEmployee.setId(id);
 					return repository.save(newEmployee);
 				});
+		invalidations.invalidate(ClusterInvalidations.EMPLOYEES, updatedEmployee.getId());
 
 		EntityModel<Employee> entityModel = assembler.toModel(updatedEmployee);
 
@@ -134,8 +345,10 @@ class EmployeeController {
 
 	@DeleteMapping("/employees/{id}")
 	ResponseEntity<?> deleteEmployee(@PathVariable Long id) {
-		repository.deleteById(id);
-		
+		// Leaves a tombstone for delta sync clients.
+		changes.delete(id);
+		invalidations.invalidate(ClusterInvalidations.EMPLOYEES, id);
+
 		// returns an HTTP 204 No Content response
 		return ResponseEntity.noContent().build();
 	}
@@ -1,19 +1,28 @@
 package com.neeraj.finance;
 
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.mediatype.problem.Problem;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.bind.annotation.ResponseBody;
-import org.springframework.web.bind.annotation.ResponseStatus;
 
-// When an `EmployeeNotFoundException` is thrown, this extra tidbit of Spring MVC configuration is used to render an `HTTP 404`:
+// When an `EmployeeNotFoundException` is thrown, this extra tidbit of Spring MVC configuration is used to render an `HTTP 404`
+//  with an RFC-7807 Problem body (application/problem+json), a hypermedia-supporting error container.
+//  That 404 is all the exception is for, and misses are routine, so it is created without a stack trace.
 @ControllerAdvice
 class EmployeeNotFoundAdvice {
 
-	@ResponseBody //signals that this advice is rendered straight into the response body.
 	@ExceptionHandler(EmployeeNotFoundException.class) // configures the advice to only respond if an EmployeeNotFoundException is thrown.
-	@ResponseStatus(HttpStatus.NOT_FOUND)
-	String employeeNotFoundHandler(EmployeeNotFoundException ex) {
-		return ex.getMessage();
+	ResponseEntity<Problem> employeeNotFoundHandler(EmployeeNotFoundException ex) {
+
+		return ResponseEntity //
+				.status(HttpStatus.NOT_FOUND) //
+				.header(HttpHeaders.CONTENT_TYPE, MediaTypes.HTTP_PROBLEM_DETAILS_JSON_VALUE) //
+				.body(Problem.create() //
+						.withStatus(HttpStatus.NOT_FOUND) //
+						.withTitle("Not found") //
+						.withDetail(ex.getMessage()));
 	}
 }
@@ -1,8 +1,9 @@
 package com.neeraj.finance;
 
+// Stackless, see EmployeeNotFoundAdvice.
 class EmployeeNotFoundException extends RuntimeException {
 
 	EmployeeNotFoundException(Long id) {
-		super("Could not find employee " + id);
+		super("Could not find employee " + id, null, false, false);
 	}
 }
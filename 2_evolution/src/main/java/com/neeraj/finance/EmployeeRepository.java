@@ -1,6 +1,10 @@
 package com.neeraj.finance;
 
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 /*This interface extends Spring Data JPA’s JpaRepository, specifying the domain type as `Employee` and the id type as `Long`. 
   This interface, though empty on the surface, packs a punch given it supports:
@@ -10,4 +14,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 	4. Finding (one, all, by simple or complex properties)*/
 public interface EmployeeRepository extends JpaRepository<Employee, Long> {
 
+	// Delta sync: employees whose change sequence is in (since, upTo], oldest change first.
+	@Query("select e from Employee e where e.changeSeq > ?1 and e.changeSeq <= ?2 order by e.changeSeq")
+	List<Employee> findChanged(long since, long upTo, Pageable page);
 }
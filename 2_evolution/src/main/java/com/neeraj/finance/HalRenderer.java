@@ -0,0 +1,52 @@
+package com.neeraj.finance;
+
+import java.io.UncheckedIOException;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.HalConfiguration;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DelegatingLinkRelationProvider;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Serializes representation models to application/hal+json bytes up front, for
+ * responses that are rendered once and handed to several requests.
+ *
+ * The ObjectMapper gets the same setup Spring HATEOAS applies to the one behind its
+ * own application/hal+json converter, so the bytes match what returning the model
+ * from a controller method would render.
+ */
+@Component
+class HalRenderer {
+
+	private final ObjectMapper halMapper;
+
+	HalRenderer(ObjectMapper objectMapper, DelegatingLinkRelationProvider relProvider,
+			MessageResolver messageResolver, ObjectProvider<HalConfiguration> halConfiguration) {
+
+		this.halMapper = objectMapper.copy();
+		this.halMapper.registerModule(new Jackson2HalModule());
+		this.halMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(relProvider,
+				CurieProvider.NONE, messageResolver, halConfiguration.getIfAvailable(HalConfiguration::new)));
+	}
+
+	// For callers that write several models into one document themselves.
+	ObjectMapper getObjectMapper() {
+		return halMapper;
+	}
+
+	byte[] render(RepresentationModel<?> model) {
+
+		try {
+			return halMapper.writeValueAsBytes(model);
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
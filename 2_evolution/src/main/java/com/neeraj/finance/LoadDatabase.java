@@ -20,6 +20,11 @@ public class LoadDatabase {
 	CommandLineRunner initDatabase(EmployeeRepository repository) {
 
 		return args -> {
+			// In clustered mode the database is shared, and only the first node seeds it.
+			if (repository.count() > 0) {
+				return;
+			}
+
 			log.info("Preloading " + repository.save(new Employee("Bilbo", "Baggins", "burglar")));
 			log.info("Preloading " + repository.save(new Employee("Frodo", "Baggins", "thief")));
 		};
@@ -0,0 +1,100 @@
+package com.neeraj.finance;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Remembers ids that were recently looked up and not found, so that clients probing
+ * random ids (scanners, stale bookmarks) don't turn every request into a database
+ * round trip.
+ *
+ * It is a fixed-size, direct-mapped table: each id hashes to one slot, a newer miss
+ * simply overwrites whatever was there, and entries expire after `ttlMillis`. Slots
+ * are replaced atomically, so lookups never take a lock. Whoever creates an entity
+ * must invalidate() its id; the short TTL bounds the damage of the (rare) race where
+ * a miss is recorded just after the entity was created.
+ *
+ * Every lookup is counted in `<name>.lookups`, tagged with `outcome` found, missed or
+ * cached-miss, which gives the miss rate.
+ */
+class NegativeLookupCache {
+
+	private static final class Miss {
+
+		final long id;
+		final long expiresAt;
+
+		Miss(long id, long expiresAt) {
+			this.id = id;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final AtomicReferenceArray<Miss> slots;
+	private final long ttlMillis;
+
+	private final Counter found;
+	private final Counter missed;
+	private final Counter cachedMisses;
+
+	NegativeLookupCache(String name, int size, long ttlMillis, MeterRegistry meterRegistry) {
+
+		this.slots = new AtomicReferenceArray<>(size);
+		this.ttlMillis = ttlMillis;
+
+		this.found = lookups(name, "found", meterRegistry);
+		this.missed = lookups(name, "missed", meterRegistry);
+		this.cachedMisses = lookups(name, "cached-miss", meterRegistry);
+	}
+
+	private static Counter lookups(String name, String outcome, MeterRegistry meterRegistry) {
+
+		return Counter.builder(name + ".lookups") //
+				.tag("outcome", outcome) //
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Answers from the cache if `id` missed recently, otherwise asks the `loader` and
+	 * remembers the id if it comes back empty.
+	 */
+	<T> Optional<T> find(Long id, Function<Long, Optional<T>> loader) {
+
+		int slot = slot(id);
+		Miss miss = slots.get(slot);
+
+		if (miss != null && miss.id == id && miss.expiresAt > System.currentTimeMillis()) {
+			cachedMisses.increment();
+			return Optional.empty();
+		}
+
+		Optional<T> result = loader.apply(id);
+
+		if (result.isPresent()) {
+			found.increment();
+		} else {
+			missed.increment();
+			slots.set(slot, new Miss(id, System.currentTimeMillis() + ttlMillis));
+		}
+
+		return result;
+	}
+
+	void invalidate(Long id) {
+
+		int slot = slot(id);
+		Miss miss = slots.get(slot);
+
+		if (miss != null && miss.id == id) {
+			slots.compareAndSet(slot, miss, null);
+		}
+	}
+
+	private int slot(long id) {
+		return Math.floorMod(Long.hashCode(id * 0x9E3779B97F4A7C15L), slots.length());
+	}
+}
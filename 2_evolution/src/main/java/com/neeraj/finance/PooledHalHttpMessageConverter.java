@@ -0,0 +1,155 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Writes representation models as HAL through pooled direct ByteBuffers.
+ *
+ * Spring HATEOAS's own converter streams Jackson's output into Tomcat's response
+ * buffer, which is copied once more into a temporary direct buffer on its way to the
+ * socket, and sends it chunked because the length isn't known up front. This one
+ * serializes the whole model into direct buffers taken from a ByteBufferPool first,
+ * sets Content-Length, and hands the buffers themselves to Tomcat: a full buffer
+ * written to an idle connection goes straight to the socket channel without being
+ * copied. Under any other servlet container (or a wrapped response) the buffers are
+ * copied out through a small array instead.
+ *
+ * The bytes are the ones HalRenderer produces, the same as the HATEOAS converter's.
+ */
+class PooledHalHttpMessageConverter extends AbstractHttpMessageConverter<RepresentationModel<?>> {
+
+	private static final int COPY_CHUNK = 8192;
+
+	private final ObjectWriter writer;
+	private final ByteBufferPool buffers;
+
+	PooledHalHttpMessageConverter(HalRenderer halRenderer, ByteBufferPool buffers) {
+
+		super(MediaTypes.HAL_JSON, MediaType.APPLICATION_JSON);
+
+		// The buffers are released by us, after they were written out.
+		this.writer = halRenderer.getObjectMapper().writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		this.buffers = buffers;
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return RepresentationModel.class.isAssignableFrom(clazz);
+	}
+
+	@Override
+	public boolean canRead(Class<?> clazz, MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	protected RepresentationModel<?> readInternal(Class<? extends RepresentationModel<?>> clazz,
+			HttpInputMessage inputMessage) {
+		throw new UnsupportedOperationException("Only writes representation models");
+	}
+
+	@Override
+	protected void writeInternal(RepresentationModel<?> model, HttpOutputMessage outputMessage) throws IOException {
+
+		try (BufferChain body = new BufferChain(buffers)) {
+
+			writer.writeValue(body, model);
+
+			outputMessage.getHeaders().setContentLength(body.size());
+			body.writeTo(outputMessage.getBody());
+		}
+	}
+
+	/**
+	 * An OutputStream that fills pooled buffers, acquiring another one whenever the
+	 * current one is full. close() returns them all to the pool.
+	 */
+	private static class BufferChain extends OutputStream {
+
+		private final ByteBufferPool pool;
+		private final List<ByteBuffer> chain = new ArrayList<>();
+
+		private ByteBuffer current;
+		private long size;
+
+		BufferChain(ByteBufferPool pool) {
+			this.pool = pool;
+		}
+
+		@Override
+		public void write(int b) {
+
+			next().put((byte) b);
+			size++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+
+			while (length > 0) {
+				ByteBuffer buffer = next();
+				int written = Math.min(length, buffer.remaining());
+				buffer.put(bytes, offset, written);
+				offset += written;
+				length -= written;
+				size += written;
+			}
+		}
+
+		private ByteBuffer next() {
+
+			if (current == null || !current.hasRemaining()) {
+				current = pool.acquire();
+				chain.add(current);
+			}
+			return current;
+		}
+
+		long size() {
+			return size;
+		}
+
+		void writeTo(OutputStream out) throws IOException {
+
+			byte[] copy = out instanceof CoyoteOutputStream ? null : new byte[COPY_CHUNK];
+
+			for (ByteBuffer buffer : chain) {
+				// Through Buffer, whose flip() Java 8 has; ByteBuffer's own only came in 9.
+				((Buffer) buffer).flip();
+				if (copy == null) {
+					((CoyoteOutputStream) out).write(buffer);
+					continue;
+				}
+				while (buffer.hasRemaining()) {
+					int length = Math.min(copy.length, buffer.remaining());
+					buffer.get(copy, 0, length);
+					out.write(copy, 0, length);
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+
+			chain.forEach(pool::release);
+			chain.clear();
+			current = null;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.neeraj.finance;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the number of order requests in flight, and lowers the cap when latency rises.
+ *
+ * Order requests spend most of their time waiting on the database, so the latency of
+ * admitted requests is used as the DB latency signal. A cached GET /orders/{id} and a
+ * full GET /orders differ by orders of magnitude, so latency is tracked per cost
+ * class (the token cost OrderAdmissionFilter charges), each compared only with
+ * itself: a short moving average of the last few requests against a long one of the
+ * last few hundred. Their ratio, the gradient, is 1 while the database keeps up and
+ * drops as queries start to queue. The limit follows `limit * gradient + sqrt(limit)`,
+ * so it shrinks when the database slows down and probes upwards again once it
+ * recovers. A database that stays slower becomes the long average, the new normal,
+ * instead of pinning the limit at `minLimit`.
+ */
+class AdaptiveConcurrencyLimiter {
+
+	private static final double SMOOTHING = 0.2;
+
+	// Moving averages over roughly this many requests of a cost class.
+	private static final int SHORT_WINDOW = 10;
+	private static final int LONG_WINDOW = 500;
+
+	// Short latency may run this much above long before the limit comes down, so that
+	// ordinary jitter doesn't shed load.
+	private static final double TOLERANCE = 1.5;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final int minLimit;
+	private final int maxLimit;
+
+	private volatile double limit;
+
+	// Guarded by `this`, by cost class.
+	private final Map<Integer, Latency> latencies = new HashMap<>();
+
+	private static class Latency {
+
+		double shortAverage;
+		double longAverage;
+	}
+
+	AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+	}
+
+	boolean tryAcquire() {
+
+		if (inFlight.incrementAndGet() > (int) limit) {
+			inFlight.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gives back the permit of a request of `cost` that took `latencyNanos`.
+	 */
+	void release(int cost, long latencyNanos) {
+
+		inFlight.decrementAndGet();
+		sample(cost, latencyNanos);
+	}
+
+	private synchronized void sample(int cost, long latencyNanos) {
+
+		Latency latency = latencies.get(cost);
+		if (latency == null) {
+			latency = new Latency();
+			latency.shortAverage = latencyNanos;
+			latency.longAverage = latencyNanos;
+			latencies.put(cost, latency);
+		}
+
+		latency.shortAverage += (latencyNanos - latency.shortAverage) * 2 / (SHORT_WINDOW + 1);
+		latency.longAverage += (latencyNanos - latency.longAverage) * 2 / (LONG_WINDOW + 1);
+
+		// After a slow spell the long average would take hundreds of requests to come
+		// back down, and the limit with it.
+		if (latency.longAverage > 2 * latency.shortAverage) {
+			latency.longAverage *= 0.95;
+		}
+
+		double gradient = Math.max(0.5,
+				Math.min(1.0, TOLERANCE * latency.longAverage / Math.max(1, latency.shortAverage)));
+		double target = limit * gradient + Math.sqrt(limit);
+
+		limit = Math.max(minLimit, Math.min(maxLimit, (1 - SMOOTHING) * limit + SMOOTHING * target));
+	}
+
+	int getLimit() {
+		return (int) limit;
+	}
+
+	int getInFlight() {
+		return inFlight.get();
+	}
+}
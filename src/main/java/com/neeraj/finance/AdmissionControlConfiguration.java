@@ -0,0 +1,72 @@
+package com.neeraj.finance;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ Opt-in (`finance.admission.enabled=true`) rate limiting and load shedding for the order endpoints.
+ The OrderAdmissionFilter is registered for /orders and everything below it only, and runs ahead of
+ the rest of the filter chain so rejected requests cost as little as possible. Clients get buckets of
+ their own by the `api-keys` we issued (comma-separated), any other client by its address.
+*/
+@Configuration
+@ConditionalOnProperty("finance.admission.enabled")
+class AdmissionControlConfiguration {
+
+	@Bean
+	TokenBucketRateLimiter orderRateLimiter(@Value("${finance.admission.rate:50}") double permitsPerSecond,
+			@Value("${finance.admission.burst:100}") int burst,
+			@Value("${finance.admission.max-clients:100000}") int maxClients, MeterRegistry meterRegistry) {
+
+		TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(permitsPerSecond, burst, maxClients);
+		Gauge.builder("orders.admission.clients", rateLimiter, TokenBucketRateLimiter::size).register(meterRegistry);
+		return rateLimiter;
+	}
+
+	@Bean
+	AdaptiveConcurrencyLimiter orderConcurrencyLimiter(@Value("${finance.admission.concurrency.initial:20}") int initial,
+			@Value("${finance.admission.concurrency.min:4}") int min,
+			@Value("${finance.admission.concurrency.max:200}") int max, MeterRegistry meterRegistry) {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initial, min, max);
+		Gauge.builder("orders.admission.limit", limiter, AdaptiveConcurrencyLimiter::getLimit).register(meterRegistry);
+		Gauge.builder("orders.admission.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+				.register(meterRegistry);
+		return limiter;
+	}
+
+	@Bean
+	FilterRegistrationBean<OrderAdmissionFilter> orderAdmissionFilter(TokenBucketRateLimiter rateLimiter,
+			AdaptiveConcurrencyLimiter concurrencyLimiter, MeterRegistry meterRegistry,
+			@Value("${finance.admission.api-keys:}") String[] apiKeys,
+			@Value("${finance.admission.cost.list:10}") int list,
+			@Value("${finance.admission.cost.export:50}") int export,
+			@Value("${finance.admission.cost.lookup:1}") int lookup,
+			@Value("${finance.admission.cost.create:2}") int create,
+			@Value("${finance.admission.cost.transition:2}") int transition) {
+
+		OrderAdmissionFilter.Costs costs = new OrderAdmissionFilter.Costs();
+		costs.list = list;
+		costs.export = export;
+		costs.lookup = lookup;
+		costs.create = create;
+		costs.transition = transition;
+
+		FilterRegistrationBean<OrderAdmissionFilter> registration = new FilterRegistrationBean<>(
+				new OrderAdmissionFilter(rateLimiter, concurrencyLimiter, costs,
+						new HashSet<>(Arrays.asList(apiKeys)), meterRegistry));
+		registration.addUrlPatterns("/orders", "/orders/*");
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+		return registration;
+	}
+}
@@ -0,0 +1,58 @@
+package com.neeraj.finance;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ The in-process caches (and the read coalescing) that sit in front of the OrderRepository
+ and the EmployeeRepository. Each one listens to the ClusterInvalidations, so it is also
+ cleared when another node changes an order or an employee.
+*/
+@Configuration
+class CacheConfiguration {
+
+	@Bean
+	NegativeLookupCache orderMisses(MeterRegistry meterRegistry, ClusterInvalidations invalidations,
+			@Value("${finance.orders.miss-cache.size:4096}") int size,
+			@Value("${finance.orders.miss-cache.ttl-ms:5000}") long ttlMillis) {
+
+		NegativeLookupCache orderMisses = new NegativeLookupCache("orders", size, ttlMillis, meterRegistry);
+		invalidations.register(ClusterInvalidations.ORDERS, orderMisses::invalidate);
+		return orderMisses;
+	}
+
+	@Bean
+	SingleFlight<String, byte[]> orderReads(MeterRegistry meterRegistry, ClusterInvalidations invalidations,
+			@Value("${finance.orders.coalescing.enabled:true}") boolean enabled) {
+
+		SingleFlight<String, byte[]> orderReads = new SingleFlight<>("orders.reads", enabled, meterRegistry);
+		invalidations.register(ClusterInvalidations.ORDERS,
+				id -> orderReads.forget(key -> key.contains(":" + id + ":") || key.contains(":all:")));
+		return orderReads;
+	}
+
+	@Bean
+	NegativeLookupCache employeeMisses(MeterRegistry meterRegistry, ClusterInvalidations invalidations,
+			@Value("${finance.employees.miss-cache.size:1024}") int size,
+			@Value("${finance.employees.miss-cache.ttl-ms:5000}") long ttlMillis) {
+
+		NegativeLookupCache employeeMisses = new NegativeLookupCache("employees", size, ttlMillis, meterRegistry);
+		invalidations.register(ClusterInvalidations.EMPLOYEES, employeeMisses::invalidate);
+		return employeeMisses;
+	}
+
+	// The orders of an employee change with every order written.
+	@Bean
+	SingleFlight<String, byte[]> employeeReads(MeterRegistry meterRegistry, ClusterInvalidations invalidations,
+			@Value("${finance.employees.coalescing.enabled:true}") boolean enabled) {
+
+		SingleFlight<String, byte[]> employeeReads = new SingleFlight<>("employees.reads", enabled, meterRegistry);
+		invalidations.register(ClusterInvalidations.EMPLOYEES,
+				id -> employeeReads.forget(key -> key.contains(":" + id + ":") || key.contains(":all:")));
+		invalidations.register(ClusterInvalidations.ORDERS, id -> employeeReads.forget(key -> key.contains(":orders:")));
+		return employeeReads;
+	}
+}
@@ -0,0 +1,30 @@
+package com.neeraj.finance;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/**
+ * Stamps every order and employee JPA inserts or updates with the next change
+ * sequence value.
+ *
+ * Hibernate asks Spring for entity listeners, so this one can have the
+ * ChangeSequence injected like any other bean. Writes made for a client are also
+ * reported to the ReadRouting, so that the client's next reads can wait for the
+ * replica to have them.
+ */
+class ChangeSequenceListener {
+
+	private final ChangeSequence changeSequence;
+
+	ChangeSequenceListener(ChangeSequence changeSequence) {
+		this.changeSequence = changeSequence;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void stamp(ChangeTracked entity) {
+		long change = changeSequence.next();
+		entity.setChangeSeq(change);
+		ReadRouting.wrote(change);
+	}
+}
@@ -0,0 +1,73 @@
+package com.neeraj.finance;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.Link;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One page of a delta sync: the entities created or changed since the client's
+ * cursor (in their current state, oldest change first), the ids deleted in the same
+ * range, and `next`, the cursor to ask from next time. Apply `deleted` after the
+ * changed entities.
+ *
+ * Like MultiGetModel, it keeps its own content rather than pass it to a deprecated
+ * CollectionModel constructor.
+ */
+class ChangeSetModel<T> extends CollectionModel<T> {
+
+	private final List<T> content;
+	private final long next;
+	private final List<Long> deleted;
+
+	ChangeSetModel(List<T> content, List<Long> deleted, long next, Link... links) {
+
+		this.content = Collections.unmodifiableList(content);
+		this.next = next;
+		this.deleted = Collections.unmodifiableList(deleted);
+		add(links);
+	}
+
+	@Override
+	public Collection<T> getContent() {
+		return content;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return content.iterator();
+	}
+
+	public long getNext() {
+		return next;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public List<Long> getDeleted() {
+		return deleted;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+
+		if (this == other) {
+			return true;
+		}
+		if (other == null || getClass() != other.getClass() || !super.equals(other)) {
+			return false;
+		}
+		ChangeSetModel<?> that = (ChangeSetModel<?>) other;
+		return content.equals(that.content) && next == that.next && deleted.equals(that.deleted);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(super.hashCode(), content, next, deleted);
+	}
+}
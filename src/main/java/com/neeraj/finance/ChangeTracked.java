@@ -0,0 +1,12 @@
+package com.neeraj.finance;
+
+/**
+ * An entity stamped with the change sequence on every insert and update (see
+ * ChangeSequenceListener).
+ */
+interface ChangeTracked {
+
+	Long getChangeSeq();
+
+	void setChangeSeq(Long changeSeq);
+}
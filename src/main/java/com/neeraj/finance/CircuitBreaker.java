@@ -0,0 +1,96 @@
+package com.neeraj.finance;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A circuit breaker around one dependency.
+ *
+ * It starts CLOSED and lets every call through. `failureThreshold` failures in a row
+ * OPEN it: calls are refused straight away for `openMillis`, instead of each one
+ * waiting for its own timeout. After that a single trial call is let through
+ * (HALF_OPEN) while the others are still refused; its success closes the breaker
+ * again, its failure opens it for another `openMillis`.
+ *
+ * The state is published as the gauge `<name>.circuit`: 0 closed, 1 half-open, 2
+ * open.
+ */
+class CircuitBreaker {
+
+	enum State {
+		CLOSED, HALF_OPEN, OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openMillis;
+
+	// Guarded by `this`.
+	private State state = State.CLOSED;
+	private int failures;
+	private long openedAt;
+
+	CircuitBreaker(String name, int failureThreshold, long openMillis, MeterRegistry meterRegistry) {
+
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+
+		Gauge.builder(name + ".circuit", this, breaker -> breaker.state().ordinal()) //
+				.description("0 closed, 1 half-open, 2 open") //
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Whether a call may go ahead now. A caller that gets true must report back with
+	 * onSuccess() or onFailure().
+	 */
+	synchronized boolean tryAcquire() {
+		return tryAcquire(System.currentTimeMillis());
+	}
+
+	synchronized boolean tryAcquire(long now) {
+
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (now - openedAt < openMillis) {
+				return false;
+			}
+			// This caller makes the trial call.
+			state = State.HALF_OPEN;
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	synchronized void onSuccess() {
+
+		state = State.CLOSED;
+		failures = 0;
+	}
+
+	synchronized void onFailure() {
+		onFailure(System.currentTimeMillis());
+	}
+
+	synchronized void onFailure(long now) {
+
+		failures++;
+		if (state == State.HALF_OPEN || failures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = now;
+		}
+	}
+
+	synchronized State state() {
+		return state;
+	}
+
+	/**
+	 * Roughly how long until the breaker lets a trial call through, for Retry-After.
+	 */
+	synchronized long millisUntilTrial() {
+		return state == State.OPEN ? Math.max(0, openedAt + openMillis - System.currentTimeMillis()) : 0;
+	}
+}
@@ -0,0 +1,188 @@
+package com.neeraj.finance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The one place in-process caches hear that an entity changed.
+ *
+ * Caches register a callback per name ("orders", ...), and writers call
+ * invalidate(name, id) instead of touching a cache directly. On a single node that
+ * is all there is. With `finance.cluster.enabled` every invalidation is also sent
+ * as a small UDP datagram (`name (UTF) | id (long)`) to each node listed in
+ * `finance.cluster.peers` (`host:port,...`), and datagrams arriving on
+ * `finance.cluster.port` are applied to the local callbacks the same way.
+ *
+ * Delivery is best effort on purpose: an invalidation is idempotent and every cache
+ * it feeds has its own TTL, so a lost datagram only means that one node serves a
+ * stale entry until it expires. Counts are published as `cluster.invalidations`,
+ * tagged with direction sent/received.
+ */
+@Component
+class ClusterInvalidations {
+
+	static final String ORDERS = "orders";
+	static final String EMPLOYEES = "employees";
+
+	private static final Logger log = LoggerFactory.getLogger(ClusterInvalidations.class);
+
+	private final boolean enabled;
+	private final int port;
+	private final List<InetSocketAddress> peers = new ArrayList<>();
+	private final Map<String, List<LongConsumer>> callbacks = new ConcurrentHashMap<>();
+	private final Map<String, List<LongConsumer>> remoteCallbacks = new ConcurrentHashMap<>();
+
+	private final Counter sent;
+	private final Counter received;
+
+	private DatagramSocket socket;
+	private Thread receiver;
+
+	ClusterInvalidations(@Value("${finance.cluster.enabled:false}") boolean enabled,
+			@Value("${finance.cluster.port:7600}") int port, @Value("${finance.cluster.peers:}") String peers,
+			MeterRegistry meterRegistry) {
+
+		this.enabled = enabled;
+		this.port = port;
+
+		for (String peer : peers.split(",")) {
+			if (!peer.trim().isEmpty()) {
+				String[] hostAndPort = peer.trim().split(":");
+				this.peers.add(new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+			}
+		}
+
+		this.sent = Counter.builder("cluster.invalidations").tag("direction", "sent").register(meterRegistry);
+		this.received = Counter.builder("cluster.invalidations").tag("direction", "received").register(meterRegistry);
+	}
+
+	@PostConstruct
+	void start() throws SocketException {
+
+		if (!enabled) {
+			return;
+		}
+
+		socket = new DatagramSocket(port);
+		receiver = new Thread(this::receive, "cluster-invalidations");
+		receiver.setDaemon(true);
+		receiver.start();
+
+		log.info("Sending invalidations to " + peers + ", listening on " + port);
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+
+		if (socket != null) {
+			socket.close();
+			receiver.join(1000);
+		}
+	}
+
+	void register(String name, LongConsumer callback) {
+		callbacks.computeIfAbsent(name, key -> new CopyOnWriteArrayList<>()).add(callback);
+	}
+
+	/**
+	 * Like register(), but only called for invalidations from other nodes, for
+	 * callers that already hear of this node's own changes some other way.
+	 */
+	void registerRemote(String name, LongConsumer callback) {
+		remoteCallbacks.computeIfAbsent(name, key -> new CopyOnWriteArrayList<>()).add(callback);
+	}
+
+	/**
+	 * Drops entity `id` from every `name` cache on this node and, in clustered mode,
+	 * on every peer.
+	 */
+	void invalidate(String name, long id) {
+
+		apply(name, id);
+
+		if (!enabled) {
+			return;
+		}
+
+		byte[] message = encode(name, id);
+		for (InetSocketAddress peer : peers) {
+			try {
+				socket.send(new DatagramPacket(message, message.length, peer));
+				sent.increment();
+			} catch (IOException e) {
+				log.warn("Could not send invalidation of " + name + " " + id + " to " + peer, e);
+			}
+		}
+	}
+
+	private void apply(String name, long id) {
+		apply(callbacks, name, id);
+	}
+
+	private static void apply(Map<String, List<LongConsumer>> callbacks, String name, long id) {
+
+		List<LongConsumer> registered = callbacks.get(name);
+		if (registered != null) {
+			registered.forEach(callback -> callback.accept(id));
+		}
+	}
+
+	private void receive() {
+
+		byte[] buffer = new byte[512];
+		while (!socket.isClosed()) {
+			DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+			try {
+				socket.receive(packet);
+				DataInputStream in = new DataInputStream(
+						new ByteArrayInputStream(packet.getData(), packet.getOffset(), packet.getLength()));
+				String name = in.readUTF();
+				long id = in.readLong();
+				apply(name, id);
+				apply(remoteCallbacks, name, id);
+				received.increment();
+			} catch (IOException | RuntimeException e) {
+				if (!socket.isClosed()) {
+					log.warn("Dropping an invalidation that could not be applied", e);
+				}
+			}
+		}
+	}
+
+	private static byte[] encode(String name, long id) {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeUTF(name);
+			out.writeLong(id);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,214 @@
+package com.neeraj.finance;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps a slow or stalled database from taking the request threads down with it.
+ *
+ * Repository calls go through read() or write(), named after the repository they
+ * use ("orders", "employees"), and each name has its own CircuitBreaker. Reads run
+ * on a small pool of `finance.database.threads` and the request thread waits at most
+ * `finance.database.timeout-ms` for them: a call that takes longer is abandoned (it
+ * finishes on the pool, nobody waits for it) and counts as a failure. When the pool
+ * itself is full of stalled calls, new ones are refused right away. Writes can't be
+ * abandoned halfway, so they stay on the request thread, in a transaction with a
+ * timeout of `finance.database.write-timeout-ms` (whole seconds, rounded up) that
+ * every statement in it is held to: the database cancels them and rolls back.
+ *
+ * Either way a failing database surfaces as a DatabaseUnavailableException, which
+ * callers answer from the LastKnownResponses or with 503. Outcomes are counted in
+ * `database.calls`, tagged with the name and success, failure, timeout or rejected.
+ */
+@Component
+class DatabaseGuard {
+
+	static final String ORDERS = "orders";
+	static final String EMPLOYEES = "employees";
+
+	private final long timeoutMillis;
+	private final int failureThreshold;
+	private final long openMillis;
+	private final MeterRegistry meterRegistry;
+	private final ThreadPoolExecutor pool;
+	private final TransactionTemplate writes;
+
+	private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	DatabaseGuard(MeterRegistry meterRegistry, PlatformTransactionManager transactionManager,
+			@Value("${finance.database.timeout-ms:1000}") long timeoutMillis,
+			@Value("${finance.database.write-timeout-ms:2000}") long writeTimeoutMillis,
+			@Value("${finance.database.failure-threshold:5}") int failureThreshold,
+			@Value("${finance.database.open-ms:5000}") long openMillis,
+			@Value("${finance.database.threads:16}") int threads) {
+
+		this.timeoutMillis = timeoutMillis;
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+		this.meterRegistry = meterRegistry;
+
+		this.writes = new TransactionTemplate(transactionManager);
+		this.writes.setTimeout((int) TimeUnit.MILLISECONDS.toSeconds(writeTimeoutMillis + 999));
+
+		AtomicInteger count = new AtomicInteger();
+		this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads), runnable -> {
+					Thread thread = new Thread(runnable, "database-guard-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	@PreDestroy
+	void stop() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Runs a query with the timeout. Whatever it loads is detached by the time it is
+	 * returned, so it must load everything the caller is going to touch. It sees the
+	 * caller's ReadRouting and current trace span.
+	 */
+	<T> T read(String name, Supplier<T> query) {
+
+		CircuitBreaker breaker = breaker(name);
+		if (!breaker.tryAcquire()) {
+			count(name, "rejected");
+			throw new DatabaseUnavailableException(name, breaker.millisUntilTrial(), null);
+		}
+
+		Future<T> future;
+		try {
+			future = pool.submit(Tracing.propagate(ReadRouting.propagate(query))::get);
+		} catch (RejectedExecutionException e) {
+			breaker.onFailure();
+			count(name, "rejected");
+			throw new DatabaseUnavailableException(name, breaker.millisUntilTrial(), e);
+		}
+
+		try {
+			T result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			breaker.onSuccess();
+			count(name, "success");
+			return result;
+		} catch (TimeoutException e) {
+			// Not interrupted: H2 closes its files when a thread is interrupted in the
+			// middle of I/O.
+			future.cancel(false);
+			breaker.onFailure();
+			count(name, "timeout");
+			throw new DatabaseUnavailableException(name, breaker.millisUntilTrial(), e);
+		} catch (ExecutionException e) {
+			throw failed(name, breaker, e.getCause());
+		} catch (InterruptedException e) {
+			// Reported all the same, a half-open breaker would otherwise wait forever for
+			// its trial call.
+			Thread.currentThread().interrupt();
+			breaker.onFailure();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Runs an update (or a lookup that is part of one) on the calling thread, in its
+	 * persistence context, within the write timeout. An update that is part of a
+	 * transaction the caller already began is held to that transaction's timeout.
+	 */
+	<T> T write(String name, Supplier<T> update) {
+
+		CircuitBreaker breaker = breaker(name);
+		if (!breaker.tryAcquire()) {
+			count(name, "rejected");
+			throw new DatabaseUnavailableException(name, breaker.millisUntilTrial(), null);
+		}
+
+		try {
+			T result = writes.execute(status -> update.get());
+			breaker.onSuccess();
+			count(name, "success");
+			return result;
+		} catch (TransactionSystemException e) {
+			// The pool closes a connection whose statement timed out, so the rollback
+			// fails too, and what went wrong first is what counts.
+			throw failed(name, breaker, e.getApplicationException() != null ? e.getApplicationException() : e);
+		} catch (RuntimeException e) {
+			throw failed(name, breaker, e);
+		}
+	}
+
+	/**
+	 * Only errors that say the database can't be reached or can't keep up count
+	 * against the breaker. Anything else, a constraint violation say, means the
+	 * database answered, and is rethrown as it is.
+	 */
+	private RuntimeException failed(String name, CircuitBreaker breaker, Throwable cause) {
+
+		if (isUnavailable(cause)) {
+			breaker.onFailure();
+			count(name, "failure");
+			return new DatabaseUnavailableException(name, breaker.millisUntilTrial(), cause);
+		}
+
+		breaker.onSuccess();
+		count(name, "success");
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new IllegalStateException(cause);
+	}
+
+	/**
+	 * Whether `cause` says the database can't be reached or can't keep up right now,
+	 * as opposed to rejecting what it was asked to do.
+	 */
+	static boolean isUnavailable(Throwable cause) {
+
+		return cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+				|| cause instanceof DataAccessResourceFailureException
+				|| cause instanceof NonTransientDataAccessResourceException
+				|| cause instanceof CannotCreateTransactionException || cause instanceof TransactionTimedOutException;
+	}
+
+	CircuitBreaker breaker(String name) {
+		return breakers.computeIfAbsent(name,
+				key -> new CircuitBreaker("database." + key, failureThreshold, openMillis, meterRegistry));
+	}
+
+	private void count(String name, String outcome) {
+
+		Counter.builder("database.calls") //
+				.tag("name", name) //
+				.tag("outcome", outcome) //
+				.register(meterRegistry) //
+				.increment();
+	}
+}
@@ -0,0 +1,28 @@
+package com.neeraj.finance;
+
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.mediatype.problem.Problem;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+// A DatabaseUnavailableException that no last known response could cover is rendered
+//  as an `HTTP 503` with an RFC-7807 Problem body, and a Retry-After of at least a second.
+@ControllerAdvice
+class DatabaseUnavailableAdvice {
+
+	@ExceptionHandler(DatabaseUnavailableException.class)
+	ResponseEntity<Problem> databaseUnavailableHandler(DatabaseUnavailableException ex) {
+
+		return ResponseEntity //
+				.status(HttpStatus.SERVICE_UNAVAILABLE) //
+				.header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (ex.getRetryAfterMillis() + 999) / 1000))) //
+				.header(HttpHeaders.CONTENT_TYPE, MediaTypes.HTTP_PROBLEM_DETAILS_JSON_VALUE) //
+				.body(Problem.create() //
+						.withStatus(HttpStatus.SERVICE_UNAVAILABLE) //
+						.withTitle("Service unavailable") //
+						.withDetail(ex.getMessage()));
+	}
+}
@@ -0,0 +1,23 @@
+package com.neeraj.finance;
+
+/*
+ Thrown by the DatabaseGuard when a repository call timed out, failed, or was refused
+ because its circuit breaker is open. `retryAfterMillis` is how long until the breaker
+ tries the database again (0 if it is not open).
+*/
+public class DatabaseUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long retryAfterMillis;
+
+	DatabaseUnavailableException(String name, long retryAfterMillis, Throwable cause) {
+
+		super("The " + name + " database is not available", cause);
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+}
@@ -0,0 +1,123 @@
+package com.neeraj.finance;
+
+import java.util.Objects;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * The employees orders are assigned to (see Order.getEmployeeId()).
+ *
+ * It is the same entity the employee service (1_nonrest, 2_evolution) manages, and
+ * so are its repository, assembler, controller and exception here. Those modules are
+ * separate applications with databases of their own, and an order can only be read
+ * with its employee in one query (a fetch join, see PartitionedOrderRepositoryImpl)
+ * if both tables are in the same database. So this application keeps its own copy
+ * of the employee table rather than call the employee service once per order.
+ * Changes are stamped with the change sequence like those of orders, which is how
+ * the ReplicaSync finds them.
+ */
+@Entity
+@Table(indexes = @Index(name = "employee_change_seq", columnList = "changeSeq"))
+@EntityListeners(ChangeSequenceListener.class)
+class Employee implements ChangeTracked {
+
+	private @Id @GeneratedValue Long id;
+	private String firstName;
+	private String lastName;
+	private String role;
+
+	// Taken from the ChangeSequence on every insert and update.
+	private Long changeSeq;
+
+	Employee() {
+	}
+
+	Employee(String firstName, String lastName, String role) {
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.role = role;
+	}
+
+	public Long getId() {
+		return this.id;
+	}
+
+	public String getName() {
+		return this.firstName + " " + this.lastName;
+	}
+
+	public String getFirstName() {
+		return this.firstName;
+	}
+
+	public String getLastName() {
+		return this.lastName;
+	}
+
+	public String getRole() {
+		return this.role;
+	}
+
+	@JsonIgnore
+	@Override
+	public Long getChangeSeq() {
+		return this.changeSeq;
+	}
+
+	@Override
+	public void setChangeSeq(Long changeSeq) {
+		this.changeSeq = changeSeq;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public void setName(String name) {
+		String[] parts = name.split(" ");
+		this.firstName = parts[0];
+		this.lastName = parts[1];
+	}
+
+	public void setFirstName(String firstName) {
+		this.firstName = firstName;
+	}
+
+	public void setLastName(String lastName) {
+		this.lastName = lastName;
+	}
+
+	public void setRole(String role) {
+		this.role = role;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+
+		if (this == o)
+			return true;
+		if (!(o instanceof Employee))
+			return false;
+		Employee employee = (Employee) o;
+		return Objects.equals(this.id, employee.id) && Objects.equals(this.firstName, employee.firstName)
+				&& Objects.equals(this.lastName, employee.lastName) && Objects.equals(this.role, employee.role);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.id, this.firstName, this.lastName, this.role);
+	}
+
+	@Override
+	public String toString() {
+		return "Employee{" + "id=" + this.id + ", firstName='" + this.firstName + '\'' + ", lastName='" + this.lastName
+				+ '\'' + ", role='" + this.role + '\'' + '}';
+	}
+}
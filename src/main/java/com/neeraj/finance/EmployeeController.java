@@ -0,0 +1,124 @@
+package com.neeraj.finance;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * The employees orders can be assigned to, and the orders each of them handles.
+ *
+ * Like OrderController, it goes to the database through the DatabaseGuard, coalesces
+ * concurrent reads of the same representation in the `employeeReads` SingleFlight,
+ * remembers unknown ids in the `employeeMisses` NegativeLookupCache, renders HAL up
+ * front and falls back on the LastKnownResponses while the database is unavailable.
+ */
+@RestController
+class EmployeeController {
+
+	private final EmployeeRepository repository;
+	private final EmployeeModelAssembler assembler;
+	private final OrderRepository orderRepository;
+	private final OrderModelAssembler orderAssembler;
+	private final DatabaseGuard database;
+	private final NegativeLookupCache employeeMisses;
+	private final SingleFlight<String, byte[]> reads;
+	private final ClusterInvalidations invalidations;
+	private final LastKnownResponses lastKnown;
+	private final HalRenderer halRenderer;
+
+	EmployeeController(EmployeeRepository repository, EmployeeModelAssembler assembler,
+			OrderRepository orderRepository, OrderModelAssembler orderAssembler, DatabaseGuard database,
+			NegativeLookupCache employeeMisses, SingleFlight<String, byte[]> employeeReads,
+			ClusterInvalidations invalidations, LastKnownResponses lastKnown, HalRenderer halRenderer) {
+
+		this.repository = repository;
+		this.assembler = assembler;
+		this.orderRepository = orderRepository;
+		this.orderAssembler = orderAssembler;
+		this.database = database;
+		this.employeeMisses = employeeMisses;
+		this.reads = employeeReads;
+		this.invalidations = invalidations;
+		this.lastKnown = lastKnown;
+		this.halRenderer = halRenderer;
+	}
+
+	@GetMapping("/employees")
+	ResponseEntity<byte[]> all() {
+
+		return hal("employees:all:" + baseUri(), () -> CollectionModel.of( //
+				database.read(DatabaseGuard.EMPLOYEES, repository::findAll).stream() //
+						.map(assembler::toModel) //
+						.collect(Collectors.toList()), //
+				linkTo(methodOn(EmployeeController.class).all()).withSelfRel()));
+	}
+
+	@PostMapping("/employees")
+	ResponseEntity<EntityModel<Employee>> newEmployee(@RequestBody Employee employee) {
+
+		EntityModel<Employee> model = assembler
+				.toModel(database.write(DatabaseGuard.EMPLOYEES, () -> repository.save(employee)));
+		invalidations.invalidate(ClusterInvalidations.EMPLOYEES, employee.getId());
+
+		return ResponseEntity //
+				.created(linkTo(methodOn(EmployeeController.class).one(employee.getId())).toUri()) //
+				.body(model);
+	}
+
+	@GetMapping("/employees/{id}")
+	ResponseEntity<byte[]> one(@PathVariable Long id) {
+
+		return hal("employees:" + id + ":" + baseUri(), () -> assembler.toModel(findEmployee(id)));
+	}
+
+	/**
+	 * Every order the employee handles, archived ones included. One indexed query on
+	 * CUSTOMER_ORDER.employee_id (plus one per archive partition), whatever the count.
+	 */
+	@GetMapping("/employees/{id}/orders")
+	ResponseEntity<byte[]> orders(@PathVariable Long id) {
+
+		return hal("employees:" + id + ":orders:" + baseUri(), () -> {
+
+			findEmployee(id);
+
+			List<EntityModel<Order>> orders = database
+					.read(DatabaseGuard.ORDERS, () -> orderRepository.findByEmployeeInAnyPartition(id)).stream() //
+					.map(orderAssembler::toModel) //
+					.collect(Collectors.toList());
+
+			return CollectionModel.of(orders, //
+					linkTo(methodOn(EmployeeController.class).orders(id)).withSelfRel(), //
+					linkTo(methodOn(EmployeeController.class).one(id)).withRel("employee"));
+		});
+	}
+
+	private Employee findEmployee(Long id) {
+
+		return employeeMisses.find(id, key -> database.read(DatabaseGuard.EMPLOYEES, () -> repository.findById(key))) //
+				.orElseThrow(() -> new EmployeeNotFoundException(id));
+	}
+
+	private ResponseEntity<byte[]> hal(String key, Supplier<RepresentationModel<?>> model) {
+		return lastKnown.serve(key, MediaTypes.HAL_JSON,
+				() -> reads.load(ReadRouting.coalescing(key), () -> halRenderer.render(model.get())));
+	}
+
+	private static String baseUri() {
+		return ServletUriComponentsBuilder.fromCurrentContextPath().toUriString();
+	}
+}
@@ -0,0 +1,23 @@
+package com.neeraj.finance;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.server.RepresentationModelAssembler;
+import org.springframework.stereotype.Component;
+
+/**
+ * An employee links to itself, to the aggregate root and to the orders it handles.
+ */
+@Component
+class EmployeeModelAssembler implements RepresentationModelAssembler<Employee, EntityModel<Employee>> {
+
+	@Override
+	public EntityModel<Employee> toModel(Employee employee) {
+
+		return EntityModel.of(employee, //
+				linkTo(methodOn(EmployeeController.class).one(employee.getId())).withSelfRel(),
+				linkTo(methodOn(EmployeeController.class).orders(employee.getId())).withRel("orders"),
+				linkTo(methodOn(EmployeeController.class).all()).withRel("employees"));
+	}
+}
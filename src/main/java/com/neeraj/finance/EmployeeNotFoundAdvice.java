@@ -0,0 +1,27 @@
+package com.neeraj.finance;
+
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.mediatype.problem.Problem;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+// When an `EmployeeNotFoundException` is thrown, it is rendered as an `HTTP 404` with an RFC-7807 Problem body,
+//  like a missing order.
+@ControllerAdvice
+class EmployeeNotFoundAdvice {
+
+	@ExceptionHandler(EmployeeNotFoundException.class)
+	ResponseEntity<Problem> employeeNotFoundHandler(EmployeeNotFoundException ex) {
+
+		return ResponseEntity //
+				.status(HttpStatus.NOT_FOUND) //
+				.header(HttpHeaders.CONTENT_TYPE, MediaTypes.HTTP_PROBLEM_DETAILS_JSON_VALUE) //
+				.body(Problem.create() //
+						.withStatus(HttpStatus.NOT_FOUND) //
+						.withTitle("Not found") //
+						.withDetail(ex.getMessage()));
+	}
+}
@@ -0,0 +1,11 @@
+package com.neeraj.finance;
+
+// Stackless, see OrderNotFoundAdvice.
+public class EmployeeNotFoundException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	EmployeeNotFoundException(Long id) {
+		super("Could not find employee " + id, null, false, false);
+	}
+}
@@ -0,0 +1,14 @@
+package com.neeraj.finance;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+interface EmployeeRepository extends JpaRepository<Employee, Long> {
+
+	// Employees whose change sequence is in (since, upTo], oldest change first.
+	@Query("select e from Employee e where e.changeSeq > ?1 and e.changeSeq <= ?2 order by e.changeSeq")
+	List<Employee> findChanged(long since, long upTo, Pageable page);
+}
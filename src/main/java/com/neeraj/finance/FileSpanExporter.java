@@ -0,0 +1,44 @@
+package com.neeraj.finance;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Appends spans to a file as newline-delimited JSON, one span per line, for local
+ * runs: `grep <trace id>` gives a whole trace.
+ */
+class FileSpanExporter implements SpanExporter {
+
+	private final Path file;
+	private final ObjectWriter writer;
+
+	FileSpanExporter(Path file, ObjectMapper objectMapper) {
+
+		this.file = file;
+		this.writer = objectMapper.writerFor(Span.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+
+	@Override
+	public void export(List<Span> spans) {
+
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND)) {
+			for (Span span : spans) {
+				writer.writeValue(out, span);
+				out.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -2,9 +2,12 @@ package com.neeraj.finance;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 // @SpringBootApplication is a meta-annotation that pulls in component scanning, autoconfiguration, and property support.
+// @EnableScheduling runs the @Scheduled background jobs, such as the OrderArchiver.
 @SpringBootApplication
+@EnableScheduling
 public class FinanceApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,128 @@
+package com.neeraj.finance;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import org.springframework.data.domain.Slice;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the stages of a request, so that a recording
+ * shows whether the time of a slow request went into the database, building links
+ * or writing JSON, next to the JDK's own events (GC, locks, sampled stacks).
+ *
+ * They are created on every request, but while no recording has them enabled
+ * begin() and commit() do nothing and shouldCommit() is false, so their fields are
+ * never even filled in. Stack traces are left out, the stage is what they tell.
+ * Recordings are started with the FlightRecordingController or `jcmd <pid>
+ * JFR.start`; the events show up under "Finance" in JDK Mission Control.
+ */
+final class FlightEvents {
+
+	private FlightEvents() {
+	}
+
+	@Name("com.neeraj.finance.Request")
+	@Label("Request")
+	@Description("An HTTP request, from the first filter to the response being written")
+	@Category({ "Finance", "HTTP" })
+	@StackTrace(false)
+	static class Request extends Event {
+
+		@Label("Method")
+		String method;
+
+		@Label("Endpoint")
+		@Description("The path pattern of the handler, e.g. /orders/{id}")
+		String endpoint;
+
+		@Label("Order Id")
+		@Description("The order the path names, 0 for none")
+		long orderId;
+
+		@Label("Status")
+		int status;
+	}
+
+	@Name("com.neeraj.finance.Repository")
+	@Label("Repository Call")
+	@Category({ "Finance", "Database" })
+	@StackTrace(false)
+	static class Repository extends Event {
+
+		@Label("Repository")
+		String repository;
+
+		@Label("Method")
+		String method;
+
+		@Label("Order Id")
+		@Description("The order an OrderRepository lookup is for, 0 for none")
+		long orderId;
+
+		@Label("Rows")
+		@Description("Entities returned")
+		int rows;
+	}
+
+	@Name("com.neeraj.finance.Assembler")
+	@Label("Model Assembly")
+	@Description("Wrapping one order in its representation model and building its links")
+	@Category({ "Finance", "HATEOAS" })
+	@StackTrace(false)
+	static class Assembler extends Event {
+
+		@Label("Order Id")
+		long orderId;
+
+		@Label("Links")
+		int links;
+	}
+
+	@Name("com.neeraj.finance.Serialization")
+	@Label("Serialization")
+	@Description("Writing a representation as JSON bytes")
+	@Category({ "Finance", "HTTP" })
+	@StackTrace(false)
+	static class Serialization extends Event {
+
+		@Label("Format")
+		@Description("hal or json")
+		String format;
+
+		@Label("Rows")
+		@Description("Entities in the document")
+		int rows;
+
+		@Label("Size")
+		@DataAmount
+		long bytes;
+	}
+
+	/**
+	 * How many entities a repository method or a document holds.
+	 */
+	static int rows(Object result) {
+
+		if (result == null) {
+			return 0;
+		}
+		if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		}
+		if (result instanceof Optional) {
+			return ((Optional<?>) result).isPresent() ? 1 : 0;
+		}
+		if (result instanceof Slice) {
+			return ((Slice<?>) result).getNumberOfElements();
+		}
+		return 1;
+	}
+}
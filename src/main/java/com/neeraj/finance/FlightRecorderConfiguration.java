@@ -0,0 +1,71 @@
+package com.neeraj.finance;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.data.repository.Repository;
+
+/*
+ The FlightEvents of requests and repository calls. The request filter runs first of all, so that
+ the time spent in the other filters is part of a request. Repository calls are recorded by an
+ interceptor added to the front of every Spring Data repository proxy, the custom partitioned
+ methods included, so that no call site has to do it.
+*/
+@Configuration
+class FlightRecorderConfiguration {
+
+	@Bean
+	FilterRegistrationBean<FlightRecorderFilter> flightRecorderFilter() {
+
+		FilterRegistrationBean<FlightRecorderFilter> registration = new FilterRegistrationBean<>(
+				new FlightRecorderFilter());
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+		return registration;
+	}
+
+	@Bean
+	static BeanPostProcessor repositoryEventRecorder() {
+
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+
+				if (bean instanceof Repository && bean instanceof Advised && !((Advised) bean).isFrozen()) {
+					Class<?> repository = ((Advised) bean).getProxiedInterfaces()[0];
+					((Advised) bean).addAdvice(0, recordingInterceptor(repository.getSimpleName()));
+				}
+				return bean;
+			}
+		};
+	}
+
+	private static MethodInterceptor recordingInterceptor(String repository) {
+
+		boolean orders = OrderRepository.class.getSimpleName().equals(repository);
+
+		return invocation -> {
+
+			FlightEvents.Repository event = new FlightEvents.Repository();
+			if (!event.isEnabled()) {
+				return invocation.proceed();
+			}
+
+			event.begin();
+			Object result = invocation.proceed();
+			if (event.shouldCommit()) {
+				Object[] arguments = invocation.getArguments();
+				event.repository = repository;
+				event.method = invocation.getMethod().getName();
+				event.orderId = orders && arguments.length == 1 && arguments[0] instanceof Long ? (Long) arguments[0] : 0;
+				event.rows = FlightEvents.rows(result);
+				event.commit();
+			}
+			return result;
+		};
+	}
+}
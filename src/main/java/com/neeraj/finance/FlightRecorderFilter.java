@@ -0,0 +1,64 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Emits a FlightEvents.Request for every request while a recording wants them.
+ *
+ * The endpoint is the handler's path pattern rather than the path, so that all
+ * GET /orders/{id} line up in one group, and the order id is taken from the `{id}`
+ * of the /orders endpoints. Requests that never reached a handler (a 404, or one
+ * shed by the OrderAdmissionFilter) are recorded with their plain path.
+ */
+class FlightRecorderFilter extends OncePerRequestFilter {
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+
+		FlightEvents.Request event = new FlightEvents.Request();
+		if (!event.isEnabled()) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		event.begin();
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			if (event.shouldCommit()) {
+				Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+				event.method = request.getMethod();
+				event.endpoint = pattern != null ? pattern.toString() : request.getRequestURI();
+				event.orderId = orderId(event.endpoint, request);
+				event.status = response.getStatus();
+				event.commit();
+			}
+		}
+	}
+
+	private static long orderId(String endpoint, HttpServletRequest request) {
+
+		if (!endpoint.startsWith("/orders/{id}")) {
+			return 0;
+		}
+
+		@SuppressWarnings("unchecked")
+		Map<String, String> variables = (Map<String, String>) request
+				.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		try {
+			return variables == null ? 0 : Long.parseLong(variables.get("id"));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.neeraj.finance;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.mediatype.problem.Problem;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Opt-in (`finance.jfr.enabled=true`) Java Flight Recorder recordings of a live
+ * instance, for when p99 spikes and nobody can attach a profiler. Keep it on the
+ * admin network: a recording shows a lot about the process.
+ *
+ * POST /admin/recordings starts a recording with the JDK's `default` settings (about
+ * 1% overhead) or the more detailed `profile` ones, plus the FlightEvents at the
+ * given `threshold`. It is bounded by `duration`, at most
+ * `finance.jfr.max-duration`, and by `finance.jfr.max-size` on disk, and stops on
+ * its own when the duration is up. DELETE /admin/recordings/{id} stops it if it is
+ * still running and answers with the .jfr file, after which the recording is gone.
+ * There is one recording at a time; a stopped one that was never fetched is
+ * discarded by the next POST.
+ */
+@RestController
+@ConditionalOnProperty("finance.jfr.enabled")
+class FlightRecordingController {
+
+	private static final List<String> SETTINGS = Arrays.asList("default", "profile");
+
+	private static final List<Class<? extends jdk.jfr.Event>> EVENTS = Arrays.asList(FlightEvents.Request.class,
+			FlightEvents.Repository.class, FlightEvents.Assembler.class, FlightEvents.Serialization.class);
+
+	private final Duration maxDuration;
+	private final DataSize maxSize;
+
+	private final AtomicReference<Recording> current = new AtomicReference<>();
+
+	FlightRecordingController(@Value("${finance.jfr.max-duration:10m}") Duration maxDuration,
+			@Value("${finance.jfr.max-size:100MB}") DataSize maxSize) {
+
+		this.maxDuration = maxDuration;
+		this.maxSize = maxSize;
+	}
+
+	@PreDestroy
+	void close() {
+
+		Recording recording = current.getAndSet(null);
+		if (recording != null) {
+			recording.close();
+		}
+	}
+
+	@PostMapping("/admin/recordings")
+	ResponseEntity<?> start(@RequestParam(defaultValue = "1m") String duration,
+			@RequestParam(defaultValue = "default") String settings,
+			@RequestParam(defaultValue = "0ms") String threshold) {
+
+		Duration length = parse("duration", duration);
+		Duration eventThreshold = parse("threshold", threshold);
+		if (length.isZero() || length.isNegative() || length.compareTo(maxDuration) > 0) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Invalid duration " + duration + ", record for at most " + maxDuration);
+		}
+		if (!SETTINGS.contains(settings)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Unknown settings " + settings + ", use one of " + SETTINGS);
+		}
+		if (!FlightRecorder.isAvailable()) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+					"Flight Recorder is not available in this JVM");
+		}
+
+		Recording recording;
+		try {
+			recording = new Recording(Configuration.getConfiguration(settings));
+		} catch (IOException | ParseException e) {
+			throw new IllegalStateException("Could not load the " + settings + " settings", e);
+		}
+		recording.setName("finance-" + Instant.now());
+		recording.setToDisk(true);
+		recording.setDuration(length);
+		recording.setMaxSize(maxSize.toBytes());
+		EVENTS.forEach(event -> recording.enable(event).withThreshold(eventThreshold));
+
+		// Only one at a time, and never one that is still running.
+		Recording previous = current.get();
+		if ((previous != null && previous.getState() == RecordingState.RUNNING)
+				|| !current.compareAndSet(previous, recording)) {
+			recording.close();
+			return ResponseEntity //
+					.status(HttpStatus.CONFLICT) //
+					.header(HttpHeaders.CONTENT_TYPE, MediaTypes.HTTP_PROBLEM_DETAILS_JSON_VALUE) //
+					.body(Problem.create() //
+							.withTitle("Conflict") //
+							.withDetail("Recording " + (previous == null ? "" : previous.getId() + " ")
+									+ "is still running, stop it first"));
+		}
+		if (previous != null) {
+			previous.close();
+		}
+
+		recording.start();
+		return ResponseEntity //
+				.created(linkTo(methodOn(FlightRecordingController.class).one(recording.getId())).toUri()) //
+				.body(toModel(recording));
+	}
+
+	@GetMapping("/admin/recordings/{id}")
+	EntityModel<Info> one(@PathVariable long id) {
+		return toModel(find(id));
+	}
+
+	/**
+	 * Stops the recording and answers with its file, application/octet-stream to open
+	 * in JDK Mission Control or with `jfr print`.
+	 */
+	@DeleteMapping("/admin/recordings/{id}")
+	ResponseEntity<StreamingResponseBody> stop(@PathVariable long id) {
+
+		Recording recording = find(id);
+		if (!current.compareAndSet(recording, null)) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No recording " + id);
+		}
+
+		Path file;
+		try {
+			if (recording.getState() == RecordingState.RUNNING) {
+				recording.stop();
+			}
+			file = Files.createTempFile("finance-recording-", ".jfr");
+			recording.dump(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			recording.close();
+		}
+
+		try {
+			return ResponseEntity.ok() //
+					.contentType(MediaType.APPLICATION_OCTET_STREAM) //
+					.contentLength(Files.size(file)) //
+					.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment") //
+							.filename("recording-" + id + ".jfr") //
+							.build() //
+							.toString()) //
+					.body(out -> {
+						try {
+							Files.copy(file, out);
+						} finally {
+							Files.deleteIfExists(file);
+						}
+					});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Recording find(long id) {
+
+		Recording recording = current.get();
+		if (recording == null || recording.getId() != id) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No recording " + id);
+		}
+		return recording;
+	}
+
+	private static Duration parse(String name, String value) {
+
+		try {
+			return DurationStyle.detectAndParse(value);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Invalid " + name + " " + value + ", use e.g. 30s, 5m or PT1H", e);
+		}
+	}
+
+	private static EntityModel<Info> toModel(Recording recording) {
+
+		return EntityModel.of(new Info(recording), //
+				linkTo(methodOn(FlightRecordingController.class).one(recording.getId())).withSelfRel(), //
+				linkTo(methodOn(FlightRecordingController.class).stop(recording.getId())).withRel("stop"));
+	}
+
+	static class Info {
+
+		private final long id;
+		private final String name;
+		private final RecordingState state;
+		private final Instant startTime;
+		private final Duration duration;
+
+		Info(Recording recording) {
+
+			this.id = recording.getId();
+			this.name = recording.getName();
+			this.state = recording.getState();
+			this.startTime = recording.getStartTime();
+			this.duration = recording.getDuration();
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public RecordingState getState() {
+			return state;
+		}
+
+		public Instant getStartTime() {
+			return startTime;
+		}
+
+		public Duration getDuration() {
+			return duration;
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.neeraj.finance;
+
+/**
+ * The actual work of fulfilling an order (picking, shipping, charging ...), plugged
+ * into the FulfillmentWorkers by declaring a bean of this type. Without one, every
+ * claimed order is simply completed.
+ *
+ * An order can be handed to fulfil() more than once: a worker that dies, or takes
+ * longer than its lease, leaves the order to be claimed again. Implementations must
+ * therefore be idempotent.
+ */
+@FunctionalInterface
+interface FulfillmentHandler {
+
+	/**
+	 * @return the status the order moves to, COMPLETED or CANCELLED. Anything else,
+	 *         or an exception, leaves the order IN_PROGRESS to be retried once its
+	 *         lease runs out.
+	 */
+	Status fulfil(Order order) throws Exception;
+}
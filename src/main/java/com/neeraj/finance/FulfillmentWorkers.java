@@ -0,0 +1,294 @@
+package com.neeraj.finance;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Opt-in fulfillment engine (`finance.fulfillment.enabled`): a pool of
+ * `finance.fulfillment.workers` threads that take IN_PROGRESS orders off the table,
+ * run them through the FulfillmentHandler and complete or cancel them, so orders no
+ * longer wait for someone to call PUT /orders/{id}/complete.
+ *
+ * H2 has no `SELECT ... FOR UPDATE SKIP LOCKED`, so orders are claimed with a lease
+ * instead: a worker stamps up to `batch-size` unclaimed (or expired) orders with a
+ * fresh lease token and `lease_until = now + lease-ms`, each with a conditional
+ * UPDATE that only one claimer can win, whichever node it runs on. The claimed
+ * orders are processed one by one and their transitions written back in one batch,
+ * again only where the lease token still matches. A worker that crashes simply lets
+ * its leases expire, and another one picks the orders up. Claims on one node are
+ * serialized, so its own workers never race each other for the same rows.
+ *
+ * Throughput is published as `orders.fulfillment.orders` (tagged with the outcome:
+ * completed, cancelled, failed or lost, the last for orders that changed status
+ * through the API or whose lease was taken over before the batch was written), how
+ * long orders waited from creation to fulfillment as `orders.fulfillment.lag` and
+ * the time per batch as `orders.fulfillment.batch`.
+ */
+@Component
+class FulfillmentWorkers {
+
+	private static final Logger log = LoggerFactory.getLogger(FulfillmentWorkers.class);
+
+	private static final String FIND_CLAIMABLE = "SELECT id FROM customer_order WHERE status = ?"
+			+ " AND (lease_until IS NULL OR lease_until < ?) ORDER BY id LIMIT ?";
+	private static final String CLAIM = "UPDATE customer_order SET lease_owner = ?, lease_until = ?"
+			+ " WHERE id = ? AND status = ? AND (lease_until IS NULL OR lease_until < ?)";
+	private static final String TRANSITION = "UPDATE customer_order"
+			+ " SET status = ?, updated_at = ?, change_seq = ?, lease_owner = NULL, lease_until = NULL"
+			+ " WHERE id = ? AND status = ? AND lease_owner = ?";
+
+	private final boolean enabled;
+	private final int workers;
+	private final int batchSize;
+	private final Duration lease;
+	private final long pollIntervalMillis;
+	private final OrderRepository orderRepository;
+	private final FulfillmentHandler handler;
+	private final ChangeSequence changeSequence;
+	private final OrderCommits commits;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+
+	private final Counter completed;
+	private final Counter cancelled;
+	private final Counter failed;
+	private final Counter lost;
+	private final Timer lag;
+	private final Timer batchTimer;
+
+	private volatile boolean running;
+	private ExecutorService pool;
+
+	FulfillmentWorkers(OrderRepository orderRepository, ObjectProvider<FulfillmentHandler> handler,
+			ChangeSequence changeSequence, OrderCommits commits, DataSource dataSource,
+			PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+			@Value("${finance.fulfillment.enabled:false}") boolean enabled,
+			@Value("${finance.fulfillment.workers:2}") int workers,
+			@Value("${finance.fulfillment.batch-size:50}") int batchSize,
+			@Value("${finance.fulfillment.lease-ms:30000}") long leaseMillis,
+			@Value("${finance.fulfillment.poll-interval-ms:1000}") long pollIntervalMillis) {
+
+		this.enabled = enabled;
+		this.workers = workers;
+		this.batchSize = batchSize;
+		this.lease = Duration.ofMillis(leaseMillis);
+		this.pollIntervalMillis = pollIntervalMillis;
+		this.orderRepository = orderRepository;
+		this.handler = handler.getIfAvailable(() -> order -> Status.COMPLETED);
+		this.changeSequence = changeSequence;
+		this.commits = commits;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+		this.completed = outcome(meterRegistry, "completed");
+		this.cancelled = outcome(meterRegistry, "cancelled");
+		this.failed = outcome(meterRegistry, "failed");
+		this.lost = outcome(meterRegistry, "lost");
+		this.lag = Timer.builder("orders.fulfillment.lag") //
+				.description("Time from an order's creation to its fulfillment") //
+				.register(meterRegistry);
+		this.batchTimer = Timer.builder("orders.fulfillment.batch") //
+				.description("Time to process and write back one claimed batch") //
+				.register(meterRegistry);
+	}
+
+	private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+
+		return Counter.builder("orders.fulfillment.orders") //
+				.description("Orders taken through fulfillment") //
+				.tag("outcome", outcome) //
+				.register(meterRegistry);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void start() {
+
+		if (!enabled) {
+			return;
+		}
+
+		AtomicInteger threads = new AtomicInteger();
+		pool = Executors.newFixedThreadPool(workers, runnable -> {
+			Thread thread = new Thread(runnable, "order-fulfillment-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		running = true;
+		for (int i = 0; i < workers; i++) {
+			pool.execute(this::work);
+		}
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+
+		running = false;
+
+		// Batches in flight are finished; whatever is left is released by its lease.
+		if (pool != null) {
+			pool.shutdown();
+			pool.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	private void work() {
+
+		while (running) {
+			try {
+				if (fulfilNextBatch() == 0) {
+					TimeUnit.MILLISECONDS.sleep(pollIntervalMillis);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				log.error("Fulfillment batch failed, its orders are retried when their leases expire", e);
+				try {
+					TimeUnit.MILLISECONDS.sleep(pollIntervalMillis);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Claims, processes and writes back one batch.
+	 *
+	 * @return how many orders were claimed, 0 when there was nothing to do
+	 */
+	int fulfilNextBatch() {
+
+		String token = UUID.randomUUID().toString();
+		List<Long> claimed = claim(token);
+		if (claimed.isEmpty()) {
+			return 0;
+		}
+
+		// A replica may not have their latest status yet.
+		List<Order> orders = ReadRouting.onPrimary(() -> orderRepository.findAllById(claimed));
+		batchTimer.record(() -> process(token, orders));
+		return claimed.size();
+	}
+
+	private synchronized List<Long> claim(String token) {
+
+		Instant now = Instant.now();
+		List<Long> candidates = jdbcTemplate.queryForList(FIND_CLAIMABLE, Long.class,
+				Status.IN_PROGRESS.getCode(), Timestamp.from(now), batchSize);
+
+		List<Object[]> rows = new ArrayList<>(candidates.size());
+		for (Long id : candidates) {
+			rows.add(new Object[] { token, Timestamp.from(now.plus(lease)), id, Status.IN_PROGRESS.getCode(),
+					Timestamp.from(now) });
+		}
+
+		// Another node may have won some of them in the meantime.
+		int[] won = jdbcTemplate.batchUpdate(CLAIM, rows);
+
+		List<Long> claimed = new ArrayList<>(candidates.size());
+		for (int i = 0; i < won.length; i++) {
+			if (won[i] == 1) {
+				claimed.add(candidates.get(i));
+			}
+		}
+		return claimed;
+	}
+
+	private void process(String token, List<Order> orders) {
+
+		List<Order> done = new ArrayList<>(orders.size());
+		List<Status> outcomes = new ArrayList<>(orders.size());
+
+		for (Order order : orders) {
+
+			// Cancelled or completed through the API since it was claimed.
+			if (order.getStatus() != Status.IN_PROGRESS) {
+				lost.increment();
+				continue;
+			}
+
+			Status outcome;
+			try {
+				outcome = handler.fulfil(order);
+			} catch (Exception e) {
+				log.warn("Could not fulfil order " + order.getId() + ", retrying after its lease", e);
+				outcome = null;
+			}
+
+			if (outcome == Status.COMPLETED || outcome == Status.CANCELLED) {
+				done.add(order);
+				outcomes.add(outcome);
+			} else {
+				failed.increment();
+			}
+		}
+
+		if (!done.isEmpty()) {
+			transition(token, done, outcomes);
+		}
+	}
+
+	private void transition(String token, List<Order> orders, List<Status> outcomes) {
+
+		Instant now = Instant.now();
+
+		// Change sequence values are taken inside the transaction, like every writer's.
+		int[] written = transactionTemplate.execute(status -> {
+
+			List<Long> changes = changeSequence.next(orders.size());
+			List<Object[]> rows = new ArrayList<>(orders.size());
+			for (int i = 0; i < orders.size(); i++) {
+				rows.add(new Object[] { outcomes.get(i).getCode(), Timestamp.from(now), changes.get(i),
+						orders.get(i).getId(), Status.IN_PROGRESS.getCode(), token });
+			}
+
+			return jdbcTemplate.batchUpdate(TRANSITION, rows);
+		});
+
+		for (int i = 0; i < orders.size(); i++) {
+
+			Order order = orders.get(i);
+			Status outcome = outcomes.get(i);
+
+			if (written[i] != 1) {
+				lost.increment();
+				continue;
+			}
+
+			(outcome == Status.COMPLETED ? completed : cancelled).increment();
+			if (order.getCreatedAt() != null) {
+				lag.record(Duration.between(order.getCreatedAt(), now));
+			}
+			commits.committed(order, Status.IN_PROGRESS, outcome);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.neeraj.finance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the last `maxSpans` spans in memory, for tests and for trying tracing out
+ * without a collector.
+ */
+class InMemorySpanExporter implements SpanExporter {
+
+	private final int maxSpans;
+
+	// Guarded by itself.
+	private final Deque<Span> spans = new ArrayDeque<>();
+
+	InMemorySpanExporter(int maxSpans) {
+		this.maxSpans = maxSpans;
+	}
+
+	@Override
+	public void export(List<Span> batch) {
+
+		synchronized (spans) {
+			for (Span span : batch) {
+				if (spans.size() == maxSpans) {
+					spans.removeFirst();
+				}
+				spans.addLast(span);
+			}
+		}
+	}
+
+	/**
+	 * The spans of one trace, in the order they finished.
+	 */
+	List<Span> trace(String traceId) {
+
+		synchronized (spans) {
+			return spans.stream().filter(span -> span.getTraceId().equals(traceId)).collect(Collectors.toList());
+		}
+	}
+
+	List<Span> spans() {
+
+		synchronized (spans) {
+			return new ArrayList<>(spans);
+		}
+	}
+}
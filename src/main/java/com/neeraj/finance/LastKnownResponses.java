@@ -0,0 +1,242 @@
+package com.neeraj.finance;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The last successful response body of the read endpoints worth answering while the
+ * database is unavailable, up to `finance.database.last-known.max-bytes` of them in
+ * all (least recently used go first).
+ *
+ * serve() renders a response as usual and remembers it. When rendering fails with a
+ * DatabaseUnavailableException the remembered body is served instead, marked with
+ * `Warning: 110 - "Response is Stale"` and an `Age` header. From then on the body is
+ * served stale right away and re-rendered in the background, one refresh per key at a
+ * time, so requests stop waiting on the database until a refresh has succeeded. Only
+ * without a remembered body does the exception go on to become a 503.
+ *
+ * Keys must identify the representation, base URI included, like the SingleFlight
+ * keys of OrderController, and be keys of the application's choosing: multi-gets,
+ * whose keys the client makes up, are better not remembered at all. Stale responses
+ * are counted in `http.responses.stale`.
+ */
+@Component
+class LastKnownResponses {
+
+	static final String STALE = "110 - \"Response is Stale\"";
+
+	// What a refresh has instead of the request, which is recycled by then.
+	private static final HttpServletRequest NO_REQUEST = (HttpServletRequest) Proxy.newProxyInstance(
+			LastKnownResponses.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+			(proxy, method, args) -> {
+				throw new IllegalStateException("No request to " + method.getName() + " during a refresh");
+			});
+
+	private static final class Remembered {
+
+		final byte[] body;
+		final long at;
+
+		// Rendering it failed since; served as is until a refresh succeeds.
+		volatile boolean stale;
+
+		Remembered(byte[] body, long at) {
+			this.body = body;
+			this.at = at;
+		}
+	}
+
+	private final long maxBytes;
+
+	// Guarded by `remembered`.
+	private final LinkedHashMap<String, Remembered> remembered = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+
+	private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+	private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "last-known-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Counter stale;
+
+	LastKnownResponses(MeterRegistry meterRegistry,
+			@Value("${finance.database.last-known.max-bytes:16777216}") long maxBytes) {
+
+		this.maxBytes = maxBytes;
+		this.stale = Counter.builder("http.responses.stale") //
+				.description("Responses served from the last known body because the database was unavailable") //
+				.register(meterRegistry);
+	}
+
+	@PreDestroy
+	void stop() {
+		refresher.shutdownNow();
+	}
+
+	ResponseEntity<byte[]> serve(String key, MediaType contentType, Supplier<byte[]> render) {
+
+		Remembered last;
+		synchronized (remembered) {
+			last = remembered.get(key);
+		}
+
+		if (last == null || !last.stale) {
+			try {
+				byte[] body = render.get();
+				remember(key, body);
+				return ResponseEntity.ok().contentType(contentType).body(body);
+			} catch (DatabaseUnavailableException e) {
+				if (last == null) {
+					throw e;
+				}
+				last.stale = true;
+			}
+		}
+
+		refresh(key, render);
+
+		stale.increment();
+		return ResponseEntity.ok() //
+				.contentType(contentType) //
+				.header(HttpHeaders.WARNING, STALE) //
+				.header(HttpHeaders.AGE, Long.toString((System.currentTimeMillis() - last.at) / 1000)) //
+				.body(last.body);
+	}
+
+	private void remember(String key, byte[] body) {
+
+		synchronized (remembered) {
+			forget(key);
+			if (body.length > maxBytes) {
+				return;
+			}
+			remembered.put(key, new Remembered(body, System.currentTimeMillis()));
+			bytes += body.length;
+
+			Iterator<Remembered> eldest = remembered.values().iterator();
+			while (bytes > maxBytes) {
+				bytes -= eldest.next().body.length;
+				eldest.remove();
+			}
+		}
+	}
+
+	private void forget(String key) {
+
+		synchronized (remembered) {
+			Remembered previous = remembered.remove(key);
+			if (previous != null) {
+				bytes -= previous.body.length;
+			}
+		}
+	}
+
+	/**
+	 * Renders `key` again on the refresher thread. HATEOAS builds links from the base
+	 * URI it caches among the request attributes, so those are all a refresh needs of
+	 * the request.
+	 */
+	private void refresh(String key, Supplier<byte[]> render) {
+
+		if (!refreshing.add(key)) {
+			return;
+		}
+
+		RequestAttributes request = detached(RequestContextHolder.getRequestAttributes());
+		try {
+			refresher.execute(() -> {
+				RequestContextHolder.setRequestAttributes(request);
+				try {
+					remember(key, render.get());
+				} catch (DatabaseUnavailableException e) {
+					// Still unavailable, the next request for it tries again.
+				} catch (RuntimeException e) {
+					// It doesn't render anymore (a deleted order, say), so its requests
+					// had better find out for themselves.
+					forget(key);
+				} finally {
+					RequestContextHolder.resetRequestAttributes();
+					refreshing.remove(key);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			refreshing.remove(key);
+		}
+	}
+
+	private static RequestAttributes detached(RequestAttributes live) {
+
+		if (live == null) {
+			return null;
+		}
+
+		// Building any link makes sure the base URI is among them.
+		WebMvcLinkBuilder.linkTo(LastKnownResponses.class);
+
+		Map<String, Object> attributes = new HashMap<>();
+		for (String name : live.getAttributeNames(RequestAttributes.SCOPE_REQUEST)) {
+			attributes.put(name, live.getAttribute(name, RequestAttributes.SCOPE_REQUEST));
+		}
+		Map<String, Object> snapshot = Collections.synchronizedMap(attributes);
+
+		return new ServletRequestAttributes(NO_REQUEST) {
+
+			@Override
+			public Object getAttribute(String name, int scope) {
+				return scope == SCOPE_REQUEST ? snapshot.get(name) : null;
+			}
+
+			@Override
+			public void setAttribute(String name, Object value, int scope) {
+
+				if (scope == SCOPE_REQUEST) {
+					snapshot.put(name, value);
+				}
+			}
+
+			@Override
+			public void removeAttribute(String name, int scope) {
+
+				if (scope == SCOPE_REQUEST) {
+					snapshot.remove(name);
+				}
+			}
+
+			@Override
+			public String[] getAttributeNames(int scope) {
+
+				synchronized (snapshot) {
+					return scope == SCOPE_REQUEST ? snapshot.keySet().toArray(new String[0]) : new String[0];
+				}
+			}
+		};
+	}
+}
@@ -17,13 +17,26 @@ public class LoadDatabase {
 	private static final Logger log = LoggerFactory.getLogger(LoadDatabase.class);
 
 	@Bean
-	CommandLineRunner initDatabase(OrderRepository orderRepository) {
+	CommandLineRunner initDatabase(OrderRepository orderRepository, EmployeeRepository employeeRepository) {
 
 		return args -> {
-			orderRepository.save(new Order("MacBook Pro", Status.COMPLETED));
-			orderRepository.save(new Order("iPhone", Status.IN_PROGRESS));
+			// In clustered mode the database is shared, and only the first node seeds it.
+			if (ReadRouting.onPrimary(orderRepository::count) > 0) {
+				return;
+			}
 
-			orderRepository.findAll().forEach(order -> {
+			Employee bilbo = employeeRepository.save(new Employee("Bilbo", "Baggins", "burglar"));
+			Employee frodo = employeeRepository.save(new Employee("Frodo", "Baggins", "thief"));
+
+			Order macBook = new Order("MacBook Pro", Status.COMPLETED);
+			macBook.setEmployeeId(bilbo.getId());
+			orderRepository.save(macBook);
+
+			Order iPhone = new Order("iPhone", Status.IN_PROGRESS);
+			iPhone.setEmployeeId(frodo.getId());
+			orderRepository.save(iPhone);
+
+			ReadRouting.onPrimary(orderRepository::findAll).forEach(order -> {
 				log.info("Preloaded " + order);
 			});
 		};
@@ -0,0 +1,66 @@
+package com.neeraj.finance;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.Link;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The answer to a multi-get (`?ids=...`): the entities that were found, in the order
+ * their ids were asked for, plus the ids that weren't found under `missing`. A
+ * missing id doesn't fail the request, the caller decides what to do about it.
+ *
+ * CollectionModel can only be given its content by deprecated constructors, so the
+ * content is kept here and getContent() serves it.
+ */
+class MultiGetModel<T> extends CollectionModel<T> {
+
+	private final List<T> content;
+	private final List<Long> missing;
+
+	MultiGetModel(List<T> content, List<Long> missing, Link... links) {
+
+		this.content = Collections.unmodifiableList(content);
+		this.missing = Collections.unmodifiableList(missing);
+		add(links);
+	}
+
+	@Override
+	public Collection<T> getContent() {
+		return content;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return content.iterator();
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public List<Long> getMissing() {
+		return missing;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+
+		if (this == other) {
+			return true;
+		}
+		if (other == null || getClass() != other.getClass() || !super.equals(other)) {
+			return false;
+		}
+		MultiGetModel<?> that = (MultiGetModel<?>) other;
+		return content.equals(that.content) && missing.equals(that.missing);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(super.hashCode(), content, missing);
+	}
+}
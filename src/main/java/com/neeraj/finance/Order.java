@@ -1,25 +1,85 @@
 package com.neeraj.finance;
 
+import java.time.Instant;
 import java.util.Objects;
 
+import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * The class requires a JPA @Table annotation changing the table’s name to
  * CUSTOMER_ORDER because ORDER is not a valid name for table.
+ *
+ * The index on changeSeq serves delta sync (see ChangeSequence), the one on
+ * employee_id serves GET /employees/{id}/orders and the one on status and leaseUntil
+ * lets the FulfillmentWorkers find claimable orders.
  */
 @Entity
-@Table(name = "CUSTOMER_ORDER")
-class Order {
+@Table(name = "CUSTOMER_ORDER", indexes = { @Index(name = "customer_order_change_seq", columnList = "changeSeq"),
+		@Index(name = "customer_order_employee", columnList = "employee_id"),
+		@Index(name = "customer_order_claim", columnList = "status, leaseUntil") })
+@EntityListeners(ChangeSequenceListener.class)
+class Order implements ChangeTracked {
+
+	static final int DESCRIPTION_LENGTH = 120;
 
 	private @Id @GeneratedValue Long id;
 
+	@Column(length = DESCRIPTION_LENGTH)
 	private String description;
+
+	@Convert(converter = StatusConverter.class)
+	@Column(nullable = false)
 	private Status status;
 
+	// Maintained by the JPA lifecycle callbacks below (and by the JDBC writers that
+	// bypass JPA), never taken from the client.
+	private Instant createdAt;
+	private Instant updatedAt;
+
+	// Taken from the ChangeSequence on every insert and update.
+	private Long changeSeq;
+
+	// The employee handling the order. Clients and the JDBC writers only deal with the
+	// id; the association over the same column is read-only and lazy, and is only
+	// loaded when asked for (see PartitionedOrderRepository.fetchEmployees).
+	@Column(name = "employee_id")
+	private Long employeeId;
+
+	// What the order is worth, in minor units of the currency (cents for EUR) so that
+	// amounts add up exactly without BigDecimal. Both or neither are set; orders from
+	// before amounts existed have neither.
+	private Long amount;
+
+	@Column(length = 3)
+	private String currency;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "employee_id", insertable = false, updatable = false)
+	private Employee employee;
+
+	// Which fulfillment worker has claimed the order, and until when. Only the
+	// FulfillmentWorkers write these, with JDBC, so JPA never does.
+	@Column(length = 36, insertable = false, updatable = false)
+	private String leaseOwner;
+
+	@Column(insertable = false, updatable = false)
+	private Instant leaseUntil;
+
 	Order() {
 	}
 
@@ -53,6 +113,79 @@ class Order {
 		this.status = status;
 	}
 
+	public Instant getCreatedAt() {
+		return this.createdAt;
+	}
+
+	public Instant getUpdatedAt() {
+		return this.updatedAt;
+	}
+
+	@Override
+	public Long getChangeSeq() {
+		return this.changeSeq;
+	}
+
+	@Override
+	public void setChangeSeq(Long changeSeq) {
+		this.changeSeq = changeSeq;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public Long getEmployeeId() {
+		return this.employeeId;
+	}
+
+	public void setEmployeeId(Long employeeId) {
+		this.employeeId = employeeId;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public Long getAmount() {
+		return this.amount;
+	}
+
+	public void setAmount(Long amount) {
+		this.amount = amount;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public String getCurrency() {
+		return this.currency;
+	}
+
+	public void setCurrency(String currency) {
+		this.currency = currency;
+	}
+
+	@JsonIgnore
+	Employee getEmployee() {
+		return this.employee;
+	}
+
+	void setEmployee(Employee employee) {
+		this.employee = employee;
+	}
+
+	void setCreatedAt(Instant createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	void setUpdatedAt(Instant updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+
+	@PrePersist
+	void onCreate() {
+		this.createdAt = Instant.now();
+		this.updatedAt = this.createdAt;
+	}
+
+	@PreUpdate
+	void onUpdate() {
+		this.updatedAt = Instant.now();
+	}
+
 	@Override
 	public boolean equals(Object o) {
 
@@ -0,0 +1,155 @@
+package com.neeraj.finance;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rolling per-Status counts of order activity (orders placed, completed and
+ * cancelled), for `GET /orders/metrics?window=`.
+ *
+ * Time is cut into `finance.orders.activity.bucket-ms` buckets and the last
+ * `finance.orders.activity.buckets` of them are kept in a ring. Each slot of the ring
+ * holds one counter per Status, packed together with the number of the bucket it
+ * belongs to: `bucket (upper 40 bits) | count (lower 24 bits)`. Recording is a single
+ * CAS on that long, and a slot that still carries an older bucket number is simply
+ * restarted at 1, so there is no lock, no clean-up thread and nothing ever rescans
+ * the table. A query adds up at most `buckets` slots per Status, whatever the order
+ * volume.
+ */
+@Component
+class OrderActivity {
+
+	private static final int COUNT_BITS = 24;
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+	private static final long BUCKET_MASK = (1L << (Long.SIZE - COUNT_BITS)) - 1;
+
+	private static final Status[] STATUSES = Status.values();
+
+	private final long bucketMillis;
+	private final int buckets;
+	private final AtomicLongArray slots;
+
+	OrderActivity(@Value("${finance.orders.activity.bucket-ms:1000}") long bucketMillis,
+			@Value("${finance.orders.activity.buckets:3600}") int buckets) {
+
+		this.bucketMillis = bucketMillis;
+		this.buckets = buckets;
+		this.slots = new AtomicLongArray(buckets * STATUSES.length);
+	}
+
+	/**
+	 * Counts an order entering `status` now.
+	 */
+	void record(Status status) {
+		record(status, System.currentTimeMillis());
+	}
+
+	void record(Status status, long epochMillis) {
+
+		long bucket = (epochMillis / bucketMillis) & BUCKET_MASK;
+		int slot = slot(bucket, status);
+
+		while (true) {
+			long current = slots.get(slot);
+			long next;
+			if (current >>> COUNT_BITS == bucket) {
+				// Saturate rather than spill into the bucket number.
+				if ((current & COUNT_MASK) == COUNT_MASK) {
+					return;
+				}
+				next = current + 1;
+			} else {
+				next = bucket << COUNT_BITS | 1;
+			}
+			if (slots.compareAndSet(slot, current, next)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The longest window that can be answered.
+	 */
+	Duration retention() {
+		return Duration.ofMillis(bucketMillis * buckets);
+	}
+
+	/**
+	 * Counts per Status over the last `window`, rounded up to whole buckets and
+	 * including the current, still filling one.
+	 */
+	Window window(Duration window) {
+		return window(window, System.currentTimeMillis());
+	}
+
+	Window window(Duration window, long epochMillis) {
+
+		if (window.isNegative() || window.isZero() || window.compareTo(retention()) > 0) {
+			throw new IllegalArgumentException("Window must be between 1ms and " + retention());
+		}
+
+		long newest = epochMillis / bucketMillis;
+		long count = (window.toMillis() + bucketMillis - 1) / bucketMillis;
+
+		Map<Status, Long> counts = new EnumMap<>(Status.class);
+		for (Status status : STATUSES) {
+			long total = 0;
+			for (long bucket = newest - count + 1; bucket <= newest; bucket++) {
+				long masked = bucket & BUCKET_MASK;
+				long value = slots.get(slot(masked, status));
+				if (value >>> COUNT_BITS == masked) {
+					total += value & COUNT_MASK;
+				}
+			}
+			counts.put(status, total);
+		}
+
+		return new Window(window, Instant.ofEpochMilli((newest - count + 1) * bucketMillis),
+				Instant.ofEpochMilli(epochMillis), counts);
+	}
+
+	private int slot(long bucket, Status status) {
+		return (int) (bucket % buckets) * STATUSES.length + status.ordinal();
+	}
+
+	/**
+	 * One answer to a metrics query.
+	 */
+	static class Window {
+
+		private final Duration window;
+		private final Instant from;
+		private final Instant to;
+		private final Map<Status, Long> counts;
+
+		Window(Duration window, Instant from, Instant to, Map<Status, Long> counts) {
+
+			this.window = window;
+			this.from = from;
+			this.to = to;
+			this.counts = counts;
+		}
+
+		public String getWindow() {
+			return window.toString();
+		}
+
+		public Instant getFrom() {
+			return from;
+		}
+
+		public Instant getTo() {
+			return to;
+		}
+
+		public Map<Status, Long> getCounts() {
+			return counts;
+		}
+	}
+}
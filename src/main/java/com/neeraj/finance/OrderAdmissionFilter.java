@@ -0,0 +1,204 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Admission control in front of OrderController, applied before any Spring MVC work.
+ *
+ * 1. Rate limiting: every client (its `X-API-Key` header if that is one of the keys
+ *    we issued, otherwise its address) has a token bucket. Unknown keys don't get
+ *    buckets of their own, or a client could make up a fresh one per request. Requests cost tokens according to how expensive they
+ *    are for us, so one GET /orders (a full table read) costs as much as many
+ *    GET /orders/{id}. An empty bucket is answered with 429 and a Retry-After.
+ * 2. Load shedding: the AdaptiveConcurrencyLimiter caps the requests in flight across
+ *    all clients, and lowers the cap as latency rises. Excess requests get 503. An
+ *    asynchronous request (the export) holds its permit until it completes, not just
+ *    until its first dispatch returns.
+ */
+class OrderAdmissionFilter extends OncePerRequestFilter {
+
+	static final String API_KEY_HEADER = "X-API-Key";
+
+	private static final long EVICTION_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+	/**
+	 * Token cost of each kind of order request.
+	 */
+	static class Costs {
+
+		int list = 10;
+		int export = 50;
+		int lookup = 1;
+		int create = 2;
+		int transition = 2;
+	}
+
+	private final TokenBucketRateLimiter rateLimiter;
+	private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+	private final Costs costs;
+	private final Set<String> apiKeys;
+
+	private final Counter rateLimited;
+	private final Counter shed;
+
+	// Clients that went quiet would otherwise keep their bucket forever.
+	private final AtomicLong nextEviction = new AtomicLong(System.nanoTime() + EVICTION_INTERVAL);
+
+	OrderAdmissionFilter(TokenBucketRateLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter, Costs costs,
+			Set<String> apiKeys, MeterRegistry meterRegistry) {
+
+		this.rateLimiter = rateLimiter;
+		this.concurrencyLimiter = concurrencyLimiter;
+		this.costs = costs;
+		this.apiKeys = apiKeys;
+
+		this.rateLimited = Counter.builder("orders.admission.rejected").tag("reason", "rate-limited")
+				.register(meterRegistry);
+		this.shed = Counter.builder("orders.admission.rejected").tag("reason", "shed").register(meterRegistry);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+
+		evictIdleClients();
+
+		int cost = cost(request);
+		long wait = rateLimiter.tryAcquire(client(request), cost);
+		if (wait > 0) {
+			rateLimited.increment();
+			reject(response, HttpStatus.TOO_MANY_REQUESTS, wait,
+					"Rate limit exceeded, retry in " + TimeUnit.NANOSECONDS.toMillis(wait) + " ms");
+			return;
+		}
+
+		if (!concurrencyLimiter.tryAcquire()) {
+			shed.increment();
+			reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1),
+					"The order service is overloaded, try again later");
+			return;
+		}
+
+		Permit permit = new Permit(cost);
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			if (request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(permit);
+			} else {
+				permit.release();
+			}
+		}
+	}
+
+	/**
+	 * A concurrency permit, given back once however the request ends.
+	 */
+	private class Permit implements AsyncListener {
+
+		private final int cost;
+		private final long start = System.nanoTime();
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		Permit(int cost) {
+			this.cost = cost;
+		}
+
+		void release() {
+
+			if (released.compareAndSet(false, true)) {
+				concurrencyLimiter.release(cost, System.nanoTime() - start);
+			}
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+	}
+
+	private void evictIdleClients() {
+
+		long due = nextEviction.get();
+		long now = System.nanoTime();
+
+		if (now - due >= 0 && nextEviction.compareAndSet(due, now + EVICTION_INTERVAL)) {
+			rateLimiter.evictIdle();
+		}
+	}
+
+	private String client(HttpServletRequest request) {
+
+		String apiKey = request.getHeader(API_KEY_HEADER);
+		return apiKey != null && apiKeys.contains(apiKey) ? "key:" + apiKey : "addr:" + request.getRemoteAddr();
+	}
+
+	private int cost(HttpServletRequest request) {
+
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		HttpMethod method = HttpMethod.resolve(request.getMethod());
+
+		if (method == HttpMethod.GET) {
+			if (path.equals("/orders") || path.equals("/orders/")) {
+				return costs.list;
+			}
+			if (path.startsWith("/orders/export")) {
+				return costs.export;
+			}
+			return costs.lookup;
+		}
+
+		if (method == HttpMethod.POST) {
+			return costs.create;
+		}
+
+		return costs.transition;
+	}
+
+	private static void reject(HttpServletResponse response, HttpStatus status, long waitNanos, String detail)
+			throws IOException {
+
+		long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+
+		response.setStatus(status.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+		response.setContentType(MediaTypes.HTTP_PROBLEM_DETAILS_JSON_VALUE);
+		response.getOutputStream().write(("{\"title\":\"" + status.getReasonPhrase() + "\",\"status\":" + status.value()
+				+ ",\"detail\":\"" + detail + "\"}").getBytes(StandardCharsets.UTF_8));
+	}
+}
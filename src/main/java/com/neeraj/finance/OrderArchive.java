@@ -0,0 +1,252 @@
+package com.neeraj.finance;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The cold partition for orders.
+ *
+ * Orders that reached a terminal status (COMPLETED or CANCELLED) never change again,
+ * so they don't need to share CUSTOMER_ORDER and its indexes with the hot IN_PROGRESS
+ * rows. When `finance.orders.archive.enabled` is set, they are moved into
+ * `finance.orders.archive.partitions` tables (CUSTOMER_ORDER_ARCHIVE_0, _1, ...),
+ * chosen by hashing the order id, which keeps each table and its primary key index
+ * small.
+ *
+ * Point lookups go to exactly one partition; scans gather every partition.
+ */
+@Component
+class OrderArchive {
+
+	private static final RowMapper<Order> ORDER_MAPPER = (rs, rowNum) -> {
+
+		Order order = new Order(rs.getString("description"), Status.fromCode(rs.getInt("status")));
+		order.setId(rs.getLong("id"));
+		order.setCreatedAt(toInstant(rs.getTimestamp("created_at")));
+		order.setUpdatedAt(toInstant(rs.getTimestamp("updated_at")));
+		order.setChangeSeq(rs.getObject("change_seq", Long.class));
+		order.setEmployeeId(rs.getObject("employee_id", Long.class));
+		order.setAmount(rs.getObject("amount", Long.class));
+		order.setCurrency(rs.getString("currency"));
+		return order;
+	};
+
+	private static final String COLUMNS = "id, description, status, created_at, updated_at, change_seq, employee_id,"
+			+ " amount, currency";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final boolean enabled;
+	private final int partitions;
+
+	OrderArchive(DataSource dataSource, @Value("${finance.orders.archive.enabled:false}") boolean enabled,
+			@Value("${finance.orders.archive.partitions:4}") int partitions) {
+
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.enabled = enabled;
+		this.partitions = partitions;
+	}
+
+	@PostConstruct
+	void createPartitions() {
+
+		if (!enabled) {
+			return;
+		}
+
+		for (int partition = 0; partition < partitions; partition++) {
+			jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table(partition) //
+					+ " (id BIGINT PRIMARY KEY, description VARCHAR(" + Order.DESCRIPTION_LENGTH + "), status INTEGER NOT NULL," //
+					+ " created_at TIMESTAMP, updated_at TIMESTAMP, change_seq BIGINT, employee_id BIGINT," //
+					+ " amount BIGINT, currency VARCHAR(3))");
+			// Partitions created before delta sync (or before orders had employees or
+			// amounts) don't have these yet.
+			jdbcTemplate.execute("ALTER TABLE " + table(partition) + " ADD COLUMN IF NOT EXISTS change_seq BIGINT");
+			jdbcTemplate.execute("ALTER TABLE " + table(partition) + " ADD COLUMN IF NOT EXISTS employee_id BIGINT");
+			jdbcTemplate.execute("ALTER TABLE " + table(partition) + " ADD COLUMN IF NOT EXISTS amount BIGINT");
+			jdbcTemplate.execute("ALTER TABLE " + table(partition) + " ADD COLUMN IF NOT EXISTS currency VARCHAR(3)");
+			jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + table(partition) + "_change_seq ON " + table(partition)
+					+ " (change_seq)");
+			jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + table(partition) + "_employee ON " + table(partition)
+					+ " (employee_id)");
+		}
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * The archive partition tables, for callers that scan with plain SQL.
+	 */
+	List<String> tables() {
+
+		List<String> tables = new ArrayList<>();
+		for (int partition = 0; enabled && partition < partitions; partition++) {
+			tables.add(table(partition));
+		}
+		return tables;
+	}
+
+	Optional<Order> findById(Long id) {
+
+		if (!enabled) {
+			return Optional.empty();
+		}
+
+		List<Order> orders = jdbcTemplate.query( //
+				"SELECT " + COLUMNS + " FROM " + table(partitionOf(id)) + " WHERE id = ?", ORDER_MAPPER, id);
+
+		return orders.stream().findFirst();
+	}
+
+	/**
+	 * The archived orders among `ids`, with one IN query per partition that any of them
+	 * hash to.
+	 */
+	List<Order> findAllById(Collection<Long> ids) {
+
+		if (!enabled || ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		Map<Integer, List<Long>> byPartition = ids.stream().collect(Collectors.groupingBy(this::partitionOf));
+
+		List<Order> orders = new ArrayList<>();
+		byPartition.forEach((partition, partitionIds) -> {
+			for (int from = 0; from < partitionIds.size(); from += PartitionedOrderRepositoryImpl.IN_LIST_SIZE) {
+
+				List<Long> chunk = partitionIds.subList(from,
+						Math.min(partitionIds.size(), from + PartitionedOrderRepositoryImpl.IN_LIST_SIZE));
+				String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+
+				orders.addAll(jdbcTemplate.query( //
+						"SELECT " + COLUMNS + " FROM " + table(partition) + " WHERE id IN (" + placeholders + ")", //
+						ORDER_MAPPER, chunk.toArray()));
+			}
+		});
+
+		return orders;
+	}
+
+	/**
+	 * Up to `limit` archived orders with `since < change_seq <= upTo`, in change order.
+	 * Moving an order here keeps its change_seq, archiving isn't a change.
+	 */
+	List<Order> findChanged(long since, long upTo, int limit) {
+
+		if (!enabled) {
+			return Collections.emptyList();
+		}
+
+		List<Order> orders = new ArrayList<>();
+		for (int partition = 0; partition < partitions; partition++) {
+			orders.addAll(jdbcTemplate.query("SELECT " + COLUMNS + " FROM " + table(partition) //
+					+ " WHERE change_seq > ? AND change_seq <= ? ORDER BY change_seq LIMIT ?", //
+					ORDER_MAPPER, since, upTo, limit));
+		}
+
+		orders.sort(Comparator.comparing(Order::getChangeSeq));
+		return orders.size() > limit ? new ArrayList<>(orders.subList(0, limit)) : orders;
+	}
+
+	/**
+	 * The archived orders of one employee, one indexed query per partition.
+	 */
+	List<Order> findByEmployee(Long employeeId) {
+
+		if (!enabled) {
+			return Collections.emptyList();
+		}
+
+		List<Order> orders = new ArrayList<>();
+		for (int partition = 0; partition < partitions; partition++) {
+			orders.addAll(jdbcTemplate.query("SELECT " + COLUMNS + " FROM " + table(partition) + " WHERE employee_id = ?",
+					ORDER_MAPPER, employeeId));
+		}
+
+		orders.sort(Comparator.comparing(Order::getId));
+		return orders;
+	}
+
+	List<Order> findAll() {
+
+		if (!enabled) {
+			return Collections.emptyList();
+		}
+
+		List<Order> orders = new ArrayList<>();
+		for (int partition = 0; partition < partitions; partition++) {
+			orders.addAll(jdbcTemplate.query("SELECT " + COLUMNS + " FROM " + table(partition), ORDER_MAPPER));
+		}
+
+		orders.sort(Comparator.comparing(Order::getId));
+		return orders;
+	}
+
+	/**
+	 * Moves up to `batchSize` terminal orders out of CUSTOMER_ORDER into their archive
+	 * partition. Copy and delete happen in one transaction, so an order is always
+	 * visible in exactly one place.
+	 *
+	 * @return the number of orders moved
+	 */
+	@Transactional
+	int archiveTerminalOrders(int batchSize) {
+
+		if (!enabled) {
+			return 0;
+		}
+
+		List<Order> terminal = jdbcTemplate.query( //
+				"SELECT " + COLUMNS + " FROM customer_order WHERE status IN (?, ?) ORDER BY id LIMIT ?", //
+				ORDER_MAPPER, Status.COMPLETED.getCode(), Status.CANCELLED.getCode(), batchSize);
+
+		for (Order order : terminal) {
+			jdbcTemplate.update("INSERT INTO " + table(partitionOf(order.getId())) //
+					+ " (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", //
+					order.getId(), order.getDescription(), order.getStatus().getCode(), //
+					toTimestamp(order.getCreatedAt()), toTimestamp(order.getUpdatedAt()), order.getChangeSeq(),
+					order.getEmployeeId(), order.getAmount(), order.getCurrency());
+		}
+
+		List<Object[]> ids = new ArrayList<>(terminal.size());
+		terminal.forEach(order -> ids.add(new Object[] { order.getId() }));
+		jdbcTemplate.batchUpdate("DELETE FROM customer_order WHERE id = ?", ids);
+
+		return terminal.size();
+	}
+
+	private int partitionOf(Long id) {
+		return Math.floorMod(Long.hashCode(id), partitions);
+	}
+
+	private static String table(int partition) {
+		return "customer_order_archive_" + partition;
+	}
+
+	// Orders written before the timestamps were introduced have none.
+	private static Instant toInstant(Timestamp timestamp) {
+		return timestamp == null ? null : timestamp.toInstant();
+	}
+
+	private static Timestamp toTimestamp(Instant instant) {
+		return instant == null ? null : Timestamp.from(instant);
+	}
+}
@@ -0,0 +1,45 @@
+package com.neeraj.finance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically drains COMPLETED and CANCELLED orders from CUSTOMER_ORDER into the
+ * OrderArchive, one bounded batch (and transaction) at a time.
+ */
+@Component
+class OrderArchiver {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderArchiver.class);
+
+	private final OrderArchive archive;
+	private final int batchSize;
+
+	OrderArchiver(OrderArchive archive, @Value("${finance.orders.archive.batch-size:500}") int batchSize) {
+
+		this.archive = archive;
+		this.batchSize = batchSize;
+	}
+
+	@Scheduled(fixedDelayString = "${finance.orders.archive.interval-ms:60000}")
+	void archive() {
+
+		if (!archive.isEnabled()) {
+			return;
+		}
+
+		int moved = 0;
+		int batch;
+		do {
+			batch = archive.archiveTerminalOrders(batchSize);
+			moved += batch;
+		} while (batch == batchSize);
+
+		if (moved > 0) {
+			log.info("Archived " + moved + " terminal orders");
+		}
+	}
+}
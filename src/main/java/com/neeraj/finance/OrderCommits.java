@@ -0,0 +1,44 @@
+package com.neeraj.finance;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * What follows every committed order write: the OrderActivity buckets, the
+ * OrderHistory log, the OrderStatusIndex and the OrderTotals move along with it, and
+ * cached reads of the order are invalidated across the cluster.
+ *
+ * Every writer (OrderController, OrderWriteBehind, FulfillmentWorkers) calls
+ * committed() once its transaction has committed, and only then, so a write that is
+ * rolled back or lost to a concurrent one leaves no trace in any of them.
+ */
+@Component
+class OrderCommits {
+
+	private final OrderActivity activity;
+	private final OrderHistory history;
+	private final OrderStatusIndex statusIndex;
+	private final OrderTotals totals;
+	private final ClusterInvalidations invalidations;
+
+	OrderCommits(OrderActivity activity, OrderHistory history, OrderStatusIndex statusIndex, OrderTotals totals,
+			ClusterInvalidations invalidations) {
+
+		this.activity = activity;
+		this.history = history;
+		this.statusIndex = statusIndex;
+		this.totals = totals;
+		this.invalidations = invalidations;
+	}
+
+	/**
+	 * `order` moved from `from` (null for a new order) to `to`.
+	 */
+	void committed(Order order, Status from, Status to) {
+
+		activity.record(to);
+		history.record(order.getId(), from, to);
+		statusIndex.record(order.getId(), to);
+		totals.record(order, from, to);
+		invalidations.invalidate(ClusterInvalidations.ORDERS, order.getId());
+	}
+}
@@ -1,16 +1,32 @@
 package com.neeraj.finance;
 
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.mediatype.problem.Problem;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,7 +34,17 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * All the controller methods return one of Spring HATEOAS’s RepresentationModel
@@ -27,63 +53,603 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 class OrderController {
 
+	private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+	private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+	// Ids one multi-get may ask for, changes one delta sync page may hold.
+	private static final int MAX_IDS = 1000;
+	private static final int MAX_CHANGES = 10000;
+	private static final int MAX_TRANSITIONS = 10000;
+
 	private final OrderRepository orderRepository;
+	private final EmployeeRepository employeeRepository;
 	private final OrderModelAssembler assembler;
+	private final OrderExporter exporter;
+	private final OrderWriteBehind writeBehind;
+	private final NegativeLookupCache orderMisses;
+	private final OrderActivity activity;
+	private final OrderHistory history;
+	private final OrderStatusIndex statusIndex;
+	private final OrderTotals totals;
+	private final OrderCommits commits;
+	private final ChangeSequence changeSequence;
+	private final ClusterInvalidations invalidations;
+	private final DatabaseGuard database;
+	private final LastKnownResponses lastKnown;
+	private final SingleFlight<String, byte[]> reads;
+	private final HalRenderer halRenderer;
+	private final ParallelHalRenderer collectionRenderer;
 
-	OrderController(OrderRepository orderRepository, OrderModelAssembler assembler) {
+	// Pre-built writers for the plain JSON representation, resolved once instead of
+	// per request.
+	private final ObjectWriter orderWriter;
+	private final ObjectWriter orderListWriter;
+
+	OrderController(OrderRepository orderRepository, EmployeeRepository employeeRepository,
+			OrderModelAssembler assembler, OrderExporter exporter,
+			OrderWriteBehind writeBehind, NegativeLookupCache orderMisses, OrderActivity activity,
+			OrderHistory history, OrderStatusIndex statusIndex, OrderTotals totals, OrderCommits commits,
+			ChangeSequence changeSequence, ClusterInvalidations invalidations,
+			DatabaseGuard database, LastKnownResponses lastKnown, SingleFlight<String, byte[]> orderReads, HalRenderer halRenderer, ParallelHalRenderer collectionRenderer, ObjectMapper objectMapper) {
 
 		this.orderRepository = orderRepository;
+		this.employeeRepository = employeeRepository;
 		this.assembler = assembler;
+		this.exporter = exporter;
+		this.writeBehind = writeBehind;
+		this.orderMisses = orderMisses;
+		this.activity = activity;
+		this.history = history;
+		this.statusIndex = statusIndex;
+		this.totals = totals;
+		this.commits = commits;
+		this.changeSequence = changeSequence;
+		this.invalidations = invalidations;
+		this.database = database;
+		this.lastKnown = lastKnown;
+		this.reads = orderReads;
+		this.halRenderer = halRenderer;
+		this.collectionRenderer = collectionRenderer;
+		this.orderWriter = objectMapper.writerFor(Order.class);
+		this.orderListWriter = objectMapper.writerFor(new TypeReference<List<Order>>() {
+		});
 	}
 
+	/*
+	 * The read endpoints go through the `reads` SingleFlight: when many clients ask
+	 * for the same thing at once, one of them loads and renders it and all of them get
+	 * those bytes. HAL links are built from the request, so HAL keys include its base
+	 * URI. Every key names the order id it depends on (or "all"), which is how writes
+	 * detach the loads they might race with (see CacheConfiguration).
+	 *
+	 * Repository calls go through the DatabaseGuard, and while the database is
+	 * unavailable these endpoints answer with the last response they rendered for the
+	 * same key, marked as stale (see LastKnownResponses). The `?ids` and `?status`
+	 * queries don't: there are as many of those as clients care to make up.
+	 */
 	@GetMapping("/orders")
-	CollectionModel<EntityModel<Order>> all() {
+	ResponseEntity<byte[]> all() {
+
+		// Large collections are assembled and serialized in parallel chunks.
+		return hal("hal:all:" + baseUri(), () -> collectionRenderer.render( //
+				database.read(DatabaseGuard.ORDERS, orderRepository::findAllInAnyPartition), assembler::toModel,
+				Order.class, linkTo(methodOn(OrderController.class).all()).withSelfRel()));
+	}
+
+	/**
+	 * `?embed=employee` puts each order's employee under its `_embedded`, for screens
+	 * that list orders by who handles them. The employees are fetched with the orders
+	 * (see PartitionedOrderRepository), never one query per order.
+	 */
+	@GetMapping(value = "/orders", params = { "embed", "!ids" })
+	ResponseEntity<byte[]> allWithEmbedded(@RequestParam String embed) {
+
+		embedsEmployee(embed);
+
+		return hal("hal:all:employee:" + baseUri(), () -> collectionRenderer.render( //
+				database.read(DatabaseGuard.ORDERS, orderRepository::findAllWithEmployeesInAnyPartition),
+				assembler::toModelWithEmployee, Order.class, linkTo(methodOn(OrderController.class).all()).withSelfRel()));
+	}
+
+	// `employee` is the only relation that can be embedded so far.
+	private static boolean embedsEmployee(String embed) {
+
+		if (embed == null) {
+			return false;
+		}
+		if (!"employee".equals(embed)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported embed " + embed + ", use employee");
+		}
+		return true;
+	}
+
+	/**
+	 * Several orders at once, for pages that show many: `GET /orders?ids=3,1,2` looks
+	 * them all up with one IN query instead of a round trip per id, and renders them
+	 * in the order they were asked for. Ids that don't exist are listed under
+	 * `missing` rather than failing the request with a 404. `embed=employee` works
+	 * here too.
+	 */
+	@GetMapping(value = "/orders", params = "ids")
+	ResponseEntity<byte[]> some(@RequestParam List<Long> ids, @RequestParam(required = false) String embed) {
+
+		Set<Long> requested = requestedIds(ids);
+		boolean withEmployees = embedsEmployee(embed);
+		String key = "hal:" + requested.stream().map(String::valueOf).collect(Collectors.joining(":", "ids:", ":"))
+				+ (withEmployees ? "employee:" : "") + baseUri();
+
+		return fresh(MediaTypes.HAL_JSON, key, () -> halRenderer.render(findOrders(requested, withEmployees)));
+	}
+
+	/**
+	 * The plain JSON multi-get: the orders found, in the order their ids were asked
+	 * for. Which ids are missing is left for the caller to work out. Embedding is a HAL
+	 * matter, so `embed=employee` is answered with HAL like GET /orders?embed=employee.
+	 */
+	@GetMapping(value = "/orders", params = "ids", produces = MediaType.APPLICATION_JSON_VALUE)
+	ResponseEntity<byte[]> someAsJson(@RequestParam List<Long> ids, @RequestParam(required = false) String embed) {
+
+		if (embedsEmployee(embed)) {
+			return some(ids, embed);
+		}
+
+		Set<Long> requested = requestedIds(ids);
+		String key = "json:" + requested.stream().map(String::valueOf).collect(Collectors.joining(":", "ids:", ":"));
+
+		return fresh(MediaType.APPLICATION_JSON, key,
+				() -> write(orderListWriter, findOrders(requested, new ArrayList<>())));
+	}
+
+	private static Set<Long> requestedIds(List<Long> ids) {
+
+		Set<Long> requested = new LinkedHashSet<>(ids);
+		requested.remove(null);
+
+		if (requested.size() > MAX_IDS) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"At most " + MAX_IDS + " ids can be fetched at once, got " + requested.size());
+		}
+		return requested;
+	}
+
+	// The self link lists the ids the way they're documented, `ids=3,1,2`.
+	private MultiGetModel<EntityModel<Order>> findOrders(Set<Long> ids, boolean withEmployees) {
+
+		List<Long> missing = new ArrayList<>();
+		List<Order> orders = findOrders(ids, missing);
+
+		Function<Order, EntityModel<Order>> toModel = assembler::toModel;
+		if (withEmployees) {
+			database.read(DatabaseGuard.EMPLOYEES, () -> {
+				orderRepository.fetchEmployees(orders);
+				return orders;
+			});
+			toModel = assembler::toModelWithEmployee;
+		}
+
+		UriComponentsBuilder self = linkTo(methodOn(OrderController.class).all()).toUriComponentsBuilder() //
+				.queryParam("ids", ids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+		if (withEmployees) {
+			self.queryParam("embed", "employee");
+		}
+
+		return new MultiGetModel<>(orders.stream().map(toModel).collect(Collectors.toList()), missing,
+				Link.of(self.toUriString()).withSelfRel());
+	}
+
+	// The orders with `ids` in that order, queued ones included; the others go to `missing`.
+	private List<Order> findOrders(Set<Long> ids, List<Long> missing) {
+
+		Map<Long, Order> found = new HashMap<>();
+		database.read(DatabaseGuard.ORDERS, () -> orderRepository.findAllInAnyPartition(ids)) //
+				.forEach(order -> found.put(order.getId(), order));
+
+		List<Order> orders = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			Order order = found.containsKey(id) ? found.get(id) : writeBehind.findPending(id).orElse(null);
+			if (order != null) {
+				orders.add(order);
+			} else {
+				missing.add(id);
+			}
+		}
+		return orders;
+	}
+
+	/**
+	 * The orders in one status, `limit` at a time in id order: `GET
+	 * /orders?status=IN_PROGRESS`, then follow the `next` link. The ids come from the
+	 * OrderStatusIndex, so a page costs one multi-get however many orders there are in
+	 * other statuses. An order that changed status since the index was asked is left
+	 * out of the page.
+	 */
+	@GetMapping(value = "/orders", params = { "status", "!ids", "!embed" })
+	ResponseEntity<byte[]> inStatus(@RequestParam Status status, @RequestParam(defaultValue = "0") long after,
+			@RequestParam(defaultValue = "1000") int limit) {
+
+		statusLimit(limit);
+
+		String key = "hal:all:status:" + status + ":" + after + ":" + limit + ":" + baseUri();
+		return fresh(MediaTypes.HAL_JSON, key, () -> {
+
+			long[] ids = statusIndex.ids(status, after, limit);
+			List<EntityModel<Order>> orders = findInStatus(status, ids).stream().map(assembler::toModel)
+					.collect(Collectors.toList());
+
+			List<Link> links = new ArrayList<>();
+			links.add(linkTo(methodOn(OrderController.class).inStatus(status, after, limit)).withSelfRel());
+			if (ids.length == limit) {
+				links.add(linkTo(methodOn(OrderController.class).inStatus(status, ids[ids.length - 1], limit))
+						.withRel(IanaLinkRelations.NEXT));
+			}
+			return halRenderer.render(CollectionModel.of(orders, links));
+		});
+	}
+
+	/**
+	 * The plain JSON page of orders in one status. Without a `next` link, a caller
+	 * pages on by passing the last id as `after` for as long as it gets full pages.
+	 */
+	@GetMapping(value = "/orders", params = { "status", "!ids", "!embed" }, produces = MediaType.APPLICATION_JSON_VALUE)
+	ResponseEntity<byte[]> inStatusAsJson(@RequestParam Status status, @RequestParam(defaultValue = "0") long after,
+			@RequestParam(defaultValue = "1000") int limit) {
+
+		statusLimit(limit);
+
+		return fresh(MediaType.APPLICATION_JSON, "json:all:status:" + status + ":" + after + ":" + limit + ":",
+				() -> write(orderListWriter, findInStatus(status, statusIndex.ids(status, after, limit))));
+	}
+
+	private void statusLimit(int limit) {
+
+		if (limit < 1 || limit > MAX_IDS) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid limit " + limit + ", use 1 to " + MAX_IDS);
+		}
+		statusIndexReady();
+	}
+
+	// An order that changed status since the index was asked is left out.
+	private List<Order> findInStatus(Status status, long[] ids) {
+
+		Set<Long> wanted = new LinkedHashSet<>(ids.length);
+		for (long id : ids) {
+			wanted.add(id);
+		}
+
+		List<Order> orders = findOrders(wanted, new ArrayList<>());
+		orders.removeIf(order -> order.getStatus() != status);
+		return orders;
+	}
+
+	/**
+	 * How many orders there are in each status, from the OrderStatusIndex.
+	 */
+	@GetMapping("/orders/counts")
+	EntityModel<OrderStatusIndex.Counts> counts() {
+
+		statusIndexReady();
+
+		return EntityModel.of(new OrderStatusIndex.Counts(statusIndex.counts()), //
+				linkTo(methodOn(OrderController.class).counts()).withSelfRel(), //
+				linkTo(methodOn(OrderController.class).all()).withRel("orders"));
+	}
+
+	/**
+	 * The amounts of all orders per currency and status, from the OrderTotals, in
+	 * minor units of the currency.
+	 */
+	@GetMapping("/orders/totals")
+	EntityModel<OrderTotals.Totals> totals() {
+
+		return EntityModel.of(new OrderTotals.Totals(totals.totals(), totals.reconciledAt()), //
+				linkTo(methodOn(OrderController.class).totals()).withSelfRel(), //
+				linkTo(methodOn(OrderController.class).counts()).withRel("counts"));
+	}
+
+	// Filled by a scan right after startup.
+	private void statusIndexReady() {
+
+		if (!statusIndex.isReady()) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+					"Order statuses are still being indexed, try again shortly");
+		}
+	}
+
+	/**
+	 * Internal service-to-service callers don't need hypermedia. When they ask for
+	 * plain application/json (and only then, HAL stays the default) the
+	 * OrderModelAssembler is skipped entirely and the orders are serialized straight
+	 * to bytes.
+	 */
+	@GetMapping(value = "/orders", produces = MediaType.APPLICATION_JSON_VALUE)
+	ResponseEntity<byte[]> allAsJson() {
+		return json("json:all:", () -> write(orderListWriter,
+				database.read(DatabaseGuard.ORDERS, orderRepository::findAllInAnyPartition)));
+	}
+
+	@GetMapping(value = "/orders/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+	ResponseEntity<byte[]> oneAsJson(@PathVariable Long id) {
+		return json("json:" + id + ":", () -> write(orderWriter, findOrder(id)));
+	}
+
+	private ResponseEntity<byte[]> json(String key, Supplier<byte[]> render) {
+		return lastKnown.serve(key, MediaType.APPLICATION_JSON, () -> reads.load(ReadRouting.coalescing(key), render));
+	}
 
-		List<EntityModel<Order>> orders = orderRepository.findAll().stream() //
-				.map(assembler::toModel) //
-				.collect(Collectors.toList());
+	private ResponseEntity<byte[]> hal(String key, Supplier<byte[]> render) {
+		return lastKnown.serve(key, MediaTypes.HAL_JSON, () -> reads.load(ReadRouting.coalescing(key), render));
+	}
 
-		return CollectionModel.of(orders, //
-				linkTo(methodOn(OrderController.class).all()).withSelfRel());
+	// For the multi-gets and pages, whose keys are the client's choice.
+	private ResponseEntity<byte[]> fresh(MediaType contentType, String key, Supplier<byte[]> render) {
+		return ResponseEntity.ok().contentType(contentType).body(reads.load(ReadRouting.coalescing(key), render));
+	}
+
+	private static byte[] write(ObjectWriter writer, Object value) {
+
+		FlightEvents.Serialization event = new FlightEvents.Serialization();
+		event.begin();
+
+		byte[] bytes;
+		try (Span span = Tracing.child("serialize json")) {
+			bytes = writer.writeValueAsBytes(value);
+			span.tag("bytes", bytes.length);
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (event.shouldCommit()) {
+			event.format = "json";
+			event.rows = FlightEvents.rows(value);
+			event.bytes = bytes.length;
+			event.commit();
+		}
+		return bytes;
+	}
+
+	private static String baseUri() {
+		return ServletUriComponentsBuilder.fromCurrentContextPath().toUriString();
+	}
+
+	/**
+	 * Bulk export for analytics jobs. Rows are streamed straight from a JDBC cursor
+	 * by the OrderExporter, bypassing JPA and the OrderModelAssembler entirely, so
+	 * this runs in constant memory however large the table is. `since` only exports
+	 * orders with a greater id, which lets a job pick up where it left off.
+	 */
+	@GetMapping("/orders/export")
+	ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+			@RequestParam(required = false) Long since) {
+
+		if ("ndjson".equals(format)) {
+			return ResponseEntity.ok() //
+					.contentType(NDJSON) //
+					.body(out -> exporter.writeNdjson(since, out));
+		}
+
+		if ("csv".equals(format)) {
+			return ResponseEntity.ok() //
+					.contentType(CSV) //
+					.body(out -> exporter.writeCsv(since, out));
+		}
+
+		throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+				"Unsupported export format " + format + ", use ndjson or csv");
+	}
+
+	/**
+	 * How many orders were placed, completed and cancelled over the last `window`
+	 * (`30s`, `5m`, `PT1H`, ...). Answered from the in-memory OrderActivity buckets,
+	 * so it costs the same whether there were ten orders or ten million.
+	 */
+	@GetMapping("/orders/metrics")
+	EntityModel<OrderActivity.Window> metrics(@RequestParam(defaultValue = "1m") String window) {
+
+		try {
+			return EntityModel.of(activity.window(DurationStyle.detectAndParse(window)), //
+					linkTo(methodOn(OrderController.class).metrics(window)).withSelfRel(), //
+					linkTo(methodOn(OrderController.class).all()).withRel("orders"));
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Invalid window " + window + ", use e.g. 30s, 5m or PT1H, at most " + activity.retention(), e);
+		}
+	}
+
+	/**
+	 * Delta sync for clients that keep a local copy of the orders: those created or
+	 * changed after change sequence `since` (0 for everything), oldest change first
+	 * and at most `limit` of them, each in its current state. Pass the returned
+	 * `next` as `since` to continue; an empty page means the client is up to date.
+	 * Answered from the index on the change sequence, so it costs what changed, not
+	 * the size of the table.
+	 */
+	@GetMapping("/orders/changes")
+	ChangeSetModel<EntityModel<Order>> changes(@RequestParam(defaultValue = "0") long since,
+			@RequestParam(defaultValue = "1000") int limit) {
+
+		if (limit < 1 || limit > MAX_CHANGES) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Invalid limit " + limit + ", use 1 to " + MAX_CHANGES);
+		}
+
+		long upTo = changeSequence.horizon();
+		List<Order> changed = database.read(DatabaseGuard.ORDERS,
+				() -> orderRepository.findChangedInAnyPartition(since, upTo, limit));
+		long next = changed.isEmpty() ? since : changed.get(changed.size() - 1).getChangeSeq();
+
+		return new ChangeSetModel<>(changed.stream().map(assembler::toModel).collect(Collectors.toList()),
+				Collections.emptyList(), next, //
+				linkTo(methodOn(OrderController.class).changes(since, limit)).withSelfRel(), //
+				linkTo(methodOn(OrderController.class).changes(next, limit)).withRel(IanaLinkRelations.NEXT));
+	}
+
+	/**
+	 * The audit trail of one order, read from the OrderHistory log rather than
+	 * CUSTOMER_ORDER, which only knows the current status.
+	 */
+	@GetMapping("/orders/{id}/history")
+	CollectionModel<OrderHistory.Transition> history(@PathVariable Long id) {
+
+		List<OrderHistory.Transition> transitions = history.of(id);
+		if (transitions.isEmpty()) {
+			findOrder(id);
+		}
+
+		return CollectionModel.of(transitions, //
+				linkTo(methodOn(OrderController.class).history(id)).withSelfRel(), //
+				linkTo(methodOn(OrderController.class).one(id)).withRel("order"));
+	}
+
+	/**
+	 * Every transition of any order between `from` (inclusive) and `to` (exclusive,
+	 * default now), oldest first and at most `limit` of them; page on by passing the
+	 * last `at` as the next `from`.
+	 */
+	@GetMapping("/orders/history")
+	CollectionModel<OrderHistory.Transition> historyBetween(@RequestParam Instant from,
+			@RequestParam(required = false) Instant to, @RequestParam(defaultValue = "1000") int limit) {
+
+		if (limit < 1 || limit > MAX_TRANSITIONS) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Invalid limit " + limit + ", use 1 to " + MAX_TRANSITIONS);
+		}
+
+		Instant until = to != null ? to : Instant.now();
+
+		return CollectionModel.of(history.between(from, until, limit), //
+				linkTo(methodOn(OrderController.class).historyBetween(from, until, limit)).withSelfRel());
 	}
 
 	@GetMapping("/orders/{id}")
-	EntityModel<Order> one(@PathVariable Long id) {
+	ResponseEntity<byte[]> one(@PathVariable Long id) {
 
-		Order order = orderRepository.findById(id) //
-				.orElseThrow(() -> new OrderNotFoundException(id));
+		return hal("hal:" + id + ":" + baseUri(), () -> halRenderer.render(assembler.toModel(findOrder(id))));
+	}
+
+	@GetMapping(value = "/orders/{id}", params = "embed")
+	ResponseEntity<byte[]> oneWithEmbedded(@PathVariable Long id, @RequestParam String embed) {
+
+		embedsEmployee(embed);
+
+		return hal("hal:" + id + ":employee:" + baseUri(), () -> {
+			Order order = findOrder(id);
+			database.read(DatabaseGuard.EMPLOYEES, () -> {
+				orderRepository.fetchEmployees(Collections.singletonList(order));
+				return order;
+			});
+			return halRenderer.render(assembler.toModelWithEmployee(order));
+		});
+	}
+
+	// An order accepted by the write-behind queue is visible before it is committed.
+	private Order findOrder(Long id) {
 
-		return assembler.toModel(order);
+		return orderMisses.find(id, key -> {
+			Optional<Order> stored = database.read(DatabaseGuard.ORDERS, () -> orderRepository.findInAnyPartition(key));
+			return stored.isPresent() ? stored : writeBehind.findPending(key);
+		}).orElseThrow(() -> new OrderNotFoundException(id));
+	}
+
+	// Transitions need a committed order, one that is still queued can't be saved yet.
+	// It is looked up on this thread so that the save that follows finds it in the
+	// persistence context.
+	private Order findStoredOrder(Long id) {
+
+		return orderMisses
+				.find(id, key -> database.write(DatabaseGuard.ORDERS, () -> orderRepository.findInAnyPartition(key))) //
+				.orElseThrow(() -> new OrderNotFoundException(id));
 	}
 
 	@PostMapping("/orders")
-	ResponseEntity<EntityModel<Order>> newOrder(@RequestBody Order order) {
+	ResponseEntity<?> newOrder(@RequestBody Order order) {
+
+		if (order.getDescription() != null && order.getDescription().length() > Order.DESCRIPTION_LENGTH) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Descriptions are limited to " + Order.DESCRIPTION_LENGTH + " characters");
+		}
+
+		if ((order.getAmount() == null) != (order.getCurrency() == null)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "An amount needs a currency and vice versa");
+		}
+		if (order.getAmount() != null) {
+			if (order.getAmount() < 0) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid amount " + order.getAmount());
+			}
+			try {
+				Currency.getInstance(order.getCurrency());
+			} catch (IllegalArgumentException e) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+						"Unknown currency " + order.getCurrency() + ", use an ISO 4217 code");
+			}
+		}
+
+		if (order.getEmployeeId() != null
+				&& !database.read(DatabaseGuard.EMPLOYEES,
+						() -> ReadRouting.onPrimary(() -> employeeRepository.existsById(order.getEmployeeId())))) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Could not find employee " + order.getEmployeeId());
+		}
 
 		order.setStatus(Status.IN_PROGRESS);
-		Order newOrder = orderRepository.save(order);
+
+		if (writeBehind.isEnabled()) {
+			return enqueue(order);
+		}
+
+		Order newOrder = database.write(DatabaseGuard.ORDERS, () -> orderRepository.save(order));
+		commits.committed(newOrder, null, Status.IN_PROGRESS);
 
 		return ResponseEntity //
 				.created(linkTo(methodOn(OrderController.class).one(newOrder.getId())).toUri()) //
 				.body(assembler.toModel(newOrder));
 	}
 
+	/**
+	 * In write-behind mode the order is only queued: the client gets 202 Accepted and
+	 * a link to poll, while the OrderWriteBehind commits it together with its
+	 * neighbours. A full queue is answered with 503 and a Retry-After hint.
+	 */
+	private ResponseEntity<?> enqueue(Order order) {
+
+		return writeBehind.enqueue(order) //
+				.<ResponseEntity<?>> map(accepted -> {
+					invalidations.invalidate(ClusterInvalidations.ORDERS, accepted.getId());
+					return ResponseEntity //
+							.accepted() //
+							.location(linkTo(methodOn(OrderController.class).one(accepted.getId())).toUri()) //
+							.body(assembler.toModel(accepted));
+				}) //
+				.orElseGet(() -> ResponseEntity //
+						.status(HttpStatus.SERVICE_UNAVAILABLE) //
+						.header(HttpHeaders.RETRY_AFTER, "1") //
+						.header(HttpHeaders.CONTENT_TYPE, MediaTypes.HTTP_PROBLEM_DETAILS_JSON_VALUE) //
+						.body(Problem.create() //
+								.withTitle("Service unavailable") //
+								.withDetail("Too many orders are waiting to be written, try again later")));
+	}
+
 	/**
 	 * It checks the Order status before allowing it to be cancelled.
 	 * 
 	 * If it’s not a valid state, it returns an RFC-7807 Problem, a
 	 * hypermedia-supporting error container.
 	 * 
-	 * If the transition is indeed valid, it transitions the Order to CANCELLED.
+	 * If the transition is indeed valid, it transitions the Order to CANCELLED. Should
+	 * the order have moved on in the meantime, completed by a fulfillment worker say,
+	 * nothing is written and the client gets 409 Conflict.
 	 */
 	@DeleteMapping("/orders/{id}/cancel")
 	ResponseEntity<?> cancel(@PathVariable Long id) {
 
-		Order order = orderRepository.findById(id) //
-				.orElseThrow(() -> new OrderNotFoundException(id));
+		Order order = findStoredOrder(id);
 
 		if (order.getStatus() == Status.IN_PROGRESS) {
-			order.setStatus(Status.CANCELLED);
-			return ResponseEntity.ok(assembler.toModel(orderRepository.save(order)));
+			if (!database.write(DatabaseGuard.ORDERS,
+					() -> orderRepository.transition(order, Status.IN_PROGRESS, Status.CANCELLED))) {
+				return changedMeanwhile(id, "cancel");
+			}
+			commits.committed(order, Status.IN_PROGRESS, Status.CANCELLED);
+			return ResponseEntity.ok(assembler.toModel(order));
 		}
 
 		return ResponseEntity //
@@ -97,12 +663,15 @@ class OrderController {
 	@PutMapping("/orders/{id}/complete")
 	ResponseEntity<?> complete(@PathVariable Long id) {
 
-		Order order = orderRepository.findById(id) //
-				.orElseThrow(() -> new OrderNotFoundException(id));
+		Order order = findStoredOrder(id);
 
 		if (order.getStatus() == Status.IN_PROGRESS) {
-			order.setStatus(Status.COMPLETED);
-			return ResponseEntity.ok(assembler.toModel(orderRepository.save(order)));
+			if (!database.write(DatabaseGuard.ORDERS,
+					() -> orderRepository.transition(order, Status.IN_PROGRESS, Status.COMPLETED))) {
+				return changedMeanwhile(id, "complete");
+			}
+			commits.committed(order, Status.IN_PROGRESS, Status.COMPLETED);
+			return ResponseEntity.ok(assembler.toModel(order));
 		}
 
 		return ResponseEntity //
@@ -112,4 +681,16 @@ class OrderController {
 						.withTitle("Method not allowed") //
 						.withDetail("You can't complete an order that is in the " + order.getStatus() + " status"));
 	}
-}
\ No newline at end of file
+
+	private ResponseEntity<?> changedMeanwhile(Long id, String transition) {
+
+		invalidations.invalidate(ClusterInvalidations.ORDERS, id);
+		return ResponseEntity //
+				.status(HttpStatus.CONFLICT) //
+				.header(HttpHeaders.CONTENT_TYPE, MediaTypes.HTTP_PROBLEM_DETAILS_JSON_VALUE) //
+				.body(Problem.create() //
+						.withTitle("Conflict") //
+						.withDetail("Order " + id + " changed status while you tried to " + transition
+								+ " it, look it up again"));
+	}
+}
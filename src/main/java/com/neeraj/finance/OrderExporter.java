@@ -0,0 +1,140 @@
+package com.neeraj.finance;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Streams the CUSTOMER_ORDER table for bulk consumers (the nightly analytics pull).
+ *
+ * It deliberately goes around JPA: rows are read from a forward-only, read-only JDBC
+ * cursor with a tuned fetch size and written to the response one at a time, so no
+ * Order entities, persistence context or HAL models are ever built and memory stays
+ * constant no matter how many rows are exported.
+ */
+@Component
+class OrderExporter {
+
+	private final JdbcTemplate jdbcTemplate;
+	private final String selectOrders;
+
+	// The servlet owns the response stream, we only flush it.
+	private final JsonFactory jsonFactory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+	OrderExporter(DataSource dataSource, OrderArchive archive,
+			@Value("${finance.orders.export.fetch-size:1000}") int fetchSize) {
+
+		// A private JdbcTemplate so the fetch size doesn't leak into other JDBC users.
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(fetchSize);
+
+		// `status` holds the Status code written by the StatusConverter.
+		// Archived orders live in their own partitions, so the export reads them too;
+		// only then does the database have to merge (and sort) several tables.
+		StringBuilder orders = new StringBuilder("customer_order");
+		if (archive.isEnabled()) {
+			orders.insert(0, "(SELECT id, description, status FROM ");
+			archive.tables().forEach(table -> orders.append(" UNION ALL SELECT id, description, status FROM ").append(table));
+			orders.append(") AS all_orders");
+		}
+		this.selectOrders = "SELECT id, description, status FROM " + orders + " WHERE id > ? ORDER BY id";
+	}
+
+	/**
+	 * Writes one JSON object per line: {"id":1,"description":"...","status":"..."}
+	 */
+	void writeNdjson(Long since, OutputStream out) throws IOException {
+
+		try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+
+			generator.setRootValueSeparator(null);
+
+			streamOrders(since, rs -> {
+				try {
+					generator.writeStartObject();
+					generator.writeNumberField("id", rs.getLong(1));
+					generator.writeStringField("description", rs.getString(2));
+					generator.writeStringField("status", status(rs));
+					generator.writeEndObject();
+					generator.writeRaw('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes an RFC-4180 CSV document with an `id,description,status` header row.
+	 */
+	void writeCsv(Long since, OutputStream out) throws IOException {
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+		writer.write("id,description,status\r\n");
+
+		streamOrders(since, rs -> {
+			try {
+				writer.write(Long.toString(rs.getLong(1)));
+				writer.write(',');
+				writeCsvField(writer, rs.getString(2));
+				writer.write(',');
+				writeCsvField(writer, status(rs));
+				writer.write("\r\n");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		writer.flush();
+	}
+
+	private void streamOrders(Long since, RowCallbackHandler handler) throws IOException {
+
+		try {
+			jdbcTemplate.query(selectOrders, handler, since == null ? Long.MIN_VALUE : since);
+		} catch (UncheckedIOException e) {
+			// Most likely the client went away, let the caller see the original failure.
+			throw e.getCause();
+		}
+	}
+
+	private static String status(ResultSet rs) throws SQLException {
+
+		int code = rs.getInt(3);
+		return rs.wasNull() ? null : Status.fromCode(code).name();
+	}
+
+	private static void writeCsvField(Writer writer, String value) throws IOException {
+
+		if (value == null) {
+			return;
+		}
+
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			writer.write(value);
+			return;
+		}
+
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+}
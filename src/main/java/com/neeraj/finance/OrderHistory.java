@@ -0,0 +1,344 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * The audit trail of every order: one record per status transition, kept outside
+ * CUSTOMER_ORDER so that auditing never rewrites (or bloats) the main table.
+ *
+ * Transitions are appended to memory-mapped segment files of
+ * `finance.orders.history.segment-records` fixed-width records each:
+ *
+ * `order id (long) | epoch millis (long) | from status (byte, -1 for a new order) |
+ * to status (byte) | 6 bytes reserved`
+ *
+ * An append is a handful of stores into the mapping; the page cache writes it back
+ * and segments are only forced to disk when they roll over or the app shuts down.
+ * A full segment is never written again. Files are named after the number of their
+ * first record and live in `finance.orders.history.directory` (a fresh temporary
+ * directory when unset, which suits the in-memory database, and is deleted again on
+ * shutdown).
+ *
+ * Two indexes make reads cheap: an in-memory map from order id to its record numbers
+ * for GET /orders/{id}/history, and the time span of each segment for range scans.
+ * Records are appended in time order, so a scan skips whole segments and binary
+ * searches its starting point within the first one. Both are rebuilt from the
+ * segments at startup.
+ */
+@Component
+class OrderHistory {
+
+	static final int RECORD_BYTES = 24;
+
+	private static final byte NEW = -1;
+
+	private final String directoryName;
+	private final int segmentRecords;
+
+	private final List<Segment> segments = new CopyOnWriteArrayList<>();
+	private final Map<Long, long[]> index = new ConcurrentHashMap<>();
+
+	private Path directory;
+	private boolean temporary;
+	private Segment active;
+	private long lastMillis;
+
+	OrderHistory(@Value("${finance.orders.history.directory:}") String directory,
+			@Value("${finance.orders.history.segment-records:65536}") int segmentRecords) {
+
+		this.directoryName = directory;
+		this.segmentRecords = segmentRecords;
+	}
+
+	@PostConstruct
+	void open() throws IOException {
+
+		temporary = directoryName.isEmpty();
+		directory = temporary ? Files.createTempDirectory("order-history")
+				: Files.createDirectories(Paths.get(directoryName));
+
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.log")) {
+			stream.forEach(files::add);
+		}
+		files.sort(null);
+
+		for (Path file : files) {
+			Segment segment = new Segment(file, Long.parseLong(file.getFileName().toString().replace(".log", "")),
+					segmentRecords);
+			for (int i = 0; i < segment.count; i++) {
+				addToIndex(segment.orderId(i), segment.base + i);
+			}
+			segments.add(segment);
+			active = segment;
+			lastMillis = Math.max(lastMillis, segment.maxMillis);
+		}
+
+		if (active == null) {
+			roll(0);
+		}
+	}
+
+	@PreDestroy
+	synchronized void close() throws IOException {
+
+		for (Segment segment : segments) {
+			segment.close();
+		}
+		if (temporary) {
+			FileSystemUtils.deleteRecursively(directory);
+		}
+	}
+
+	/**
+	 * Records that `orderId` moved from `from` (null for a new order) to `to`.
+	 */
+	synchronized void record(Long orderId, Status from, Status to) {
+
+		if (active.isFull()) {
+			try {
+				active.force();
+				roll(active.base + active.count);
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not roll the order history", e);
+			}
+		}
+
+		// Keep the log in time order even if the wall clock steps back.
+		lastMillis = Math.max(lastMillis, System.currentTimeMillis());
+
+		active.append(orderId, lastMillis, from == null ? NEW : from.getCode(), to.getCode());
+		addToIndex(orderId, active.base + active.count - 1);
+	}
+
+	/**
+	 * Every recorded transition of one order, oldest first.
+	 */
+	List<Transition> of(Long orderId) {
+
+		long[] records = index.get(orderId);
+		if (records == null) {
+			return new ArrayList<>();
+		}
+
+		List<Transition> transitions = new ArrayList<>(records.length);
+		for (long record : records) {
+			Segment segment = segmentOf(record);
+			transitions.add(segment.read((int) (record - segment.base)));
+		}
+		return transitions;
+	}
+
+	/**
+	 * Up to `limit` transitions of any order with `from <= at < to`, oldest first.
+	 */
+	List<Transition> between(Instant from, Instant to, int limit) {
+
+		long fromMillis = from.toEpochMilli();
+		long toMillis = to.toEpochMilli();
+
+		List<Transition> transitions = new ArrayList<>();
+		for (Segment segment : segments) {
+
+			int count = segment.count;
+			if (count == 0 || segment.maxMillis < fromMillis) {
+				continue;
+			}
+			if (segment.minMillis >= toMillis) {
+				break;
+			}
+
+			for (int i = segment.firstAtOrAfter(fromMillis, count); i < count; i++) {
+				if (segment.millis(i) >= toMillis || transitions.size() == limit) {
+					return transitions;
+				}
+				transitions.add(segment.read(i));
+			}
+		}
+		return transitions;
+	}
+
+	// Only the writer adds records, but readers must never see a half-copied array.
+	private void addToIndex(long orderId, long record) {
+
+		index.merge(orderId, new long[] { record }, (records, added) -> {
+			long[] merged = Arrays.copyOf(records, records.length + 1);
+			merged[records.length] = added[0];
+			return merged;
+		});
+	}
+
+	private Segment segmentOf(long record) {
+
+		int low = 0;
+		int high = segments.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (segments.get(middle).base <= record) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return segments.get(low);
+	}
+
+	private void roll(long base) throws IOException {
+
+		active = new Segment(directory.resolve(String.format("%020d.log", base)), base, segmentRecords);
+		segments.add(active);
+	}
+
+	/**
+	 * One memory-mapped segment file. Readers only look at records below `count`,
+	 * which is published after the record is written.
+	 */
+	private static class Segment {
+
+		final long base;
+		private final int capacity;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+
+		volatile int count;
+		volatile long minMillis;
+		volatile long maxMillis;
+
+		Segment(Path file, long base, int capacity) throws IOException {
+
+			this.base = base;
+			this.capacity = capacity;
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_BYTES);
+
+			// Every record has a timestamp, so the first zero one is where we stopped.
+			int records = 0;
+			while (records < capacity && millis(records) != 0) {
+				records++;
+			}
+			if (records > 0) {
+				minMillis = millis(0);
+				maxMillis = millis(records - 1);
+			}
+			count = records;
+		}
+
+		boolean isFull() {
+			return count == capacity;
+		}
+
+		void append(long orderId, long millis, byte from, byte to) {
+
+			int offset = count * RECORD_BYTES;
+			buffer.putLong(offset, orderId);
+			buffer.putLong(offset + 8, millis);
+			buffer.put(offset + 16, from);
+			buffer.put(offset + 17, to);
+
+			if (count == 0) {
+				minMillis = millis;
+			}
+			maxMillis = millis;
+			count = count + 1;
+		}
+
+		long orderId(int record) {
+			return buffer.getLong(record * RECORD_BYTES);
+		}
+
+		long millis(int record) {
+			return buffer.getLong(record * RECORD_BYTES + 8);
+		}
+
+		Transition read(int record) {
+
+			int offset = record * RECORD_BYTES;
+			byte from = buffer.get(offset + 16);
+
+			return new Transition(orderId(record), from == NEW ? null : Status.fromCode(from),
+					Status.fromCode(buffer.get(offset + 17)), Instant.ofEpochMilli(millis(record)));
+		}
+
+		int firstAtOrAfter(long millis, int count) {
+
+			int low = 0;
+			int high = count;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (millis(middle) < millis) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		void force() {
+			buffer.force();
+		}
+
+		void close() throws IOException {
+
+			force();
+			channel.close();
+		}
+	}
+
+	/**
+	 * One status change of one order.
+	 */
+	static class Transition {
+
+		private final Long orderId;
+		private final Status from;
+		private final Status to;
+		private final Instant at;
+
+		Transition(Long orderId, Status from, Status to, Instant at) {
+
+			this.orderId = orderId;
+			this.from = from;
+			this.to = to;
+			this.at = at;
+		}
+
+		public Long getOrderId() {
+			return orderId;
+		}
+
+		public Status getFrom() {
+			return from;
+		}
+
+		public Status getTo() {
+			return to;
+		}
+
+		public Instant getAt() {
+			return at;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.neeraj.finance;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out order ids without a database round trip per order.
+ *
+ * Ids are reserved a block at a time from the same `hibernate_sequence` that backs
+ * Order's @GeneratedValue, so they never collide with orders saved through JPA.
+ */
+@Component
+class OrderIdAllocator {
+
+	private final JdbcTemplate jdbcTemplate;
+	private final int blockSize;
+
+	// Guarded by `this`.
+	private final Deque<Long> block = new ArrayDeque<>();
+
+	OrderIdAllocator(DataSource dataSource, @Value("${finance.orders.write-behind.id-block-size:100}") int blockSize) {
+
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.blockSize = blockSize;
+	}
+
+	synchronized long next() {
+
+		if (block.isEmpty()) {
+			block.addAll(jdbcTemplate.queryForList( //
+					"SELECT NEXT VALUE FOR hibernate_sequence FROM SYSTEM_RANGE(1, ?)", Long.class, blockSize));
+		}
+
+		return block.removeFirst();
+	}
+}
@@ -0,0 +1,108 @@
+package com.neeraj.finance;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A local append-only file of accepted-but-not-yet-committed orders.
+ *
+ * Each record is `id (long) | status code (byte) | created at (epoch millis, long) |
+ * employee id (long, 0 for none) | amount (long) | currency (UTF, empty for no
+ * amount) | description (UTF)` and is forced
+ * to disk before append() returns, so an order that was acknowledged with 202 can
+ * always be recovered by replaying the journal after a crash. Once everything queued
+ * has been committed to the database, the journal is truncated.
+ */
+class OrderJournal implements AutoCloseable {
+
+	private final FileChannel channel;
+
+	OrderJournal(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.channel.position(this.channel.size());
+	}
+
+	void append(Order order) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeLong(order.getId());
+			out.writeByte(order.getStatus().getCode());
+			out.writeLong(order.getCreatedAt().toEpochMilli());
+			out.writeLong(order.getEmployeeId() == null ? 0 : order.getEmployeeId());
+			out.writeLong(order.getAmount() == null ? 0 : order.getAmount());
+			out.writeUTF(order.getCurrency() == null ? "" : order.getCurrency());
+			out.writeUTF(order.getDescription() == null ? "" : order.getDescription());
+		}
+
+		ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+		while (record.hasRemaining()) {
+			channel.write(record);
+		}
+		channel.force(false);
+	}
+
+	/**
+	 * Reads back every complete record. A torn record at the tail (we crashed in the
+	 * middle of append()) was never acknowledged, so it is dropped.
+	 */
+	List<Order> replay() throws IOException {
+
+		List<Order> orders = new ArrayList<>();
+
+		channel.position(0);
+		InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+		DataInputStream data = new DataInputStream(in);
+		try {
+			while (true) {
+				long id = data.readLong();
+				Status status = Status.fromCode(data.readByte());
+				Instant createdAt = Instant.ofEpochMilli(data.readLong());
+				long employeeId = data.readLong();
+				long amount = data.readLong();
+				String currency = data.readUTF();
+				Order order = new Order(data.readUTF(), status);
+				order.setEmployeeId(employeeId == 0 ? null : employeeId);
+				if (!currency.isEmpty()) {
+					order.setAmount(amount);
+					order.setCurrency(currency);
+				}
+				order.setId(id);
+				order.setCreatedAt(createdAt);
+				order.setUpdatedAt(createdAt);
+				orders.add(order);
+			}
+		} catch (EOFException e) {
+			// end of the journal
+		}
+
+		channel.position(channel.size());
+		return orders;
+	}
+
+	void truncate() throws IOException {
+
+		channel.truncate(0);
+		channel.position(0);
+		channel.force(true);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -2,6 +2,7 @@ package com.neeraj.finance;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
+import org.hibernate.Hibernate;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
@@ -14,26 +15,62 @@ import org.springframework.stereotype.Component;
  * well as OrderController.complete(id). These links are ONLY shown when the
  * order’s status is Status.IN_PROGRESS.
  *
+ * An order that has been assigned links to its employee, and toModelWithEmployee()
+ * embeds the employee as well (it must have been fetched already, see
+ * PartitionedOrderRepository.fetchEmployees).
  */
 @Component
 class OrderModelAssembler implements RepresentationModelAssembler<Order, EntityModel<Order>> {
 
+	private final EmployeeModelAssembler employeeAssembler;
+
+	OrderModelAssembler(EmployeeModelAssembler employeeAssembler) {
+		this.employeeAssembler = employeeAssembler;
+	}
+
 	@Override
 	public EntityModel<Order> toModel(Order order) {
 
-		// Unconditional links to single-item resource and aggregate root
+		FlightEvents.Assembler event = new FlightEvents.Assembler();
+		event.begin();
+
+		try (Span span = Tracing.child("assemble Order")) {
+
+			// Unconditional links to single-item resource and aggregate root
+
+			EntityModel<Order> orderModel = EntityModel.of(order,
+					linkTo(methodOn(OrderController.class).one(order.getId())).withSelfRel(),
+					linkTo(methodOn(OrderController.class).all()).withRel("orders"));
 
-		EntityModel<Order> orderModel = EntityModel.of(order,
-				linkTo(methodOn(OrderController.class).one(order.getId())).withSelfRel(),
-				linkTo(methodOn(OrderController.class).all()).withRel("orders"));
+			// Conditional links based on state of the order
 
-		// Conditional links based on state of the order
+			if (order.getStatus() == Status.IN_PROGRESS) {
+				orderModel.add(linkTo(methodOn(OrderController.class).cancel(order.getId())).withRel("cancel"));
+				orderModel.add(linkTo(methodOn(OrderController.class).complete(order.getId())).withRel("complete"));
+			}
 
-		if (order.getStatus() == Status.IN_PROGRESS) {
-			orderModel.add(linkTo(methodOn(OrderController.class).cancel(order.getId())).withRel("cancel"));
-			orderModel.add(linkTo(methodOn(OrderController.class).complete(order.getId())).withRel("complete"));
+			if (order.getEmployeeId() != null) {
+				orderModel.add(linkTo(methodOn(EmployeeController.class).one(order.getEmployeeId())).withRel("employee"));
+			}
+
+			span.tag("order.id", order.getId());
+			if (event.shouldCommit()) {
+				event.orderId = order.getId() == null ? 0 : order.getId();
+				event.links = orderModel.getLinks().toList().size();
+				event.commit();
+			}
+
+			return orderModel;
 		}
+	}
+
+	EntityModel<Order> toModelWithEmployee(Order order) {
+
+		// Fetch joins can hand back the persistence context's proxy, which Jackson
+		// shouldn't see.
+		Employee employee = (Employee) Hibernate.unproxy(order.getEmployee());
 
-		return orderModel;
+		return new OrderWithEmployeeModel(order, employee == null ? null : employeeAssembler.toModel(employee),
+				toModel(order).getLinks());
 	}
 }
\ No newline at end of file
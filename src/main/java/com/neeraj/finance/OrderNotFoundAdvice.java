@@ -0,0 +1,29 @@
+package com.neeraj.finance;
+
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.mediatype.problem.Problem;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+// When an `OrderNotFoundException` is thrown, it is rendered as an `HTTP 404` with an RFC-7807 Problem body,
+//  the same error container OrderController uses for invalid state transitions.
+//  Misses are routine (scanners probe random ids) and a 404 is all these exceptions are for, so they, and
+//  EmployeeNotFoundException, skip filling in a stack trace, the expensive part of every miss.
+@ControllerAdvice
+class OrderNotFoundAdvice {
+
+	@ExceptionHandler(OrderNotFoundException.class)
+	ResponseEntity<Problem> orderNotFoundHandler(OrderNotFoundException ex) {
+
+		return ResponseEntity //
+				.status(HttpStatus.NOT_FOUND) //
+				.header(HttpHeaders.CONTENT_TYPE, MediaTypes.HTTP_PROBLEM_DETAILS_JSON_VALUE) //
+				.body(Problem.create() //
+						.withStatus(HttpStatus.NOT_FOUND) //
+						.withTitle("Not found") //
+						.withDetail(ex.getMessage()));
+	}
+}
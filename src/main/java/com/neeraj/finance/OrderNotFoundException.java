@@ -1,9 +1,9 @@
 package com.neeraj.finance;
 
+// Stackless, see OrderNotFoundAdvice.
 public class OrderNotFoundException extends RuntimeException {
 
 	OrderNotFoundException(Long id) {
-		super("Could not find employee " + id);
+		super("Could not find order " + id, null, false, false);
 	}
 }
-
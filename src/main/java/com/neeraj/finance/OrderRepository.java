@@ -2,5 +2,5 @@ package com.neeraj.finance;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
-interface OrderRepository extends JpaRepository<Order, Long> {
+interface OrderRepository extends JpaRepository<Order, Long>, PartitionedOrderRepository {
 }
\ No newline at end of file
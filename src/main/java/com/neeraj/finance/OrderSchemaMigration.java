@@ -0,0 +1,142 @@
+package com.neeraj.finance;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Brings CUSTOMER_ORDER and the archive partitions of an existing database to the
+ * layout of the Order entity: a mandatory INTEGER Status code and a description of at
+ * most Order.DESCRIPTION_LENGTH characters. Rows of those tables and of EMPLOYEE that
+ * were written before the ChangeSequence existed are given a value of it, so that
+ * delta sync and the ReplicaSync see them like any other change.
+ *
+ * Hibernate's `ddl-auto=update` adds tables and columns but never changes the type of
+ * one, so a database created before Status codes would keep its nullable status
+ * column and VARCHAR(255) description. Runs once Hibernate has built the schema
+ * (hence the EntityManagerFactory) and before anything reads orders. Old ordinals are
+ * kept as they are, since the codes equal them; statuses stored by name are rewritten
+ * to their codes; descriptions that don't fit are cut. A table that can't be migrated,
+ * e.g. one with orders without a status, stops the application from starting rather
+ * than failing on the first order read.
+ */
+@Component
+class OrderSchemaMigration {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderSchemaMigration.class);
+
+	private final JdbcTemplate jdbcTemplate;
+	private final OrderArchive archive;
+
+	// The ChangeSequence creates the sequence the backfill takes values from.
+	OrderSchemaMigration(DataSource dataSource, OrderArchive archive, ChangeSequence changeSequence,
+			EntityManagerFactory entityManagerFactory) {
+
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.archive = archive;
+	}
+
+	@PostConstruct
+	void migrate() {
+
+		migrate(jdbcTemplate, "CUSTOMER_ORDER");
+		backfillChangeSequence(jdbcTemplate, "CUSTOMER_ORDER");
+		for (String table : archive.tables()) {
+			migrate(jdbcTemplate, table);
+			backfillChangeSequence(jdbcTemplate, table);
+		}
+		backfillChangeSequence(jdbcTemplate, "EMPLOYEE");
+	}
+
+	/**
+	 * Migrates `table`, if it exists and isn't migrated yet.
+	 *
+	 * @throws IllegalStateException if its rows don't fit the new layout
+	 */
+	static void migrate(JdbcTemplate jdbcTemplate, String table) {
+
+		Map<String, Object> status = column(jdbcTemplate, table, "STATUS");
+		Map<String, Object> description = column(jdbcTemplate, table, "DESCRIPTION");
+		if (status == null || description == null) {
+			return;
+		}
+
+		try {
+			if (isCharacter(status)) {
+				log.info("Rewriting the status names of {} to Status codes", table);
+				StringBuilder codes = new StringBuilder("CASE status");
+				for (Status value : Status.values()) {
+					codes.append(" WHEN '").append(value.name()).append("' THEN '").append(value.getCode()).append('\'');
+				}
+				codes.append(" ELSE status END");
+				jdbcTemplate.update("UPDATE " + table + " SET status = " + codes);
+			}
+			if (!isMigrated(status)) {
+				log.info("Changing {}.status to a mandatory INTEGER", table);
+				jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN status INTEGER NOT NULL");
+			}
+			if (!fits(description)) {
+				log.info("Cutting {}.description to {} characters", table, Order.DESCRIPTION_LENGTH);
+				jdbcTemplate.update("UPDATE " + table + " SET description = LEFT(description, ?) WHERE LENGTH(description) > ?",
+						Order.DESCRIPTION_LENGTH, Order.DESCRIPTION_LENGTH);
+				jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN description VARCHAR("
+						+ Order.DESCRIPTION_LENGTH + ")");
+			}
+		} catch (DataAccessException e) {
+			throw new IllegalStateException(table + " could not be migrated to Status codes. Every order needs a status "
+					+ "(IN_PROGRESS, COMPLETED, CANCELLED or its code 0, 1, 2); fix the rows and restart", e);
+		}
+
+		if (!isMigrated(column(jdbcTemplate, table, "STATUS"))
+				|| !fits(column(jdbcTemplate, table, "DESCRIPTION"))) {
+			throw new IllegalStateException(table + " still doesn't match the Order entity after migrating it");
+		}
+	}
+
+	/**
+	 * Stamps the rows of `table` without a change_seq with the next values of the
+	 * change sequence, if it has that column.
+	 */
+	static void backfillChangeSequence(JdbcTemplate jdbcTemplate, String table) {
+
+		if (column(jdbcTemplate, table, "CHANGE_SEQ") == null) {
+			return;
+		}
+
+		int rows = jdbcTemplate.update("UPDATE " + table + " SET change_seq = NEXT VALUE FOR change_sequence"
+				+ " WHERE change_seq IS NULL");
+		if (rows > 0) {
+			log.info("Gave {} rows of {} a change sequence value", rows, table);
+		}
+	}
+
+	private static Map<String, Object> column(JdbcTemplate jdbcTemplate, String table, String column) {
+
+		List<Map<String, Object>> columns = jdbcTemplate.queryForList(
+				"SELECT type_name, is_nullable, character_maximum_length FROM information_schema.columns" //
+						+ " WHERE table_schema = SCHEMA() AND table_name = ? AND column_name = ?",
+				table, column);
+		return columns.isEmpty() ? null : columns.get(0);
+	}
+
+	private static boolean isCharacter(Map<String, Object> column) {
+		return String.valueOf(column.get("TYPE_NAME")).contains("CHAR");
+	}
+
+	private static boolean isMigrated(Map<String, Object> status) {
+		return "INTEGER".equals(status.get("TYPE_NAME")) && "NO".equals(status.get("IS_NULLABLE"));
+	}
+
+	private static boolean fits(Map<String, Object> description) {
+		return ((Number) description.get("CHARACTER_MAXIMUM_LENGTH")).longValue() <= Order.DESCRIPTION_LENGTH;
+	}
+}
@@ -0,0 +1,387 @@
+package com.neeraj.finance;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Which orders are in which Status, in memory, so that "the orders in status X" and
+ * "how many are there" never scan CUSTOMER_ORDER (or the archive partitions).
+ *
+ * Each Status has a Bitmap with a bit per order id: pages of 65536 ids as long[]
+ * words, allocated the first time one of their ids is set, so nothing is boxed and
+ * 50M orders take about 6MB per Status. A count per Status is kept next to it.
+ *
+ * It is filled at startup by streaming `id, status` of every partition and kept up
+ * to date by the writers, which record() every order they commit along with its new
+ * status, and by the ClusterInvalidations of other nodes, after which the order's
+ * status is read back. Until the startup scan is done isReady() is false: whatever
+ * is recorded meanwhile is newer than what the scan finds, and wins over it.
+ *
+ * Published as `orders.status` (the count, tagged with the status) and
+ * `orders.status.index.size` (bytes).
+ */
+@Component
+class OrderStatusIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderStatusIndex.class);
+
+	private static final Status[] STATUSES = Status.values();
+
+	// Rows applied per lock acquisition while scanning.
+	private static final int SCAN_BATCH = 4096;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final OrderArchive archive;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// Guarded by `lock`, indexed by Status ordinal.
+	private final Bitmap[] bitmaps = new Bitmap[STATUSES.length];
+	private final long[] counts = new long[STATUSES.length];
+	// Ids recorded while the startup scan runs, which it must not overwrite.
+	private Bitmap recordedDuringScan;
+
+	private volatile boolean ready;
+
+	OrderStatusIndex(DataSource dataSource, OrderArchive archive, ClusterInvalidations invalidations,
+			MeterRegistry meterRegistry) {
+
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.archive = archive;
+
+		for (Status status : STATUSES) {
+			bitmaps[status.ordinal()] = new Bitmap();
+			Gauge.builder("orders.status", this, index -> index.count(status)) //
+					.description("Orders in each status") //
+					.tag("status", status.name()) //
+					.register(meterRegistry);
+		}
+		Gauge.builder("orders.status.index.size", this, OrderStatusIndex::sizeInBytes) //
+				.description("Heap taken by the order status index") //
+				.baseUnit("bytes") //
+				.register(meterRegistry);
+
+		invalidations.registerRemote(ClusterInvalidations.ORDERS, this::reload);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void rebuild() {
+
+		long started = System.nanoTime();
+
+		lock.writeLock().lock();
+		try {
+			recordedDuringScan = new Bitmap();
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		scan("customer_order");
+		archive.tables().forEach(this::scan);
+
+		lock.writeLock().lock();
+		try {
+			recordedDuringScan = null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		ready = true;
+
+		log.info("Indexed the status of " + new Counts(counts()).getTotal() + " orders in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + "ms, " + sizeInBytes() / 1024 + "KB");
+	}
+
+	private void scan(String table) {
+
+		long[] ids = new long[SCAN_BATCH];
+		byte[] codes = new byte[SCAN_BATCH];
+		int[] size = { 0 };
+
+		// Forward-only with a fetch size, so rows are streamed rather than loaded at once.
+		jdbcTemplate.query(connection -> {
+			PreparedStatement statement = connection.prepareStatement("SELECT id, status FROM " + table,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(SCAN_BATCH);
+			return statement;
+		}, (ResultSet rs) -> {
+			ids[size[0]] = rs.getLong(1);
+			codes[size[0]] = rs.getByte(2);
+			if (++size[0] == SCAN_BATCH) {
+				applyScanned(ids, codes, size[0]);
+				size[0] = 0;
+			}
+		});
+		applyScanned(ids, codes, size[0]);
+	}
+
+	private void applyScanned(long[] ids, byte[] codes, int size) {
+
+		lock.writeLock().lock();
+		try {
+			for (int i = 0; i < size; i++) {
+				if (!recordedDuringScan.get(ids[i])) {
+					put(ids[i], Status.fromCode(codes[i]));
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * An order has been committed in `status`.
+	 */
+	void record(long id, Status status) {
+
+		lock.writeLock().lock();
+		try {
+			put(id, status);
+			if (recordedDuringScan != null) {
+				recordedDuringScan.set(id);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Another node changed the order. Archived orders don't change any more, so one
+	// that isn't in the hot table keeps the status it has here.
+	private void reload(long id) {
+
+		List<Byte> codes = jdbcTemplate.queryForList("SELECT status FROM customer_order WHERE id = ?", Byte.class, id);
+		if (!codes.isEmpty()) {
+			record(id, Status.fromCode(codes.get(0)));
+		}
+	}
+
+	private void put(long id, Status status) {
+
+		for (Status other : STATUSES) {
+			if (other != status && bitmaps[other.ordinal()].clear(id)) {
+				counts[other.ordinal()]--;
+			}
+		}
+		if (bitmaps[status.ordinal()].set(id)) {
+			counts[status.ordinal()]++;
+		}
+	}
+
+	boolean isReady() {
+		return ready;
+	}
+
+	long count(Status status) {
+
+		lock.readLock().lock();
+		try {
+			return counts[status.ordinal()];
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	Map<Status, Long> counts() {
+
+		Map<Status, Long> counts = new EnumMap<>(Status.class);
+		lock.readLock().lock();
+		try {
+			for (Status status : STATUSES) {
+				counts.put(status, this.counts[status.ordinal()]);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return counts;
+	}
+
+
+	/**
+	 * Up to `limit` ids of orders in `status` greater than `after`, in ascending order.
+	 */
+	long[] ids(Status status, long after, int limit) {
+
+		if (after == Long.MAX_VALUE) {
+			return new long[0];
+		}
+
+		long[] ids = new long[limit];
+		int found = 0;
+
+		lock.readLock().lock();
+		try {
+			Bitmap bitmap = bitmaps[status.ordinal()];
+			for (long id = bitmap.next(after + 1); id >= 0 && found < limit; id = bitmap.next(id + 1)) {
+				ids[found++] = id;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		return found == limit ? ids : Arrays.copyOf(ids, found);
+	}
+
+	long sizeInBytes() {
+
+		lock.readLock().lock();
+		try {
+			long bytes = 0;
+			for (Bitmap bitmap : bitmaps) {
+				bytes += bitmap.sizeInBytes();
+			}
+			return bytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	static class Counts {
+
+		private final Map<Status, Long> counts;
+
+		Counts(Map<Status, Long> counts) {
+			this.counts = counts;
+		}
+
+		public Map<Status, Long> getCounts() {
+			return counts;
+		}
+
+		public long getTotal() {
+			return counts.values().stream().mapToLong(Long::longValue).sum();
+		}
+	}
+
+	/**
+	 * A set of non-negative long ids, one bit each, in pages of 2^16 ids that are only
+	 * allocated once they hold one. Not thread-safe.
+	 */
+	static final class Bitmap {
+
+		private static final int PAGE_SHIFT = 16;
+		private static final int WORDS_PER_PAGE = 1 << (PAGE_SHIFT - 6);
+
+		private long[][] pages = new long[16][];
+
+		boolean get(long id) {
+
+			long[] page = page(id, false);
+			return page != null && (page[word(id)] & bit(id)) != 0;
+		}
+
+		/**
+		 * @return whether the id wasn't in the set before
+		 */
+		boolean set(long id) {
+
+			long[] page = page(id, true);
+			int word = word(id);
+			long before = page[word];
+			page[word] = before | bit(id);
+			return page[word] != before;
+		}
+
+		/**
+		 * @return whether the id was in the set
+		 */
+		boolean clear(long id) {
+
+			long[] page = page(id, false);
+			if (page == null) {
+				return false;
+			}
+			int word = word(id);
+			long before = page[word];
+			page[word] = before & ~bit(id);
+			return page[word] != before;
+		}
+
+		/**
+		 * The smallest id in the set that is at least `from`, or -1.
+		 */
+		long next(long from) {
+
+			if (from < 0) {
+				from = 0;
+			}
+
+			for (long pageIndex = from >>> PAGE_SHIFT; pageIndex < pages.length; pageIndex++) {
+				long[] page = pages[(int) pageIndex];
+				if (page == null) {
+					continue;
+				}
+
+				int word = pageIndex == from >>> PAGE_SHIFT ? word(from) : 0;
+				long bits = pageIndex == from >>> PAGE_SHIFT ? page[word] & (-1L << from) : page[word];
+				while (true) {
+					if (bits != 0) {
+						return (pageIndex << PAGE_SHIFT) + ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+					}
+					if (++word == WORDS_PER_PAGE) {
+						break;
+					}
+					bits = page[word];
+				}
+			}
+			return -1;
+		}
+
+		long sizeInBytes() {
+
+			long bytes = 16 + 8L * pages.length;
+			for (long[] page : pages) {
+				if (page != null) {
+					bytes += 16 + 8L * WORDS_PER_PAGE;
+				}
+			}
+			return bytes;
+		}
+
+		private long[] page(long id, boolean allocate) {
+
+			if (id < 0) {
+				throw new IllegalArgumentException("Negative id " + id);
+			}
+
+			long pageIndex = id >>> PAGE_SHIFT;
+			if (pageIndex >= pages.length) {
+				if (!allocate) {
+					return null;
+				}
+				pages = Arrays.copyOf(pages, (int) Math.max(pageIndex + 1, pages.length * 2L));
+			}
+
+			long[] page = pages[(int) pageIndex];
+			if (page == null && allocate) {
+				page = pages[(int) pageIndex] = new long[WORDS_PER_PAGE];
+			}
+			return page;
+		}
+
+		private static int word(long id) {
+			return (int) (id >>> 6) & (WORDS_PER_PAGE - 1);
+		}
+
+		private static long bit(long id) {
+			return 1L << id;
+		}
+	}
+}
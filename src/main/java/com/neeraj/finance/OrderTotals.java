@@ -0,0 +1,310 @@
+package com.neeraj.finance;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Running totals of order amounts per currency and Status, so that GET
+ * /orders/totals never has to sum the table.
+ *
+ * Every (currency, status) pair has a LongAdder for the number of orders and one
+ * for the sum of their amounts in minor units. LongAdders are striped, so the
+ * writers that record() a created, cancelled or completed order don't contend on a
+ * single counter, and nothing is locked. A status change moves the amount from one
+ * pair to the other; the two halves are separate updates, so a snapshot taken in
+ * between may count the order in both or neither for a moment.
+ *
+ * The counters are seeded at startup and then checked every
+ * `finance.orders.totals.reconcile-ms` against a `GROUP BY currency, status` over
+ * CUSTOMER_ORDER and the archive partitions. Writes that land while the check runs
+ * make it disagree for a moment, so a difference is only corrected (by adding it to
+ * the counters, which is safe next to concurrent writers) when the next check finds
+ * exactly the same one. Changes made by other nodes reach the counters that way too.
+ * The seed follows the same rule, checking again right away, since by then requests
+ * are already coming in.
+ * Outcomes are counted in `orders.totals.reconciliations`, tagged match, mismatch
+ * or corrected.
+ */
+@Component
+class OrderTotals {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderTotals.class);
+
+	private static final Status[] STATUSES = Status.values();
+
+	// Checks seed() makes before leaving a difference to reconcile().
+	private static final int SEED_CHECKS = 10;
+
+	private static final String SUMS = "SELECT currency, status, COUNT(*), SUM(amount) FROM (%s)"
+			+ " WHERE amount IS NOT NULL GROUP BY currency, status";
+
+	// The counters of one currency, indexed by Status ordinal.
+	private static final class Cells {
+
+		final LongAdder[] counts = new LongAdder[STATUSES.length];
+		final LongAdder[] amounts = new LongAdder[STATUSES.length];
+
+		Cells() {
+			for (int i = 0; i < STATUSES.length; i++) {
+				counts[i] = new LongAdder();
+				amounts[i] = new LongAdder();
+			}
+		}
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+	private final OrderArchive archive;
+	private final MeterRegistry meterRegistry;
+
+	private final ConcurrentMap<String, Cells> cells = new ConcurrentHashMap<>();
+
+	// Guarded by `this`, only touched by seed() and reconcile().
+	private List<Total> lastDifference;
+	private volatile Instant reconciledAt;
+
+	OrderTotals(DataSource dataSource, OrderArchive archive, MeterRegistry meterRegistry) {
+
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.archive = archive;
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * An order with an amount has been committed in `to`, coming from `from` (null
+	 * for a new order). Orders without an amount are ignored.
+	 */
+	void record(Order order, Status from, Status to) {
+
+		if (order.getAmount() == null || order.getCurrency() == null) {
+			return;
+		}
+
+		Cells currency = cells.computeIfAbsent(order.getCurrency(), key -> new Cells());
+		if (from != null) {
+			currency.counts[from.ordinal()].decrement();
+			currency.amounts[from.ordinal()].add(-order.getAmount());
+		}
+		currency.counts[to.ordinal()].increment();
+		currency.amounts[to.ordinal()].add(order.getAmount());
+	}
+
+	/**
+	 * The counters as they are now, by currency then status, leaving out pairs without
+	 * orders.
+	 */
+	List<Total> totals() {
+
+		List<Total> totals = new ArrayList<>();
+		cells.forEach((currency, counters) -> {
+			for (Status status : STATUSES) {
+				long count = counters.counts[status.ordinal()].sum();
+				long amount = counters.amounts[status.ordinal()].sum();
+				if (count != 0 || amount != 0) {
+					totals.add(new Total(currency, status, count, amount));
+				}
+			}
+		});
+		totals.sort(Comparator.comparing(Total::getCurrency).thenComparing(Total::getStatus));
+		return totals;
+	}
+
+	Instant reconciledAt() {
+		return reconciledAt;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	synchronized void seed() {
+
+		// Whatever was recorded before now is in the table as well, but an order
+		// committed during a check may be in the table without being recorded yet.
+		List<Total> difference = difference();
+		for (int check = 1; check < SEED_CHECKS && difference != null; check++) {
+			List<Total> again = difference();
+			if (again.equals(difference)) {
+				add(difference);
+				again = null;
+			}
+			difference = again;
+		}
+
+		if (difference != null) {
+			log.info("Order totals differ from the table by " + difference + " after seeding, checking again next time");
+		}
+		lastDifference = difference;
+		reconciledAt = Instant.now();
+	}
+
+	@Scheduled(fixedDelayString = "${finance.orders.totals.reconcile-ms:300000}",
+			initialDelayString = "${finance.orders.totals.reconcile-ms:300000}")
+	synchronized void reconcile() {
+
+		List<Total> difference = difference();
+		String outcome;
+
+		if (difference.isEmpty()) {
+			outcome = "match";
+		} else if (difference.equals(lastDifference)) {
+			log.warn("Order totals were off by " + difference + ", corrected");
+			add(difference);
+			difference = null;
+			outcome = "corrected";
+		} else {
+			log.info("Order totals differ from the table by " + difference + ", checking again next time");
+			outcome = "mismatch";
+		}
+
+		lastDifference = difference;
+		reconciledAt = Instant.now();
+		Counter.builder("orders.totals.reconciliations") //
+				.description("Checks of the order totals against the table") //
+				.tag("outcome", outcome) //
+				.register(meterRegistry) //
+				.increment();
+	}
+
+	// Table minus counters, per pair that differs.
+	private List<Total> difference() {
+
+		Map<String, Total> expected = new HashMap<>();
+		String union = archive.tables().stream() //
+				.map(table -> " UNION ALL SELECT currency, status, amount FROM " + table) //
+				.collect(Collectors.joining("", "SELECT currency, status, amount FROM customer_order", ""));
+		jdbcTemplate.query(String.format(SUMS, union), rs -> {
+			Total total = new Total(rs.getString(1), Status.fromCode(rs.getByte(2)), rs.getLong(3), rs.getLong(4));
+			expected.put(total.getCurrency() + ":" + total.getStatus(), total);
+		});
+
+		List<Total> difference = new ArrayList<>();
+		for (Total actual : totals()) {
+			Total table = expected.remove(actual.getCurrency() + ":" + actual.getStatus());
+			long count = table == null ? 0 : table.getCount();
+			long amount = table == null ? 0 : table.getAmount();
+			if (count != actual.getCount() || amount != actual.getAmount()) {
+				difference.add(new Total(actual.getCurrency(), actual.getStatus(), count - actual.getCount(),
+						amount - actual.getAmount()));
+			}
+		}
+		difference.addAll(expected.values());
+		difference.sort(Comparator.comparing(Total::getCurrency).thenComparing(Total::getStatus));
+		return difference;
+	}
+
+	private void add(List<Total> difference) {
+
+		for (Total total : difference) {
+			Cells currency = cells.computeIfAbsent(total.getCurrency(), key -> new Cells());
+			currency.counts[total.getStatus().ordinal()].add(total.getCount());
+			currency.amounts[total.getStatus().ordinal()].add(total.getAmount());
+		}
+	}
+
+	/**
+	 * How many orders of one currency are in one status, and their amount in minor
+	 * units along with the number of digits those have.
+	 */
+	static class Total {
+
+		private final String currency;
+		private final Status status;
+		private final long count;
+		private final long amount;
+
+		Total(String currency, Status status, long count, long amount) {
+
+			this.currency = currency;
+			this.status = status;
+			this.count = count;
+			this.amount = amount;
+		}
+
+		public String getCurrency() {
+			return currency;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getAmount() {
+			return amount;
+		}
+
+		public int getScale() {
+			return Currency.getInstance(currency).getDefaultFractionDigits();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Total)) {
+				return false;
+			}
+			Total total = (Total) o;
+			return count == total.count && amount == total.amount && Objects.equals(currency, total.currency)
+					&& status == total.status;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(currency, status, count, amount);
+		}
+
+		@Override
+		public String toString() {
+			return currency + " " + status + " " + count + " orders, " + amount;
+		}
+	}
+
+	/**
+	 * The GET /orders/totals representation.
+	 */
+	static class Totals {
+
+		private final List<Total> totals;
+		private final Instant reconciledAt;
+
+		Totals(List<Total> totals, Instant reconciledAt) {
+
+			this.totals = totals;
+			this.reconciledAt = reconciledAt;
+		}
+
+		public List<Total> getTotals() {
+			return totals;
+		}
+
+		public Instant getReconciledAt() {
+			return reconciledAt;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.neeraj.finance;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * An order with its employee embedded the HAL way, under `_embedded.employee`, for
+ * clients that asked for `?embed=employee` instead of following the `employee` link
+ * of every order. Orders without an employee render like a plain EntityModel.
+ *
+ * The order is kept here and served by getContent(), as EntityModel's constructors
+ * that take content are deprecated (see MultiGetModel).
+ */
+class OrderWithEmployeeModel extends EntityModel<Order> {
+
+	private final Order order;
+	private final EntityModel<Employee> employee;
+
+	OrderWithEmployeeModel(Order order, EntityModel<Employee> employee, Iterable<Link> links) {
+
+		this.order = order;
+		this.employee = employee;
+		add(links);
+	}
+
+	@Override
+	public Order getContent() {
+		return order;
+	}
+
+	@JsonProperty("_embedded")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public Map<String, EntityModel<Employee>> getEmbedded() {
+		return employee == null ? null : Collections.singletonMap("employee", employee);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+
+		if (this == other) {
+			return true;
+		}
+		if (other == null || getClass() != other.getClass() || !super.equals(other)) {
+			return false;
+		}
+		OrderWithEmployeeModel that = (OrderWithEmployeeModel) other;
+		return Objects.equals(order, that.order) && Objects.equals(employee, that.employee);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(super.hashCode(), order, employee);
+	}
+}
@@ -0,0 +1,348 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Opt-in write-behind mode for POST /orders (`finance.orders.write-behind.enabled`).
+ *
+ * Instead of waiting for its own commit, newOrder() takes an id from the
+ * OrderIdAllocator, puts the order on a bounded queue and answers 202 Accepted. A
+ * single writer thread drains the queue and inserts whatever has accumulated (up to
+ * `batch-size` orders) in one JDBC batch and one transaction, so under burst load
+ * many requests share a single commit.
+ *
+ * With `finance.orders.write-behind.journal` set, every order is first appended to a
+ * local OrderJournal and forced to disk before it is acknowledged; anything left in
+ * the journal is replayed at startup. Without it, acknowledged orders that have not
+ * been committed yet are lost if the process dies.
+ *
+ * A batch the database can't take right now (it is down, or timed out) is retried
+ * until it can. One it rejects, because an order refers to an employee that was
+ * deleted in the meantime say, is split in halves until the orders at fault are
+ * found; those go to the ORDER_DEAD_LETTER table with the error, and are logged, so
+ * that the rest are committed and the writer moves on instead of retrying forever
+ * while the queue fills up.
+ *
+ * Orders only count as placed (OrderCommits) once they are committed, so
+ * dead-lettered ones never do.
+ *
+ * Queue depth, batch sizes, commit latency and dead-lettered orders are published as
+ * `orders.write-behind.queue.depth`, `orders.write-behind.batch.size`,
+ * `orders.write-behind.commit` and `orders.write-behind.dead-lettered`.
+ */
+@Component
+class OrderWriteBehind {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderWriteBehind.class);
+
+	// MERGE keeps retried batches and journal replays idempotent.
+	private static final String UPSERT_ORDER = "MERGE INTO customer_order (id, description, status, created_at, updated_at, change_seq, employee_id,"
+			+ " amount, currency) KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String DEAD_LETTER = "MERGE INTO order_dead_letter (id, description, status, created_at, employee_id,"
+			+ " amount, currency, error, failed_at) KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final int MAX_ERROR_LENGTH = 1000;
+
+	private final boolean enabled;
+	private final int batchSize;
+	private final OrderIdAllocator idAllocator;
+	private final ChangeSequence changeSequence;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final BlockingQueue<Order> queue;
+	private final OrderJournal journal;
+	private final OrderCommits commits;
+
+	// Accepted orders that are not committed yet, so one() can already show them.
+	private final Map<Long, Order> pending = new ConcurrentHashMap<>();
+
+	private final Timer commitTimer;
+	private final DistributionSummary batchSizes;
+	private final Counter deadLettered;
+
+	private volatile boolean running;
+	private Thread writer;
+
+	// The batch the writer was working on when it was stopped.
+	private volatile List<Order> unfinished = Collections.emptyList();
+
+	OrderWriteBehind(OrderIdAllocator idAllocator, ChangeSequence changeSequence, DataSource dataSource, PlatformTransactionManager transactionManager,
+			OrderCommits commits, MeterRegistry meterRegistry, @Value("${finance.orders.write-behind.enabled:false}") boolean enabled,
+			@Value("${finance.orders.write-behind.queue-capacity:10000}") int queueCapacity,
+			@Value("${finance.orders.write-behind.batch-size:500}") int batchSize,
+			@Value("${finance.orders.write-behind.journal:}") String journal) throws IOException {
+
+		this.enabled = enabled;
+		this.batchSize = batchSize;
+		this.idAllocator = idAllocator;
+		this.changeSequence = changeSequence;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.journal = enabled && !journal.isEmpty() ? new OrderJournal(Paths.get(journal)) : null;
+		this.commits = commits;
+
+		Gauge.builder("orders.write-behind.queue.depth", queue, BlockingQueue::size) //
+				.description("Orders accepted but not yet committed") //
+				.register(meterRegistry);
+		this.batchSizes = DistributionSummary.builder("orders.write-behind.batch.size") //
+				.description("Orders per group commit") //
+				.register(meterRegistry);
+		this.commitTimer = Timer.builder("orders.write-behind.commit") //
+				.description("Latency of one group commit") //
+				.register(meterRegistry);
+		this.deadLettered = Counter.builder("orders.write-behind.dead-lettered") //
+				.description("Accepted orders the database rejected") //
+				.register(meterRegistry);
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Assigns an id and queues the order for the writer thread.
+	 *
+	 * @return the accepted order, or empty if the queue is full and the caller should
+	 *         back off
+	 */
+	Optional<Order> enqueue(Order order) {
+
+		order.setId(idAllocator.next());
+		order.onCreate();
+
+		if (journal == null) {
+			return accept(order);
+		}
+
+		// The journal record and the queue slot must go together: a journaled order
+		// that was rejected would otherwise be resurrected by the next replay.
+		synchronized (journal) {
+
+			if (queue.remainingCapacity() == 0) {
+				return Optional.empty();
+			}
+
+			try {
+				journal.append(order);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			return accept(order);
+		}
+	}
+
+	Optional<Order> findPending(Long id) {
+		return Optional.ofNullable(pending.get(id));
+	}
+
+	private Optional<Order> accept(Order order) {
+
+		pending.put(order.getId(), order);
+
+		if (!queue.offer(order)) {
+			pending.remove(order.getId());
+			return Optional.empty();
+		}
+
+		return Optional.of(order);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void start() throws IOException, InterruptedException {
+
+		if (!enabled) {
+			return;
+		}
+
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS order_dead_letter (id BIGINT PRIMARY KEY,"
+				+ " description VARCHAR(" + Order.DESCRIPTION_LENGTH + "), status INTEGER, created_at TIMESTAMP,"
+				+ " employee_id BIGINT, amount BIGINT, currency VARCHAR(3), error VARCHAR(" + MAX_ERROR_LENGTH
+				+ "), failed_at TIMESTAMP)");
+
+		if (journal != null) {
+			List<Order> unfinished = journal.replay();
+			if (!unfinished.isEmpty()) {
+				log.info("Replaying " + unfinished.size() + " journaled orders");
+				commitWithRetry(unfinished);
+			}
+			journal.truncate();
+		}
+
+		running = true;
+		writer = new Thread(this::drain, "order-write-behind");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException, IOException {
+
+		running = false;
+
+		if (writer != null) {
+			writer.interrupt();
+			writer.join(TimeUnit.SECONDS.toMillis(10));
+		}
+
+		// Whatever the writer didn't get to is still committed before we go down.
+		List<Order> rest = new ArrayList<>(unfinished);
+		queue.drainTo(rest);
+		if (!rest.isEmpty()) {
+			commit(rest);
+		}
+
+		if (journal != null) {
+			journal.close();
+		}
+	}
+
+	private void drain() {
+
+		List<Order> batch = new ArrayList<>(batchSize);
+
+		while (running) {
+			try {
+				Order first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+
+				commitWithRetry(batch);
+				batch.clear();
+
+				truncateJournalIfDrained();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		// Hand an unfinished batch to stop() to commit. Not through the queue, which
+		// producers may have filled up in the meantime.
+		unfinished = batch;
+	}
+
+	private void commitWithRetry(List<Order> batch) throws InterruptedException {
+
+		while (true) {
+			try {
+				commit(batch);
+				return;
+			} catch (RuntimeException e) {
+				if (DatabaseGuard.isUnavailable(e)) {
+					log.error("Could not commit " + batch.size() + " queued orders, retrying", e);
+					TimeUnit.SECONDS.sleep(1);
+				} else if (batch.size() == 1) {
+					deadLetter(batch.get(0), e);
+					return;
+				} else {
+					// Commit the half without the culprit, and keep looking in the other.
+					int half = batch.size() / 2;
+					commitWithRetry(batch.subList(0, half));
+					commitWithRetry(batch.subList(half, batch.size()));
+					return;
+				}
+			}
+		}
+	}
+
+	private void deadLetter(Order order, RuntimeException cause) {
+
+		log.error("Order " + order.getId() + " (" + order.getDescription() + ", employee " + order.getEmployeeId()
+				+ ") was rejected by the database, moving it to ORDER_DEAD_LETTER", cause);
+
+		String error = String.valueOf(cause.getMessage());
+		try {
+			jdbcTemplate.update(DEAD_LETTER, order.getId(), order.getDescription(), order.getStatus().getCode(),
+					Timestamp.from(order.getCreatedAt()), order.getEmployeeId(), order.getAmount(),
+					order.getCurrency(), error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH),
+					Timestamp.from(Instant.now()));
+		} catch (RuntimeException e) {
+			log.error("Could not dead-letter order " + order.getId() + ", it only remains in this log", e);
+		}
+
+		deadLettered.increment();
+		pending.remove(order.getId());
+	}
+
+	private void commit(List<Order> batch) {
+
+		// Change sequence values are taken inside the transaction, so readers of
+		// /orders/changes don't look past them before it commits.
+		commitTimer.record(() -> transactionTemplate.execute(status -> {
+
+			List<Long> changes = changeSequence.next(batch.size());
+			List<Object[]> rows = new ArrayList<>(batch.size());
+			for (int i = 0; i < batch.size(); i++) {
+				Order order = batch.get(i);
+				order.setChangeSeq(changes.get(i));
+				rows.add(new Object[] { order.getId(), order.getDescription(), order.getStatus().getCode(),
+						Timestamp.from(order.getCreatedAt()), Timestamp.from(order.getUpdatedAt()), order.getChangeSeq(),
+						order.getEmployeeId(), order.getAmount(), order.getCurrency() });
+			}
+
+			return jdbcTemplate.batchUpdate(UPSERT_ORDER, rows);
+		}));
+		batchSizes.record(batch.size());
+
+		// Other nodes only see the order once it is committed, and may have cached a
+		// miss for it in the meantime.
+		batch.forEach(order -> {
+			pending.remove(order.getId());
+			commits.committed(order, null, order.getStatus());
+		});
+	}
+
+	private void truncateJournalIfDrained() {
+
+		if (journal == null) {
+			return;
+		}
+
+		synchronized (journal) {
+			if (queue.isEmpty()) {
+				try {
+					journal.truncate();
+				} catch (IOException e) {
+					log.warn("Could not truncate the order journal", e);
+				}
+			}
+		}
+	}
+}
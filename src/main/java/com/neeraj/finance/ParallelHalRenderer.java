@@ -0,0 +1,195 @@
+package com.neeraj.finance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.server.core.DelegatingLinkRelationProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Renders a HAL collection of entities, in parallel when it is large.
+ *
+ * Below `finance.orders.parallel.threshold` entities (or without
+ * `finance.orders.parallel.enabled`) this is the usual sequential path: assemble
+ * every entity, wrap them in a CollectionModel and serialize it. Above it the list is
+ * cut into `chunk-size` slices that are assembled and serialized concurrently on a
+ * dedicated pool of `threads` workers, each into its own buffer pre-sized from the
+ * average entity size seen so far. The chunks are then concatenated into the
+ * `_embedded` array, followed by the collection's `_links`, which gives the same
+ * document the sequential path produces.
+ *
+ * The workers run with the caller's request attributes, so the links they build
+ * point at the same host as the ones built on the request thread, and with its
+ * trace span, so that each chunk is a span of the request's trace.
+ */
+@Component
+class ParallelHalRenderer {
+
+	private final HalRenderer halRenderer;
+	private final DelegatingLinkRelationProvider relProvider;
+	private final boolean enabled;
+	private final int threshold;
+	private final int chunkSize;
+	private final ForkJoinPool pool;
+
+	// Running estimate used to pre-size the chunk buffers.
+	private volatile int bytesPerEntity = 256;
+
+	ParallelHalRenderer(HalRenderer halRenderer, DelegatingLinkRelationProvider relProvider,
+			@Value("${finance.orders.parallel.enabled:false}") boolean enabled,
+			@Value("${finance.orders.parallel.threshold:2000}") int threshold,
+			@Value("${finance.orders.parallel.chunk-size:500}") int chunkSize,
+			@Value("${finance.orders.parallel.threads:0}") int threads) {
+
+		this.halRenderer = halRenderer;
+		this.relProvider = relProvider;
+		this.enabled = enabled;
+		this.threshold = threshold;
+		this.chunkSize = chunkSize;
+		this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+	}
+
+	@PreDestroy
+	void shutdown() {
+		pool.shutdownNow();
+	}
+
+	<T> byte[] render(List<T> entities, Function<T, ? extends RepresentationModel<?>> assembler, Class<T> type,
+			Link... links) {
+
+		if (!enabled || entities.isEmpty() || entities.size() < threshold) {
+			return halRenderer.render(CollectionModel.of( //
+					entities.stream().map(assembler).collect(Collectors.toList()), links));
+		}
+
+		RequestAttributes request = RequestContextHolder.getRequestAttributes();
+		Span trace = Tracing.current();
+		ObjectMapper mapper = halRenderer.getObjectMapper();
+
+		List<Callable<byte[]>> chunks = new ArrayList<>();
+		for (int from = 0; from < entities.size(); from += chunkSize) {
+			List<T> chunk = entities.subList(from, Math.min(entities.size(), from + chunkSize));
+			chunks.add(() -> renderChunk(chunk, assembler, mapper, request, trace));
+		}
+
+		List<byte[]> rendered = new ArrayList<>(chunks.size());
+		for (Future<byte[]> chunk : pool.invokeAll(chunks)) {
+			rendered.add(join(chunk));
+		}
+
+		// `{"_links":{...}}` of an empty collection; its tail is appended after _embedded.
+		byte[] head = ("{\"_embedded\":{\"" + relProvider.getCollectionResourceRelFor(type).value() + "\":[")
+				.getBytes(StandardCharsets.UTF_8);
+		byte[] tail = tail(halRenderer.render(CollectionModel.empty(links)));
+
+		// One comma between consecutive chunks.
+		int size = head.length + tail.length + rendered.size() - 1;
+		for (byte[] chunk : rendered) {
+			size += chunk.length;
+		}
+		bytesPerEntity = Math.max(16, (size / entities.size()) + 1);
+
+		byte[] document = new byte[size];
+		int position = copy(head, document, 0);
+		for (int i = 0; i < rendered.size(); i++) {
+			if (i > 0) {
+				document[position++] = ',';
+			}
+			position = copy(rendered.get(i), document, position);
+		}
+		copy(tail, document, position);
+
+		return document;
+	}
+
+	private <T> byte[] renderChunk(List<T> chunk, Function<T, ? extends RepresentationModel<?>> assembler,
+			ObjectMapper mapper, RequestAttributes request, Span trace) throws IOException {
+
+		// One event per chunk, on the worker that renders it; the assembler's events are
+		// nested in it.
+		FlightEvents.Serialization event = new FlightEvents.Serialization();
+		event.begin();
+
+		RequestContextHolder.setRequestAttributes(request);
+		Span previous = Tracing.resume(trace);
+		try (Span span = Tracing.child("serialize hal chunk")) {
+			span.tag("rows", chunk.size());
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream(chunk.size() * bytesPerEntity);
+			try (JsonGenerator generator = mapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+
+				generator.setRootValueSeparator(null);
+				for (int i = 0; i < chunk.size(); i++) {
+					if (i > 0) {
+						generator.writeRaw(',');
+					}
+					mapper.writeValue(generator, assembler.apply(chunk.get(i)));
+				}
+			}
+
+			if (event.shouldCommit()) {
+				event.format = "hal";
+				event.rows = chunk.size();
+				event.bytes = buffer.size();
+				event.commit();
+			}
+			return buffer.toByteArray();
+		} finally {
+			Tracing.resume(previous);
+			RequestContextHolder.resetRequestAttributes();
+		}
+	}
+
+	// Closes _embedded and, if there are links, continues with them.
+	private static byte[] tail(byte[] links) {
+
+		String json = new String(links, StandardCharsets.UTF_8);
+		String tail = json.equals("{}") ? "]}}" : "]}," + json.substring(1);
+		return tail.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int copy(byte[] source, byte[] target, int position) {
+
+		System.arraycopy(source, 0, target, position, source.length);
+		return position + source.length;
+	}
+
+	private static byte[] join(Future<byte[]> chunk) {
+
+		try {
+			return chunk.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof IOException) {
+				throw new UncheckedIOException((IOException) e.getCause());
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while rendering a collection", e);
+		}
+	}
+}
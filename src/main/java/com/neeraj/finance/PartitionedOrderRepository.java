@@ -0,0 +1,53 @@
+package com.neeraj.finance;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lookups that see an order wherever it currently lives: the hot CUSTOMER_ORDER
+ * table or, once it has been archived, its cold OrderArchive partition.
+ */
+interface PartitionedOrderRepository {
+
+	Optional<Order> findInAnyPartition(Long id);
+
+	List<Order> findAllInAnyPartition();
+
+	/**
+	 * Every order with its employee loaded, in a constant number of queries however
+	 * many orders there are.
+	 */
+	List<Order> findAllWithEmployeesInAnyPartition();
+
+	/**
+	 * The orders handled by one employee, ordered by id.
+	 */
+	List<Order> findByEmployeeInAnyPartition(Long employeeId);
+
+	/**
+	 * Loads the employees of orders that don't have theirs yet, IN_LIST_SIZE ids per
+	 * query, instead of one query per order.
+	 */
+	void fetchEmployees(Collection<Order> orders);
+
+	/**
+	 * The orders with the given ids, in no particular order; ids that don't exist are
+	 * left out.
+	 */
+	List<Order> findAllInAnyPartition(Collection<Long> ids);
+
+	/**
+	 * Up to `limit` orders whose change sequence is in `(since, upTo]`, in change order.
+	 */
+	List<Order> findChangedInAnyPartition(long since, long upTo, int limit);
+
+	/**
+	 * Moves an order from `from` to `to`, but only if nobody (a fulfillment worker,
+	 * say) changed its status since it was read, and releases any fulfillment lease on
+	 * it. On success `order` is updated to match the row.
+	 *
+	 * @return false if the order had already moved on
+	 */
+	boolean transition(Order order, Status from, Status to);
+}
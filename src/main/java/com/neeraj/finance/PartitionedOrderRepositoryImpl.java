@@ -0,0 +1,234 @@
+package com.neeraj.finance;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.Hibernate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Spring Data picks this class up by its name and mixes it into OrderRepository.
+ *
+ * The hot table is asked first because that's where IN_PROGRESS orders, and so most
+ * traffic, are. Only a miss falls through to the single archive partition that can
+ * hold the id. Scans gather both sides and merge them by id.
+ *
+ * Multi-gets follow the same path with IN lists of at most `IN_LIST_SIZE` ids, so a
+ * page of orders costs one query against the hot table, plus one per archive
+ * partition only for the ids it didn't have.
+ *
+ * Employees are never loaded one order at a time. The hot table fetch-joins them,
+ * archived and queued orders (which JPA didn't load, so they only know the
+ * employee id) get theirs with IN queries by distinct employee id.
+ *
+ * Scans and multi-gets are read-only transactions, which the ReplicaRoutingDataSource
+ * may send to the replica when there is one. The replica keeps archived orders in its
+ * one order table, so the archive isn't asked there. Point lookups stay on the
+ * primary: they are cheap, and transitions save the order they look up.
+ *
+ * Transitions are a conditional UPDATE on the status they expect, the same one the
+ * FulfillmentWorkers write theirs with, so an API call and a worker can't both move
+ * an order out of IN_PROGRESS. Only hot orders can still move, archived ones are done.
+ */
+class PartitionedOrderRepositoryImpl implements PartitionedOrderRepository {
+
+	// Keeps statements (and H2's plans for them) a sane size whatever the caller asks for.
+	static final int IN_LIST_SIZE = 500;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private static final String TRANSITION = "UPDATE customer_order"
+			+ " SET status = ?, updated_at = ?, change_seq = ?, lease_owner = NULL, lease_until = NULL"
+			+ " WHERE id = ? AND status = ?";
+
+	private final OrderArchive archive;
+	private final ChangeSequence changeSequence;
+
+	PartitionedOrderRepositoryImpl(OrderArchive archive, ChangeSequence changeSequence) {
+
+		this.archive = archive;
+		this.changeSequence = changeSequence;
+	}
+
+	@Override
+	public Optional<Order> findInAnyPartition(Long id) {
+
+		Order order = entityManager.find(Order.class, id);
+
+		if (order != null) {
+			return Optional.of(order);
+		}
+
+		return archive.findById(id);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<Order> findAllInAnyPartition() {
+
+		List<Order> orders = new ArrayList<>(
+				entityManager.createQuery("select o from Order o", Order.class).getResultList());
+
+		if (archiveApplies()) {
+			orders.addAll(archive.findAll());
+			orders.sort(Comparator.comparing(Order::getId));
+		}
+
+		return orders;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<Order> findAllWithEmployeesInAnyPartition() {
+
+		List<Order> orders = new ArrayList<>(entityManager
+				.createQuery("select o from Order o left join fetch o.employee", Order.class).getResultList());
+
+		if (archiveApplies()) {
+			List<Order> archived = archive.findAll();
+			fetchEmployees(archived);
+			orders.addAll(archived);
+			orders.sort(Comparator.comparing(Order::getId));
+		}
+
+		return orders;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<Order> findByEmployeeInAnyPartition(Long employeeId) {
+
+		List<Order> orders = new ArrayList<>(entityManager
+				.createQuery("select o from Order o where o.employeeId = :employeeId order by o.id", Order.class) //
+				.setParameter("employeeId", employeeId) //
+				.getResultList());
+
+		if (archiveApplies()) {
+			orders.addAll(archive.findByEmployee(employeeId));
+			orders.sort(Comparator.comparing(Order::getId));
+		}
+
+		return orders;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void fetchEmployees(Collection<Order> orders) {
+
+		Set<Long> wanted = new HashSet<>();
+		for (Order order : orders) {
+			if (order.getEmployeeId() != null
+					&& (order.getEmployee() == null || !Hibernate.isInitialized(order.getEmployee()))) {
+				wanted.add(order.getEmployeeId());
+			}
+		}
+
+		List<Long> ids = new ArrayList<>(wanted);
+		Map<Long, Employee> employees = new HashMap<>();
+		for (int from = 0; from < ids.size(); from += IN_LIST_SIZE) {
+			entityManager.createQuery("select e from Employee e where e.id in :ids", Employee.class) //
+					.setParameter("ids", ids.subList(from, Math.min(ids.size(), from + IN_LIST_SIZE))) //
+					.getResultList() //
+					.forEach(employee -> employees.put(employee.getId(), employee));
+		}
+
+		for (Order order : orders) {
+			if (wanted.contains(order.getEmployeeId())) {
+				order.setEmployee(employees.get(order.getEmployeeId()));
+			}
+		}
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<Order> findAllInAnyPartition(Collection<Long> ids) {
+
+		List<Long> wanted = new ArrayList<>(ids);
+		List<Order> orders = new ArrayList<>(wanted.size());
+
+		for (int from = 0; from < wanted.size(); from += IN_LIST_SIZE) {
+			orders.addAll(entityManager.createQuery("select o from Order o where o.id in :ids", Order.class) //
+					.setParameter("ids", wanted.subList(from, Math.min(wanted.size(), from + IN_LIST_SIZE))) //
+					.getResultList());
+		}
+
+		if (archiveApplies() && orders.size() < wanted.size()) {
+
+			Set<Long> found = new HashSet<>();
+			orders.forEach(order -> found.add(order.getId()));
+			wanted.removeIf(found::contains);
+
+			orders.addAll(archive.findAllById(wanted));
+		}
+
+		return orders;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<Order> findChangedInAnyPartition(long since, long upTo, int limit) {
+
+		List<Order> orders = new ArrayList<>(entityManager.createQuery( //
+				"select o from Order o where o.changeSeq > :since and o.changeSeq <= :upTo order by o.changeSeq",
+				Order.class) //
+				.setParameter("since", since) //
+				.setParameter("upTo", upTo) //
+				.setMaxResults(limit) //
+				.getResultList());
+
+		if (archiveApplies()) {
+			orders.addAll(archive.findChanged(since, upTo, limit));
+			orders.sort(Comparator.comparing(Order::getChangeSeq));
+			if (orders.size() > limit) {
+				orders = new ArrayList<>(orders.subList(0, limit));
+			}
+		}
+
+		return orders;
+	}
+
+	@Override
+	@Transactional
+	public boolean transition(Order order, Status from, Status to) {
+
+		Instant now = Instant.now();
+		long change = changeSequence.next();
+
+		int updated = entityManager.createNativeQuery(TRANSITION) //
+				.setParameter(1, to.getCode()) //
+				.setParameter(2, Timestamp.from(now)) //
+				.setParameter(3, change) //
+				.setParameter(4, order.getId()) //
+				.setParameter(5, from.getCode()) //
+				.executeUpdate();
+		if (updated == 0) {
+			return false;
+		}
+
+		// Hibernate would otherwise write the changes below a second time.
+		entityManager.detach(order);
+		order.setStatus(to);
+		order.setUpdatedAt(now);
+		order.setChangeSeq(change);
+		ReadRouting.wrote(change);
+		return true;
+	}
+
+	// Only known to be false for the replica after the hot table has been asked.
+	private boolean archiveApplies() {
+		return archive.isEnabled() && !ReplicaRoutingDataSource.isReadingReplica();
+	}
+}
@@ -0,0 +1,112 @@
+package com.neeraj.finance;
+
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * What the current thread's reads require of the database they are routed to (see
+ * ReplicaRoutingDataSource), when that isn't just "a read-only transaction may use
+ * the replica".
+ *
+ * onPrimary() pins reads that must see the latest committed state, such as the
+ * orders a fulfillment worker has just claimed. requireChange() holds reads back from
+ * a replica that hasn't caught up with the client's own last write yet; it is set for
+ * each request by the ReadYourWritesFilter, which also hears of the writes it makes
+ * through wrote().
+ *
+ * Both are thread-bound, so the DatabaseGuard hands them on to its pool with
+ * propagate().
+ */
+final class ReadRouting {
+
+	private static final ThreadLocal<Boolean> primary = new ThreadLocal<>();
+	private static final ThreadLocal<Long> requiredChange = new ThreadLocal<>();
+	private static final ThreadLocal<LongConsumer> writes = new ThreadLocal<>();
+
+	private ReadRouting() {
+	}
+
+	static <T> T onPrimary(Supplier<T> reads) {
+
+		Boolean previous = primary.get();
+		primary.set(Boolean.TRUE);
+		try {
+			return reads.get();
+		} finally {
+			primary.set(previous);
+		}
+	}
+
+	static boolean isPrimaryRequired() {
+		return Boolean.TRUE.equals(primary.get());
+	}
+
+	/**
+	 * The change sequence value the replica must have reached before reads on this
+	 * thread may use it, 0 for none.
+	 */
+	static long requiredChange() {
+
+		Long change = requiredChange.get();
+		return change == null ? 0 : change;
+	}
+
+	static void requireChange(long change) {
+		requiredChange.set(change);
+	}
+
+	/**
+	 * `key` as a SingleFlight key for reads on this thread. A client that must read its
+	 * own write only shares loads made for that same write: a load without it may be
+	 * reading a replica that hasn't got it yet.
+	 */
+	static String coalescing(String key) {
+
+		long change = requiredChange();
+		return change == 0 ? key : "change:" + change + ":" + key;
+	}
+
+	static void onWrite(LongConsumer listener) {
+		writes.set(listener);
+	}
+
+	/**
+	 * Called with the change sequence value of every row written on this thread.
+	 */
+	static void wrote(long change) {
+
+		LongConsumer listener = writes.get();
+		if (listener != null) {
+			listener.accept(change);
+		}
+	}
+
+	static void clear() {
+
+		primary.remove();
+		requiredChange.remove();
+		writes.remove();
+	}
+
+	/**
+	 * `reads`, to run on another thread with this thread's requirements.
+	 */
+	static <T> Supplier<T> propagate(Supplier<T> reads) {
+
+		Boolean pinned = primary.get();
+		Long change = requiredChange.get();
+
+		return () -> {
+			Boolean previousPinned = primary.get();
+			Long previousChange = requiredChange.get();
+			primary.set(pinned);
+			requiredChange.set(change);
+			try {
+				return reads.get();
+			} finally {
+				primary.set(previousPinned);
+				requiredChange.set(previousChange);
+			}
+		};
+	}
+}
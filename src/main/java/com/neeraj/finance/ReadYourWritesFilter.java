@@ -0,0 +1,67 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Read-your-writes consistency with a replica that lags behind.
+ *
+ * A response to a request that wrote something carries the `finance-change` cookie
+ * with the change sequence value of its last write. Requests that come back with it
+ * only read from the replica once the ReplicaSync has copied that change, and from
+ * the primary until then. The cookie expires after `sticky-seconds`, by when the
+ * replica has normally long caught up.
+ *
+ * Only writes made on the request thread have a change sequence value when the
+ * response goes out. Orders queued by the OrderWriteBehind don't, but a single order
+ * is always read from the primary, and that's what the client is pointed to.
+ */
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	static final String COOKIE = "finance-change";
+
+	private final long stickySeconds;
+
+	ReadYourWritesFilter(long stickySeconds) {
+		this.stickySeconds = stickySeconds;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+
+		Cookie cookie = WebUtils.getCookie(request, COOKIE);
+		if (cookie != null) {
+			try {
+				ReadRouting.requireChange(Long.parseLong(cookie.getValue()));
+			} catch (NumberFormatException e) {
+				// Not one of ours, ignored.
+			}
+		}
+
+		// The last write wins, it has the highest value.
+		ReadRouting.onWrite(change -> response.setHeader(HttpHeaders.SET_COOKIE, ResponseCookie //
+				.from(COOKIE, Long.toString(change)) //
+				.path("/") //
+				.maxAge(stickySeconds) //
+				.httpOnly(true) //
+				.build() //
+				.toString()));
+
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			ReadRouting.clear();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.neeraj.finance;
+
+import java.sql.SQLException;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ Opt-in (`finance.replica.enabled=true`) read replica, so that heavy scans such as GET /orders don't
+ compete with POST /orders and the transitions for the same database.
+
+ The primary is the usual `spring.datasource`. The replica, `finance.replica.url`, is a second
+ in-memory H2 by default, which the ReplicaSync fills from the primary's change sequence. Everything
+ that uses "the" DataSource, JPA included, gets the routing one: read-only transactions go to the
+ replica, all else to the primary (see ReplicaRoutingDataSource). The ReadYourWritesFilter keeps a
+ client that has just written on the primary until the replica has its changes.
+*/
+@Configuration
+@ConditionalOnProperty("finance.replica.enabled")
+class ReplicaConfiguration {
+
+	// Closed with the context.
+	private ReplicaRoutingDataSource routing;
+
+	/*
+	 Only the proxy is a bean. Boot initializes every DataSource bean with "the" DataSource, which is
+	 this one, so the pools and the routing between them can't be beans of their own; the ReplicaSync
+	 unwraps the routing.
+	*/
+	@Bean
+	@Primary
+	DataSource dataSource(DataSourceProperties properties,
+			@Value("${finance.replica.url:jdbc:h2:mem:replica}") String replicaUrl, MeterRegistry meterRegistry) {
+
+		HikariDataSource primary = properties.initializeDataSourceBuilder() //
+				.type(HikariDataSource.class) //
+				.build();
+		primary.setPoolName("primary");
+
+		HikariDataSource replica = DataSourceBuilder.create() //
+				.type(HikariDataSource.class) //
+				.url(replicaUrl) //
+				.username("sa") //
+				.build();
+		replica.setPoolName("replica");
+
+		routing = new ReplicaRoutingDataSource(primary, replica, meterRegistry);
+		return new LazyConnectionDataSourceProxy(routing);
+	}
+
+	@PreDestroy
+	void close() {
+
+		if (routing != null) {
+			routing.close();
+		}
+	}
+
+	@Bean
+	ReplicaSync replicaSync(DataSource dataSource, OrderRepository orderRepository,
+			EmployeeRepository employeeRepository, ChangeSequence changeSequence, MeterRegistry meterRegistry,
+			@Value("${finance.replica.batch-size:500}") int batchSize,
+			@Value("${finance.replica.interval-ms:200}") long intervalMillis) throws SQLException {
+
+		return new ReplicaSync(dataSource.unwrap(ReplicaRoutingDataSource.class), orderRepository,
+				employeeRepository, changeSequence, meterRegistry, batchSize, intervalMillis);
+	}
+
+	@Bean
+	FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+			@Value("${finance.replica.sticky-seconds:60}") long stickySeconds) {
+
+		FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(
+				new ReadYourWritesFilter(stickySeconds));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+		return registration;
+	}
+}
@@ -0,0 +1,124 @@
+package com.neeraj.finance;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the primary.
+ *
+ * A read-only transaction still goes to the primary when its thread is pinned there
+ * (ReadRouting.onPrimary()), or when it requires a change the ReplicaSync hasn't
+ * copied yet: the client wrote it itself and must read its own writes.
+ *
+ * The decision is made when the connection is fetched, so this must sit behind a
+ * LazyConnectionDataSourceProxy; the transaction manager asks for a connection
+ * before it has marked the transaction read-only. Reads are counted in
+ * `replica.reads`, tagged with the database they went to.
+ *
+ * It owns both connection pools, and closes them with the application context.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+	enum Target {
+		PRIMARY, REPLICA
+	}
+
+	// Transaction resource under which the decision is kept for isReadingReplica().
+	private static final Object TARGET = new Object();
+
+	private final HikariDataSource primary;
+	private final HikariDataSource replica;
+
+	private final Counter primaryReads;
+	private final Counter replicaReads;
+
+	// The replica has every change up to here.
+	private volatile long replicatedUpTo;
+
+	ReplicaRoutingDataSource(HikariDataSource primary, HikariDataSource replica, MeterRegistry meterRegistry) {
+
+		this.primary = primary;
+		this.replica = replica;
+
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(Target.PRIMARY, primary);
+		targets.put(Target.REPLICA, replica);
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+		// Not a bean, see ReplicaConfiguration.
+		afterPropertiesSet();
+
+		this.primaryReads = reads(meterRegistry, Target.PRIMARY);
+		this.replicaReads = reads(meterRegistry, Target.REPLICA);
+	}
+
+	private static Counter reads(MeterRegistry meterRegistry, Target target) {
+
+		return Counter.builder("replica.reads") //
+				.description("Read-only transactions, by the database they were routed to") //
+				.tag("target", target.name().toLowerCase()) //
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Whether the current transaction reads from the replica. Only known once it has
+	 * run its first statement.
+	 */
+	static boolean isReadingReplica() {
+		return TransactionSynchronizationManager.getResource(TARGET) == Target.REPLICA;
+	}
+
+	HikariDataSource replica() {
+		return replica;
+	}
+
+	void close() {
+
+		replica.close();
+		primary.close();
+	}
+
+	void replicated(long upTo) {
+		this.replicatedUpTo = upTo;
+	}
+
+	long replicatedUpTo() {
+		return replicatedUpTo;
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return Target.PRIMARY;
+		}
+
+		Target target = ReadRouting.isPrimaryRequired() || ReadRouting.requiredChange() > replicatedUpTo
+				? Target.PRIMARY
+				: Target.REPLICA;
+		(target == Target.REPLICA ? replicaReads : primaryReads).increment();
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()
+				&& !TransactionSynchronizationManager.hasResource(TARGET)) {
+			TransactionSynchronizationManager.bindResource(TARGET, target);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(TARGET);
+				}
+			});
+		}
+
+		return target;
+	}
+}
@@ -0,0 +1,204 @@
+package com.neeraj.finance;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+/**
+ * Keeps the replica in step with the primary by following the change sequence, the
+ * same way a delta sync client does: every `interval-ms` it copies the orders and
+ * employees that changed since the last round, up to the ChangeSequence horizon, and
+ * then tells the ReplicaRoutingDataSource how far the replica has got.
+ *
+ * The replica has no archive partitions. Archived orders keep their change sequence
+ * value, so they are copied like the others and simply stay in its one order table;
+ * PartitionedOrderRepositoryImpl doesn't look for an archive there. Nothing is ever
+ * deleted from it, orders only leave the primary's hot table to be archived. Rows
+ * written before the change sequence existed get a value from OrderSchemaMigration.
+ *
+ * How far behind it is, is published as `replica.lag` (the age of the newest state
+ * the replica is known to have) and `replica.lag.changes` (the changes it was missing
+ * when the last round started).
+ */
+class ReplicaSync {
+
+	private static final Logger log = LoggerFactory.getLogger(ReplicaSync.class);
+
+	private static final String UPSERT_ORDER = "MERGE INTO customer_order"
+			+ " (id, description, status, created_at, updated_at, change_seq, employee_id, amount, currency) KEY (id)"
+			+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String UPSERT_EMPLOYEE = "MERGE INTO employee (id, first_name, last_name, role, change_seq)"
+			+ " KEY (id) VALUES (?, ?, ?, ?, ?)";
+
+	private final ReplicaRoutingDataSource routing;
+	private final OrderRepository orderRepository;
+	private final EmployeeRepository employeeRepository;
+	private final ChangeSequence changeSequence;
+	private final JdbcTemplate replica;
+	private final int batchSize;
+	private final long intervalMillis;
+
+	// When the last completed round started: the replica has everything committed
+	// before then.
+	private volatile long currentAsOf = System.currentTimeMillis();
+	private volatile long changesBehind;
+
+	private volatile boolean running;
+	private Thread thread;
+
+	ReplicaSync(ReplicaRoutingDataSource routing, OrderRepository orderRepository,
+			EmployeeRepository employeeRepository, ChangeSequence changeSequence, MeterRegistry meterRegistry,
+			int batchSize, long intervalMillis) {
+
+		this.routing = routing;
+		this.orderRepository = orderRepository;
+		this.employeeRepository = employeeRepository;
+		this.changeSequence = changeSequence;
+		this.replica = new JdbcTemplate(routing.replica());
+		this.batchSize = batchSize;
+		this.intervalMillis = intervalMillis;
+
+		TimeGauge.builder("replica.lag", this, TimeUnit.MILLISECONDS,
+				sync -> System.currentTimeMillis() - sync.currentAsOf) //
+				.description("How old the newest state known to be on the replica is") //
+				.register(meterRegistry);
+		Gauge.builder("replica.lag.changes", this, sync -> sync.changesBehind) //
+				.description("Changes the replica was missing when the last sync round started") //
+				.register(meterRegistry);
+	}
+
+	/**
+	 * The tables JPA reads, lease columns included, which stay empty here.
+	 */
+	@PostConstruct
+	void createSchema() {
+
+		replica.execute("CREATE TABLE IF NOT EXISTS customer_order (id BIGINT PRIMARY KEY," //
+				+ " description VARCHAR(" + Order.DESCRIPTION_LENGTH + "), status INTEGER NOT NULL," //
+				+ " created_at TIMESTAMP, updated_at TIMESTAMP, change_seq BIGINT, employee_id BIGINT," //
+				+ " amount BIGINT, currency VARCHAR(3), lease_owner VARCHAR(36), lease_until TIMESTAMP)");
+		replica.execute("CREATE INDEX IF NOT EXISTS customer_order_change_seq ON customer_order (change_seq)");
+		replica.execute("CREATE INDEX IF NOT EXISTS customer_order_employee ON customer_order (employee_id)");
+		replica.execute("CREATE TABLE IF NOT EXISTS employee (id BIGINT PRIMARY KEY, first_name VARCHAR(255),"
+				+ " last_name VARCHAR(255), role VARCHAR(255), change_seq BIGINT)");
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void start() {
+
+		running = true;
+		thread = new Thread(this::run, "replica-sync");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+
+		running = false;
+		if (thread != null) {
+			thread.interrupt();
+			thread.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+
+	private void run() {
+
+		while (running) {
+			try {
+				sync();
+				TimeUnit.MILLISECONDS.sleep(intervalMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				log.error("Replica sync failed, retrying", e);
+				try {
+					TimeUnit.MILLISECONDS.sleep(intervalMillis);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * One round: copies everything that changed since the last one.
+	 */
+	synchronized void sync() {
+
+		long startedAt = System.currentTimeMillis();
+
+		long current = changeSequence.current();
+		long upTo = Math.min(current, changeSequence.horizon());
+		long from = routing.replicatedUpTo();
+		changesBehind = Math.max(0, current - from);
+
+		if (upTo > from) {
+			ReadRouting.onPrimary(() -> {
+				copyOrders(from, upTo);
+				copyEmployees(from, upTo);
+				return null;
+			});
+			routing.replicated(upTo);
+		}
+
+		currentAsOf = startedAt;
+	}
+
+	private void copyOrders(long from, long upTo) {
+
+		long since = from;
+		List<Order> orders;
+		do {
+			orders = orderRepository.findChangedInAnyPartition(since, upTo, batchSize);
+
+			List<Object[]> rows = new ArrayList<>(orders.size());
+			for (Order order : orders) {
+				rows.add(new Object[] { order.getId(), order.getDescription(), order.getStatus().getCode(),
+						timestamp(order.getCreatedAt()), timestamp(order.getUpdatedAt()), order.getChangeSeq(),
+						order.getEmployeeId(), order.getAmount(), order.getCurrency() });
+				since = order.getChangeSeq();
+			}
+			replica.batchUpdate(UPSERT_ORDER, rows);
+		} while (orders.size() == batchSize);
+	}
+
+	private void copyEmployees(long from, long upTo) {
+
+		long since = from;
+		List<Employee> employees;
+		do {
+			employees = employeeRepository.findChanged(since, upTo, PageRequest.of(0, batchSize));
+
+			List<Object[]> rows = new ArrayList<>(employees.size());
+			for (Employee employee : employees) {
+				rows.add(new Object[] { employee.getId(), employee.getFirstName(), employee.getLastName(),
+						employee.getRole(), employee.getChangeSeq() });
+				since = employee.getChangeSeq();
+			}
+			replica.batchUpdate(UPSERT_EMPLOYEE, rows);
+		} while (employees.size() == batchSize);
+	}
+
+	private static Timestamp timestamp(Instant instant) {
+		return instant == null ? null : Timestamp.from(instant);
+	}
+}
@@ -0,0 +1,52 @@
+package com.neeraj.finance;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ Opt-in (`finance.http.pooled-buffers.enabled=true`) writing of representation models through
+ pooled direct buffers, see PooledHalHttpMessageConverter. The buffers default to the size of
+ Tomcat's response buffer, which is the unit in which Tomcat passes large writes straight through.
+*/
+@Configuration
+@ConditionalOnProperty("finance.http.pooled-buffers.enabled")
+class ResponseBufferConfiguration {
+
+	@Bean
+	ByteBufferPool responseBuffers(MeterRegistry meterRegistry,
+			@Value("${finance.http.pooled-buffers.buffer-size:8192}") int bufferSize,
+			@Value("${finance.http.pooled-buffers.max-pooled:256}") int maxPooled) {
+
+		return new ByteBufferPool("http.response", bufferSize, maxPooled, meterRegistry);
+	}
+
+	/*
+	 Spring HATEOAS and Spring Data put their Jackson converters at the front of the list from
+	 their own WebMvcConfigurers, whichever order ours would run in. So the converter goes in front
+	 of them on the configured adapter instead, before it builds its return value handlers.
+	*/
+	@Bean
+	static BeanPostProcessor pooledHalConverterRegistrar(ObjectProvider<HalRenderer> halRenderer,
+			ObjectProvider<ByteBufferPool> responseBuffers) {
+
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+
+				if (bean instanceof RequestMappingHandlerAdapter) {
+					((RequestMappingHandlerAdapter) bean).getMessageConverters().add(0,
+							new PooledHalHttpMessageConverter(halRenderer.getObject(), responseBuffers.getObject()));
+				}
+				return bean;
+			}
+		};
+	}
+}
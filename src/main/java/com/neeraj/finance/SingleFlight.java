@@ -0,0 +1,95 @@
+package com.neeraj.finance;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Coalesces concurrent identical reads.
+ *
+ * The first caller for a key runs the load on its own thread; everybody asking for
+ * the same key while that load is in flight waits for it and gets the very same
+ * result (or exception) instead of starting another one. Nothing is kept once the
+ * load finishes, so this is not a cache: it only collapses the bursts where hundreds
+ * of requests for the same thing arrive within one load time.
+ *
+ * A write calls forget() for the keys it affects, so a request that starts after the
+ * write never joins a load that may have read the old state.
+ *
+ * Every call is counted in `<name>.coalescing`, tagged with outcome loaded (ran the
+ * load) or shared (joined one); shared / (loaded + shared) is the coalescing ratio.
+ */
+class SingleFlight<K, V> {
+
+	private final boolean enabled;
+	private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	private final Counter loaded;
+	private final Counter shared;
+
+	SingleFlight(String name, boolean enabled, MeterRegistry meterRegistry) {
+
+		this.enabled = enabled;
+		this.loaded = Counter.builder(name + ".coalescing").tag("outcome", "loaded").register(meterRegistry);
+		this.shared = Counter.builder(name + ".coalescing").tag("outcome", "shared").register(meterRegistry);
+	}
+
+	V load(K key, Supplier<V> loader) {
+
+		if (!enabled) {
+			loaded.increment();
+			return loader.get();
+		}
+
+		CompletableFuture<V> flight = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+
+		if (existing != null) {
+			shared.increment();
+			return join(existing);
+		}
+
+		loaded.increment();
+		try {
+			V value = loader.get();
+			flight.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, flight);
+		}
+	}
+
+	/**
+	 * Detaches the in-flight loads for matching keys; later callers start their own.
+	 */
+	void forget(Predicate<K> keys) {
+		inFlight.keySet().removeIf(keys);
+	}
+
+	private static <V> V join(CompletableFuture<V> flight) {
+
+		try {
+			return flight.get();
+		} catch (ExecutionException e) {
+			// Rethrow what the load threw (a not-found, a database error, ...) as is.
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a shared load", e);
+		}
+	}
+}
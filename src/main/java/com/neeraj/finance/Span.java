@@ -0,0 +1,216 @@
+package com.neeraj.finance;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One timed stage of a trace, see Tracing.
+ *
+ * A span is opened by the Tracer (the root of a request) or by Tracing.child() and
+ * is the current span of its thread until it is closed, so it is meant for
+ * try-with-resources. Closing a sampled span hands it to the Tracer for export.
+ * An unsampled root span records nothing, but keeps its trace id and flags so that
+ * they are passed on to the services it calls; its children are all NOOP.
+ */
+class Span implements AutoCloseable {
+
+	// What Tracing.child() hands out outside of a sampled trace: does nothing at all.
+	static final Span NOOP = new Span(null, null, null, null, null, false, null);
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Tracer tracer;
+	private final Span root;
+	private final String traceId;
+	private final String spanId;
+	private final String parentSpanId;
+	private String name;
+	private final boolean sampled;
+	private final String traceState;
+
+	private final Instant startTime;
+	private final long started;
+	private final Map<String, Object> attributes = new LinkedHashMap<>();
+	private long durationMicros = -1;
+	private String error;
+
+	// Only used on roots: spans opened in the trace, and those left out over the limit.
+	private final AtomicInteger spans = new AtomicInteger(1);
+	private final AtomicInteger dropped = new AtomicInteger();
+
+	// The span that was current on this thread before this one, restored on close.
+	Span previous;
+
+	private Span(Tracer tracer, Span root, String traceId, String parentSpanId, String name, boolean sampled,
+			String traceState) {
+
+		this.tracer = tracer;
+		this.root = root == null ? this : root;
+		this.traceId = traceId;
+		this.spanId = tracer == null ? null : hex(nonZeroRandom());
+		this.parentSpanId = parentSpanId;
+		this.name = name;
+		this.sampled = sampled;
+		this.traceState = traceState;
+		this.startTime = tracer == null ? null : Instant.now();
+		this.started = tracer == null ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * The root span of a request.
+	 *
+	 * @param traceId the caller's, or null to start a new trace
+	 * @param parentSpanId the caller's span, null for none
+	 */
+	static Span root(Tracer tracer, String name, String traceId, String parentSpanId, boolean sampled,
+			String traceState) {
+
+		return new Span(tracer, null, traceId != null ? traceId : hex(nonZeroRandom()) + hex(nonZeroRandom()),
+				parentSpanId, name, sampled, traceState);
+	}
+
+	/**
+	 * A child of this span, or NOOP when the trace already has as many spans as the
+	 * Tracer allows.
+	 */
+	Span child(String childName) {
+
+		if (root.spans.incrementAndGet() > tracer.getMaxSpansPerTrace()) {
+			root.dropped.incrementAndGet();
+			return NOOP;
+		}
+		return new Span(tracer, root, traceId, spanId, childName, sampled, traceState);
+	}
+
+	/**
+	 * For spans whose best name is only known at the end, null keeps the name.
+	 */
+	Span rename(String newName) {
+
+		if (tracer != null && sampled && newName != null) {
+			name = newName;
+		}
+		return this;
+	}
+
+	Span tag(String key, Object value) {
+
+		if (tracer != null && sampled) {
+			attributes.put(key, value);
+		}
+		return this;
+	}
+
+	Span error(Throwable e) {
+
+		if (tracer != null && sampled) {
+			error = e.getClass().getName() + (e.getMessage() == null ? "" : ": " + e.getMessage());
+		}
+		return this;
+	}
+
+	@Override
+	public void close() {
+
+		if (tracer == null) {
+			return;
+		}
+
+		Tracing.exit(this);
+		if (sampled) {
+			durationMicros = (System.nanoTime() - started) / 1000;
+			if (root == this && dropped.get() > 0) {
+				attributes.put("spans.dropped", dropped.get());
+			}
+			tracer.finished(this);
+		}
+	}
+
+	@JsonIgnore
+	boolean isSampled() {
+		return sampled;
+	}
+
+	@JsonIgnore
+	boolean isNoop() {
+		return tracer == null;
+	}
+
+	/**
+	 * This span as a W3C `traceparent`, for the next hop.
+	 */
+	@JsonIgnore
+	String getTraceParent() {
+		return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+	}
+
+	@JsonIgnore
+	String getTraceState() {
+		return traceState;
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	public String getSpanId() {
+		return spanId;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public String getParentSpanId() {
+		return parentSpanId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Instant getStartTime() {
+		return startTime;
+	}
+
+	public long getDurationMicros() {
+		return durationMicros;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public Map<String, Object> getAttributes() {
+		return attributes;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public String getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		return name + " " + traceId + "/" + spanId + " " + durationMicros + "us " + attributes;
+	}
+
+	private static long nonZeroRandom() {
+
+		long value;
+		do {
+			value = ThreadLocalRandom.current().nextLong();
+		} while (value == 0);
+		return value;
+	}
+
+	static String hex(long value) {
+
+		char[] chars = new char[16];
+		for (int i = 15; i >= 0; i--) {
+			chars[i] = HEX[(int) (value & 0xf)];
+			value >>>= 4;
+		}
+		return new String(chars);
+	}
+}
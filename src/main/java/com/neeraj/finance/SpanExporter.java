@@ -0,0 +1,16 @@
+package com.neeraj.finance;
+
+import java.util.List;
+
+/**
+ * Where finished spans go. Declaring a SpanExporter bean (one that sends them to a
+ * collector, say) replaces the `finance.tracing.exporter` configured stand-ins, see
+ * TracingConfiguration.
+ *
+ * export() is called from the Tracer's own thread, one batch at a time; a batch it
+ * throws on is dropped.
+ */
+interface SpanExporter {
+
+	void export(List<Span> spans);
+}
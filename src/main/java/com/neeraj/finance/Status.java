@@ -2,9 +2,40 @@ package com.neeraj.finance;
 
 // Orders must go through a certain series of state transitions from the time a customer 
 //  submits an order and it is either fulfilled or cancelled.
+//
+// Each status is stored as its own small code (see StatusConverter), never as its
+//  ordinal, so constants can be added or reordered without corrupting stored orders.
+//  The codes match the ordinals the column used to hold, which keeps existing rows valid.
 enum Status {
 
-	IN_PROGRESS, //
-	COMPLETED, //
-	CANCELLED
-}
\ No newline at end of file
+	IN_PROGRESS(0), //
+	COMPLETED(1), //
+	CANCELLED(2);
+
+	private static final Status[] BY_CODE = new Status[Byte.MAX_VALUE + 1];
+
+	static {
+		for (Status status : values()) {
+			BY_CODE[status.code] = status;
+		}
+	}
+
+	private final byte code;
+
+	Status(int code) {
+		this.code = (byte) code;
+	}
+
+	byte getCode() {
+		return code;
+	}
+
+	static Status fromCode(int code) {
+
+		Status status = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+		if (status == null) {
+			throw new IllegalArgumentException("Unknown order status code " + code);
+		}
+		return status;
+	}
+}
@@ -0,0 +1,84 @@
+package com.neeraj.finance;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-client token buckets, implemented with the generic cell rate algorithm (GCRA).
+ *
+ * A bucket refilling `permitsPerSecond` tokens up to `burst` is fully described by
+ * one number, its "theoretical arrival time": the instant at which the bucket would
+ * be full again. So every client is a single AtomicLong updated with compare-and-set,
+ * and the buckets live in a ConcurrentHashMap whose bins are striped across many
+ * locks only for inserts. Taking tokens never blocks.
+ *
+ * At most `maxClients` get a bucket of their own. Once that many are active, new
+ * clients share one overflow bucket until evictIdle() makes room again, so a flood
+ * of made-up clients costs a bounded amount of memory and only slows each other.
+ */
+class TokenBucketRateLimiter {
+
+	private static final String OVERFLOW = "overflow";
+
+	private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+	private final int maxClients;
+
+	// Nanoseconds it takes to refill one token, and how far ahead of `now` the arrival
+	// time may run before the bucket is empty.
+	private final long emissionInterval;
+	private final long burstTolerance;
+
+	TokenBucketRateLimiter(double permitsPerSecond, int burst, int maxClients) {
+
+		this.maxClients = maxClients;
+		this.emissionInterval = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+		this.burstTolerance = emissionInterval * burst;
+	}
+
+	/**
+	 * Takes `cost` tokens from the client's bucket.
+	 *
+	 * @return 0 if the request is admitted, otherwise the nanoseconds the client has to
+	 *         wait before it would be admitted
+	 */
+	long tryAcquire(String client, int cost) {
+
+		AtomicLong bucket = buckets.get(client);
+		if (bucket == null) {
+			bucket = buckets.computeIfAbsent(buckets.size() < maxClients ? client : OVERFLOW,
+					key -> new AtomicLong(System.nanoTime()));
+		}
+		long increment = emissionInterval * cost;
+
+		while (true) {
+			long now = System.nanoTime();
+			long arrival = bucket.get();
+			long next = Math.max(arrival, now) + increment;
+
+			long wait = next - now - burstTolerance;
+			if (wait > 0) {
+				return wait;
+			}
+
+			if (bucket.compareAndSet(arrival, next)) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Forgets clients whose bucket has refilled completely; they'd start from a full
+	 * bucket anyway.
+	 */
+	void evictIdle() {
+
+		long now = System.nanoTime();
+		buckets.entrySet().removeIf(entry -> entry.getValue().get() - now <= 0);
+	}
+
+	int size() {
+		return buckets.size();
+	}
+}
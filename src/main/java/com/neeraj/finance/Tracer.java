@@ -0,0 +1,186 @@
+package com.neeraj.finance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Starts the root Span of each request and exports the finished ones.
+ *
+ * A request that comes with a valid W3C `traceparent` continues that trace and
+ * follows the caller's sampling decision, so a trace is either complete across
+ * services or not recorded at all. Any other request starts a new trace, sampled at
+ * `sampleRate`: at 1% the 99% of requests that aren't pay for one root object and
+ * nothing else. A trace is limited to `maxSpansPerTrace` spans, a list of 10k orders
+ * would otherwise trace each one's assembly; the root span says how many were left
+ * out.
+ *
+ * Finished spans are queued and handed to the SpanExporter in batches by the
+ * `span-exporter` thread, so a slow exporter never holds up a request. When the
+ * queue is full spans are dropped. Both are counted in `tracing.spans`, tagged
+ * exported or dropped.
+ */
+class Tracer {
+
+	private static final Logger log = LoggerFactory.getLogger(Tracer.class);
+
+	private static final int BATCH_SIZE = 512;
+
+	private final SpanExporter exporter;
+	private final double sampleRate;
+	private final int maxSpansPerTrace;
+	private final long flushMillis;
+	private final BlockingQueue<Span> finished;
+
+	private final Counter exported;
+	private final Counter dropped;
+
+	private volatile boolean running;
+	private Thread thread;
+
+	Tracer(SpanExporter exporter, double sampleRate, int maxSpansPerTrace, int queueSize, long flushMillis,
+			MeterRegistry meterRegistry) {
+
+		this.exporter = exporter;
+		this.sampleRate = sampleRate;
+		this.maxSpansPerTrace = maxSpansPerTrace;
+		this.flushMillis = flushMillis;
+		this.finished = new ArrayBlockingQueue<>(queueSize);
+
+		this.exported = outcome(meterRegistry, "exported");
+		this.dropped = outcome(meterRegistry, "dropped");
+	}
+
+	private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+
+		return Counter.builder("tracing.spans") //
+				.description("Finished spans, exported or dropped because the export queue was full") //
+				.tag("outcome", outcome) //
+				.register(meterRegistry);
+	}
+
+	void start() {
+
+		running = true;
+		thread = new Thread(this::run, "span-exporter");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void stop() throws InterruptedException {
+
+		running = false;
+		if (thread != null) {
+			thread.interrupt();
+			thread.join(TimeUnit.SECONDS.toMillis(10));
+		}
+		flush();
+	}
+
+	int getMaxSpansPerTrace() {
+		return maxSpansPerTrace;
+	}
+
+	/**
+	 * Opens the root span of a request and makes it current.
+	 *
+	 * @param traceParent the request's `traceparent` header, may be null
+	 * @param traceState its `tracestate` header, only kept with a valid traceparent
+	 */
+	Span startRequest(String name, String traceParent, String traceState) {
+
+		String[] parent = parse(traceParent);
+		Span root = parent != null
+				? Span.root(this, name, parent[0], parent[1], (Integer.parseInt(parent[2], 16) & 1) == 1, traceState)
+				: Span.root(this, name, null, null, ThreadLocalRandom.current().nextDouble() < sampleRate, null);
+		return Tracing.enter(root);
+	}
+
+	void finished(Span span) {
+
+		if (!finished.offer(span)) {
+			dropped.increment();
+		}
+	}
+
+	/**
+	 * Exports whatever is queued, on the calling thread.
+	 */
+	synchronized void flush() {
+
+		List<Span> batch = new ArrayList<>(BATCH_SIZE);
+		while (finished.drainTo(batch, BATCH_SIZE) > 0) {
+			export(batch);
+			batch.clear();
+		}
+	}
+
+	private void run() {
+
+		while (running) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(flushMillis);
+				flush();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void export(List<Span> batch) {
+
+		try {
+			exporter.export(batch);
+			exported.increment(batch.size());
+		} catch (RuntimeException e) {
+			log.warn("Could not export " + batch.size() + " spans, dropped them", e);
+			dropped.increment(batch.size());
+		}
+	}
+
+	/**
+	 * A W3C traceparent, `version-traceid-parentid-flags`, as its trace id, parent id
+	 * and flags, or null if it isn't one. Versions after 00 may append fields, which
+	 * are ignored.
+	 */
+	static String[] parse(String traceParent) {
+
+		if (traceParent == null || traceParent.length() < 55
+				|| (traceParent.length() > 55 && (traceParent.startsWith("00") || traceParent.charAt(55) != '-'))) {
+			return null;
+		}
+		String version = traceParent.substring(0, 2);
+		String traceId = traceParent.substring(3, 35);
+		String parentId = traceParent.substring(36, 52);
+		String flags = traceParent.substring(53, 55);
+
+		if (traceParent.charAt(2) != '-' || traceParent.charAt(35) != '-' || traceParent.charAt(52) != '-'
+				|| !isHex(version) || "ff".equals(version) || !isHex(traceId) || !isHex(parentId) || !isHex(flags)
+				|| traceId.equals("00000000000000000000000000000000") || parentId.equals("0000000000000000")) {
+			return null;
+		}
+		return new String[] { traceId, parentId, flags };
+	}
+
+	// Lowercase only, as the spec requires.
+	private static boolean isHex(String value) {
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
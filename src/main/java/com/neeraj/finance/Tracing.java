@@ -0,0 +1,105 @@
+package com.neeraj.finance;
+
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Distributed tracing of requests (opt-in, see TracingConfiguration).
+ *
+ * The TracingFilter opens a root Span per request, continuing the caller's trace
+ * when it sends a W3C `traceparent` header. Everything below it opens child spans
+ * with child(): repository calls, JDBC statements, the OrderModelAssembler and the
+ * serializers. Spans are thread-bound like ReadRouting, so work handed to another
+ * thread takes the current span along with propagate(), and inject() adds
+ * `traceparent` and `tracestate` to outgoing requests.
+ *
+ * Outside of a sampled trace (tracing off, the request not sampled, or a background
+ * job) child() returns Span.NOOP, so instrumented code costs a ThreadLocal lookup.
+ */
+final class Tracing {
+
+	static final String TRACEPARENT = "traceparent";
+	static final String TRACESTATE = "tracestate";
+
+	private static final ThreadLocal<Span> current = new ThreadLocal<>();
+
+	private Tracing() {
+	}
+
+	/**
+	 * Opens a child of the current span, to be closed with try-with-resources.
+	 */
+	static Span child(String name) {
+
+		Span parent = current.get();
+		if (parent == null || !parent.isSampled()) {
+			return Span.NOOP;
+		}
+		return enter(parent.child(name));
+	}
+
+	static Span current() {
+		return current.get();
+	}
+
+	static Span enter(Span span) {
+
+		if (!span.isNoop()) {
+			span.previous = current.get();
+			current.set(span);
+		}
+		return span;
+	}
+
+	static void exit(Span span) {
+
+		if (current.get() == span) {
+			current.set(span.previous);
+		}
+	}
+
+	/**
+	 * Sets the headers that pass the current trace on to another service, if there is
+	 * one.
+	 */
+	static void inject(BiConsumer<String, String> headers) {
+
+		Span span = current.get();
+		if (span == null) {
+			return;
+		}
+		headers.accept(TRACEPARENT, span.getTraceParent());
+		if (span.getTraceState() != null) {
+			headers.accept(TRACESTATE, span.getTraceState());
+		}
+	}
+
+	static <T> Supplier<T> propagate(Supplier<T> task) {
+
+		Span span = current.get();
+		if (span == null) {
+			return task;
+		}
+
+		return () -> {
+			Span previous = resume(span);
+			try {
+				return task.get();
+			} finally {
+				resume(previous);
+			}
+		};
+	}
+
+	/**
+	 * Makes a span taken from another thread current on this one.
+	 *
+	 * @return the span to resume when done
+	 */
+	static Span resume(Span span) {
+
+		Span previous = current.get();
+		current.set(span);
+		return previous;
+	}
+}
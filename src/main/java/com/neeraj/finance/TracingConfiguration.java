@@ -0,0 +1,118 @@
+package com.neeraj.finance;
+
+import java.nio.file.Paths;
+
+import javax.sql.DataSource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.data.repository.Repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ Opt-in (`finance.tracing.enabled=true`) distributed tracing, see Tracing. New traces are sampled at
+ `sample-rate` (1% by default), traces continued from a caller follow its decision. Spans go to the
+ SpanExporter bean if the application declares one, otherwise to the `exporter` stand-in: `memory`
+ keeps the last spans in an InMemorySpanExporter, `file` appends them to `file` as NDJSON.
+
+ The TracingFilter runs ahead of admission control, so shed requests are traced too, and only for the
+ order and employee endpoints. Repository calls get their spans from an interceptor on the repository
+ proxies, JDBC statements from the TracingDataSource the DataSource bean is wrapped in, and
+ RestTemplates built from the RestTemplateBuilder pass the trace on.
+*/
+@Configuration
+@ConditionalOnProperty("finance.tracing.enabled")
+class TracingConfiguration {
+
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	Tracer tracer(SpanExporter exporter, MeterRegistry meterRegistry,
+			@Value("${finance.tracing.sample-rate:0.01}") double sampleRate,
+			@Value("${finance.tracing.max-spans-per-trace:200}") int maxSpansPerTrace,
+			@Value("${finance.tracing.queue-size:10000}") int queueSize,
+			@Value("${finance.tracing.flush-ms:1000}") long flushMillis) {
+
+		return new Tracer(exporter, sampleRate, maxSpansPerTrace, queueSize, flushMillis, meterRegistry);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(SpanExporter.class)
+	@ConditionalOnProperty(name = "finance.tracing.exporter", havingValue = "file")
+	FileSpanExporter fileSpanExporter(ObjectMapper objectMapper,
+			@Value("${finance.tracing.file:spans.ndjson}") String file) {
+
+		return new FileSpanExporter(Paths.get(file), objectMapper);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(SpanExporter.class)
+	@ConditionalOnProperty(name = "finance.tracing.exporter", havingValue = "memory", matchIfMissing = true)
+	InMemorySpanExporter inMemorySpanExporter(@Value("${finance.tracing.memory.max-spans:10000}") int maxSpans) {
+		return new InMemorySpanExporter(maxSpans);
+	}
+
+	@Bean
+	FilterRegistrationBean<TracingFilter> tracingFilter(Tracer tracer) {
+
+		FilterRegistrationBean<TracingFilter> registration = new FilterRegistrationBean<>(new TracingFilter(tracer));
+		registration.addUrlPatterns("/orders", "/orders/*", "/employees", "/employees/*");
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+		return registration;
+	}
+
+	@Bean
+	RestTemplateCustomizer tracingRestTemplateCustomizer() {
+
+		return restTemplate -> restTemplate.getInterceptors().add((request, body, execution) -> {
+			Tracing.inject(request.getHeaders()::set);
+			return execution.execute(request, body);
+		});
+	}
+
+	@Bean
+	static BeanPostProcessor tracingPostProcessor() {
+
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+
+				if (bean instanceof DataSource && !(bean instanceof TracingDataSource)) {
+					return new TracingDataSource((DataSource) bean);
+				}
+				if (bean instanceof Repository && bean instanceof Advised && !((Advised) bean).isFrozen()) {
+					Class<?> repository = ((Advised) bean).getProxiedInterfaces()[0];
+					((Advised) bean).addAdvice(0, tracingInterceptor(repository.getSimpleName()));
+				}
+				return bean;
+			}
+		};
+	}
+
+	private static MethodInterceptor tracingInterceptor(String repository) {
+
+		return invocation -> {
+			try (Span span = Tracing.child(repository + "." + invocation.getMethod().getName())) {
+				try {
+					Object result = invocation.proceed();
+					span.tag("rows", FlightEvents.rows(result));
+					return result;
+				} catch (Throwable e) {
+					span.error(e);
+					throw e;
+				}
+			}
+		};
+	}
+}
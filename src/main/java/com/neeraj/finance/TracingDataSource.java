@@ -0,0 +1,123 @@
+package com.neeraj.finance;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Opens a Span for every JDBC statement executed in a sampled trace, tagged with its
+ * SQL (`db.statement`) and, for updates, the rows they changed.
+ *
+ * Only connections handed out while a sampled span is current are wrapped, in a
+ * proxy whose statements are wrapped in turn; everything else gets the pool's
+ * connection as it is. A transaction's connection is taken when it begins, so the
+ * statements of a traced request are traced whichever thread (see
+ * Tracing.propagate()) runs them. unwrap() sees through to the pool.
+ */
+class TracingDataSource extends DelegatingDataSource {
+
+	private static final int MAX_STATEMENT_LENGTH = 1000;
+
+	TracingDataSource(DataSource target) {
+		super(target);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return traced(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return traced(super.getConnection(username, password));
+	}
+
+	private static Connection traced(Connection connection) {
+
+		Span span = Tracing.current();
+		if (span == null || !span.isSampled()) {
+			return connection;
+		}
+		return (Connection) Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new ConnectionHandler(connection));
+	}
+
+	private static class ConnectionHandler implements InvocationHandler {
+
+		private final Connection target;
+
+		ConnectionHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			Object result = invokeOn(target, method, args);
+
+			// prepareStatement(sql, ...) and prepareCall(sql, ...) know their SQL up front,
+			// createStatement() is told it by execute(sql).
+			if (result instanceof Statement) {
+				String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+				return Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(),
+						new Class<?>[] { method.getReturnType() }, new StatementHandler((Statement) result, sql));
+			}
+			return result;
+		}
+	}
+
+	private static class StatementHandler implements InvocationHandler {
+
+		private final Statement target;
+		private final String sql;
+
+		StatementHandler(Statement target, String sql) {
+
+			this.target = target;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			if (!method.getName().startsWith("execute")) {
+				return invokeOn(target, method, args);
+			}
+
+			String statement = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+			try (Span span = Tracing.child("jdbc " + method.getName())) {
+				span.tag("db.statement", statement == null || statement.length() <= MAX_STATEMENT_LENGTH ? statement
+						: statement.substring(0, MAX_STATEMENT_LENGTH) + "...");
+				try {
+					Object result = invokeOn(target, method, args);
+					if (result instanceof Integer || result instanceof Long) {
+						span.tag("db.rows", result);
+					} else if (result instanceof int[]) {
+						span.tag("db.batch", ((int[]) result).length);
+					}
+					return result;
+				} catch (Throwable e) {
+					span.error(e);
+					throw e;
+				}
+			}
+		}
+	}
+
+	private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Opens the root Span of each request to the order and employee endpoints, taking
+ * the trace over from the caller's `traceparent` if there is one.
+ *
+ * The span is named after the handler's path pattern (GET /orders/{id}), so the
+ * traces of one endpoint group together. The response carries a `traceresponse`
+ * header, the W3C format of traceparent with this request's span, so that a client
+ * that didn't send a trace of its own can still look up the one it was given.
+ */
+class TracingFilter extends OncePerRequestFilter {
+
+	static final String TRACERESPONSE = "traceresponse";
+
+	private final Tracer tracer;
+
+	TracingFilter(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+
+		try (Span span = tracer.startRequest(request.getMethod() + " " + request.getRequestURI(),
+				request.getHeader(Tracing.TRACEPARENT), request.getHeader(Tracing.TRACESTATE))) {
+
+			response.setHeader(TRACERESPONSE, span.getTraceParent());
+			try {
+				chain.doFilter(request, response);
+			} catch (IOException | ServletException | RuntimeException e) {
+				span.error(e);
+				throw e;
+			} finally {
+				Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+				span.rename(pattern == null ? null : request.getMethod() + " " + pattern) //
+						.tag("http.method", request.getMethod()) //
+						.tag("http.target", request.getRequestURI()) //
+						.tag("http.status_code", response.getStatus());
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Healthy traffic of very different costs keeps the concurrency limit up while a
+ * slowdown brings it down, and made-up API keys don't buy fresh token buckets.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = { "finance.admission.enabled=true", "finance.admission.rate=0.1", "finance.admission.burst=5",
+				"finance.admission.api-keys=issued" })
+class AdmissionControlTest {
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Test
+	void keepsTheLimitUpUnderMixedTraffic() {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 200);
+
+		// Cached lookups in microseconds, list scans in milliseconds.
+		for (int i = 0; i < 5000; i++) {
+			limiter.tryAcquire();
+			limiter.release(1, TimeUnit.MICROSECONDS.toNanos(50 + i % 20));
+			limiter.tryAcquire();
+			limiter.release(10, TimeUnit.MILLISECONDS.toNanos(20 + i % 5));
+		}
+		assertThat(limiter.getLimit()).isEqualTo(200);
+
+		// Then the database slows down tenfold.
+		for (int i = 0; i < 50; i++) {
+			limiter.tryAcquire();
+			limiter.release(10, TimeUnit.MILLISECONDS.toNanos(200));
+		}
+		assertThat(limiter.getLimit()).isLessThan(20);
+	}
+
+	@Test
+	void ratesUnknownKeysByAddress() {
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(lookup("made-up-" + i)).isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+		}
+		assertThat(lookup("made-up-5")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+		assertThat(lookup(null)).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+		assertThat(lookup("issued")).isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+	}
+
+	private HttpStatus lookup(String apiKey) {
+
+		HttpHeaders headers = new HttpHeaders();
+		if (apiKey != null) {
+			headers.set(OrderAdmissionFilter.API_KEY_HEADER, apiKey);
+		}
+		return rest.exchange("/orders/1", HttpMethod.GET, new HttpEntity<>(headers), String.class).getStatusCode();
+	}
+}
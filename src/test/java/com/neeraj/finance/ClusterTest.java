@@ -0,0 +1,132 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Two FinanceApplication nodes in one JVM, running with the `cluster` profile against
+ * one shared H2 database and sending each other cache invalidations.
+ */
+class ClusterTest {
+
+	private static final Path DATABASE = Paths.get("target", "cluster-test");
+
+	private final TestRestTemplate rest = new TestRestTemplate();
+
+	private ConfigurableApplicationContext a;
+	private ConfigurableApplicationContext b;
+
+	@BeforeEach
+	void startNodes() throws IOException {
+
+		if (Files.exists(DATABASE)) {
+			try (Stream<Path> files = Files.walk(DATABASE)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+
+		int portA = freeUdpPort();
+		int portB = freeUdpPort();
+		a = node(portA, portB);
+		b = node(portB, portA);
+	}
+
+	@AfterEach
+	void stopNodes() {
+
+		if (b != null) {
+			b.close();
+		}
+		if (a != null) {
+			a.close();
+		}
+	}
+
+	@Test
+	void nodesShareOrdersAndInvalidateEachOthersCaches() throws InterruptedException {
+
+		// Only the first node seeded the shared database.
+		assertThat(rest.getForObject(url(b, "/orders"), String.class).split("MacBook Pro", -1)).hasSize(2);
+
+		Long first = create(a);
+		assertThat(get(b, first).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		// B caches the miss for a minute...
+		Long next = first + 1;
+		assertThat(get(b, next).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		// ...until A creates that very order and tells it so.
+		assertThat(create(a)).isEqualTo(next);
+
+		HttpStatus status = HttpStatus.NOT_FOUND;
+		for (int attempt = 0; attempt < 50 && status != HttpStatus.OK; attempt++) {
+			Thread.sleep(100);
+			status = get(b, next).getStatusCode();
+		}
+		assertThat(status).isEqualTo(HttpStatus.OK);
+	}
+
+	private static ConfigurableApplicationContext node(int clusterPort, int peerPort) {
+
+		return new SpringApplicationBuilder(FinanceApplication.class) //
+				.profiles("cluster") //
+				.run("--server.port=0", //
+						"--spring.datasource.url=jdbc:h2:file:./" + DATABASE + "/finance;AUTO_SERVER=TRUE", //
+						"--finance.cluster.port=" + clusterPort, //
+						"--finance.cluster.peers=localhost:" + peerPort, //
+						"--finance.orders.miss-cache.ttl-ms=60000");
+	}
+
+	private Long create(ConfigurableApplicationContext node) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		URI location = rest.postForLocation(url(node, "/orders"),
+				new HttpEntity<>("{\"description\":\"clustered\"}", headers));
+
+		String path = location.getPath();
+		return Long.valueOf(path.substring(path.lastIndexOf('/') + 1));
+	}
+
+	private ResponseEntity<String> get(ConfigurableApplicationContext node, Long id) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(MediaTypes.HAL_JSON));
+		return rest.exchange(url(node, "/orders/" + id), HttpMethod.GET,
+				new HttpEntity<>(headers), String.class);
+	}
+
+	private static String url(ConfigurableApplicationContext node, String path) {
+		return "http://localhost:" + node.getEnvironment().getProperty("local.server.port") + path;
+	}
+
+	private static int freeUdpPort() throws IOException {
+
+		try (DatagramSocket socket = new DatagramSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
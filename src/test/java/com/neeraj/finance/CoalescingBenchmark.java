@@ -0,0 +1,126 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A thundering herd: bursts of `CLIENTS` simultaneous requests for the same order
+ * (and for the whole collection), with and without read coalescing.
+ *
+ * Each burst releases every client at once, which is the worst case for a server
+ * that loads, assembles and serializes the same thing once per request. Runs the
+ * app twice on a random port, with `finance.orders.coalescing.enabled` on and off.
+ * Not picked up by the default surefire includes; run it with
+ * `./mvnw test -Dtest=CoalescingBenchmark`.
+ */
+class CoalescingBenchmark {
+
+	private static final int ORDERS = 500;
+	private static final int CLIENTS = 64;
+	private static final int WARMUP_BURSTS = 20;
+	private static final int BURSTS = 100;
+
+	@Test
+	void thunderingHerd() throws Exception {
+
+		for (boolean coalescing : new boolean[] { false, true }) {
+
+			ConfigurableApplicationContext context = new SpringApplicationBuilder(FinanceApplication.class) //
+					.run("--server.port=0", "--finance.orders.coalescing.enabled=" + coalescing);
+			try {
+				String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+				List<Order> orders = new ArrayList<>();
+				for (int i = 0; i < ORDERS; i++) {
+					orders.add(new Order("order " + i, Status.IN_PROGRESS));
+				}
+				Long id = context.getBean(OrderRepository.class).saveAll(orders).get(0).getId();
+
+				ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+				try {
+					for (String path : new String[] { "/orders/" + id, "/orders" }) {
+						herd(clients, baseUrl + path, WARMUP_BURSTS);
+						Histogram latencies = herd(clients, baseUrl + path, BURSTS);
+						report(coalescing, "GET " + path.replace(id.toString(), "{id}"), latencies);
+					}
+				} finally {
+					clients.shutdownNow();
+				}
+
+				MeterRegistry meters = context.getBean(MeterRegistry.class);
+				double shared = meters.get("orders.reads.coalescing").tag("outcome", "shared").counter().count();
+				double loaded = meters.get("orders.reads.coalescing").tag("outcome", "loaded").counter().count();
+				System.out.printf("coalescing %-5s %.1f%% of reads shared a load%n", coalescing,
+						100 * shared / (shared + loaded));
+			} finally {
+				context.close();
+			}
+		}
+	}
+
+	private static Histogram herd(ExecutorService clients, String url, int bursts) throws Exception {
+
+		Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(1), 3);
+
+		for (int burst = 0; burst < bursts; burst++) {
+
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> requests = new ArrayList<>(CLIENTS);
+			for (int client = 0; client < CLIENTS; client++) {
+				requests.add(clients.submit(() -> {
+					start.await();
+					long begin = System.nanoTime();
+					get(url);
+					latencies.recordValue(System.nanoTime() - begin);
+					return null;
+				}));
+			}
+
+			start.countDown();
+			for (Future<?> request : requests) {
+				request.get();
+			}
+		}
+
+		return latencies;
+	}
+
+	private static void get(String url) throws IOException {
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestProperty("Accept", "application/hal+json");
+		if (connection.getResponseCode() != 200) {
+			throw new IllegalStateException(url + " answered " + connection.getResponseCode());
+		}
+		try (InputStream in = connection.getInputStream()) {
+			byte[] buffer = new byte[8192];
+			while (in.read(buffer) >= 0) {
+			}
+		}
+	}
+
+	private static void report(boolean coalescing, String endpoint, Histogram latencies) {
+
+		System.out.printf("coalescing %-5s %-16s p50 %,8d us  p99 %,8d us  max %,8d us%n", coalescing, endpoint,
+				TimeUnit.NANOSECONDS.toMicros(latencies.getValueAtPercentile(50)),
+				TimeUnit.NANOSECONDS.toMicros(latencies.getValueAtPercentile(99)),
+				TimeUnit.NANOSECONDS.toMicros(latencies.getMaxValue()));
+	}
+}
@@ -0,0 +1,198 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A stalled database costs a request at most a timeout, an open circuit costs it
+ * nothing, and reads keep being answered from the last known responses meanwhile,
+ * which are refreshed in the background.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"finance.database.timeout-ms=200", "finance.database.write-timeout-ms=1000",
+		"finance.database.failure-threshold=3", "finance.database.open-ms=60000" })
+class DatabaseGuardTest {
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private DatabaseGuard database;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@LocalServerPort
+	private int port;
+
+	@Test
+	void abandonsCallsThatTakeLongerThanTheTimeout() {
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> database.read("stalled", () -> {
+			sleep(2000);
+			return null;
+		})).isInstanceOf(DatabaseUnavailableException.class);
+
+		assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(1000);
+	}
+
+	@Test
+	void cancelsWritesThatTakeLongerThanTheWriteTimeout() {
+
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> database.write("stalled-write", () -> jdbcTemplate
+				.queryForObject("SELECT SUM(X) FROM SYSTEM_RANGE(1, 1000000000000)", Long.class)))
+						.isInstanceOf(DatabaseUnavailableException.class);
+
+		assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(5000);
+	}
+
+	@Test
+	void opensAfterRepeatedFailuresOnly() {
+
+		// The database answered, the request was wrong.
+		for (int i = 0; i < 5; i++) {
+			assertThatThrownBy(() -> database.read("integrity", () -> {
+				throw new DataIntegrityViolationException("duplicate");
+			})).isInstanceOf(DataIntegrityViolationException.class);
+		}
+		assertThat(database.breaker("integrity").state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+		failRepeatedly("unreachable");
+		assertThat(database.breaker("unreachable").state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> database.read("unreachable", () -> "never called"))
+				.isInstanceOf(DatabaseUnavailableException.class);
+		assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(100);
+	}
+
+	@Test
+	void servesTheLastKnownResponseWhileTheCircuitIsOpen() {
+
+		Long known = orderRepository.save(new Order("known", Status.IN_PROGRESS)).getId();
+		Long unknown = orderRepository.save(new Order("never read", Status.IN_PROGRESS)).getId();
+
+		ResponseEntity<String> fresh = get("/orders/" + known);
+		assertThat(fresh.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(fresh.getHeaders().getFirst(HttpHeaders.WARNING)).isNull();
+		assertThat(get("/orders?ids=" + known).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		failRepeatedly(DatabaseGuard.ORDERS);
+
+		ResponseEntity<String> stale = get("/orders/" + known);
+		assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(stale.getBody()).isEqualTo(fresh.getBody());
+		assertThat(stale.getHeaders().getFirst(HttpHeaders.WARNING)).isEqualTo(LastKnownResponses.STALE);
+		assertThat(stale.getHeaders().getFirst(HttpHeaders.AGE)).isNotNull();
+
+		ResponseEntity<String> unavailable = get("/orders/" + unknown);
+		assertThat(unavailable.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		assertThat(Long.parseLong(unavailable.getHeaders().getFirst(HttpHeaders.RETRY_AFTER))).isPositive();
+
+		// Multi-gets aren't remembered.
+		assertThat(get("/orders?ids=" + known).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+		database.breaker(DatabaseGuard.ORDERS).onSuccess();
+	}
+
+	@Test
+	void refreshesStaleResponsesInTheBackground() throws InterruptedException {
+
+		Order order = orderRepository.save(new Order("before the outage", Status.IN_PROGRESS));
+		assertThat(get("/orders/" + order.getId()).getHeaders().getFirst(HttpHeaders.WARNING)).isNull();
+
+		failRepeatedly(DatabaseGuard.ORDERS);
+		assertThat(get("/orders/" + order.getId()).getHeaders().getFirst(HttpHeaders.WARNING))
+				.isEqualTo(LastKnownResponses.STALE);
+
+		order.setDescription("after the outage");
+		orderRepository.save(order);
+		database.breaker(DatabaseGuard.ORDERS).onSuccess();
+
+		// Still stale right away, until the refresh it starts is done.
+		ResponseEntity<String> response = get("/orders/" + order.getId());
+		assertThat(response.getHeaders().getFirst(HttpHeaders.WARNING)).isEqualTo(LastKnownResponses.STALE);
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (response.getHeaders().getFirst(HttpHeaders.WARNING) != null) {
+			assertThat(System.currentTimeMillis()).as("time until the refresh was done").isLessThan(deadline);
+			Thread.sleep(10);
+			response = get("/orders/" + order.getId());
+		}
+		assertThat(response.getBody()).contains("after the outage")
+				.contains("\"http://localhost:" + port + "/orders/" + order.getId() + "\"");
+	}
+
+	@Test
+	void remembersUpToMaxBytes() {
+
+		LastKnownResponses lastKnown = new LastKnownResponses(new SimpleMeterRegistry(), 10);
+		lastKnown.serve("a", MediaType.APPLICATION_JSON, () -> "\"aaaa\"".getBytes(StandardCharsets.UTF_8));
+		lastKnown.serve("b", MediaType.APPLICATION_JSON, () -> "\"bbbb\"".getBytes(StandardCharsets.UTF_8));
+
+		Supplier<byte[]> unavailable = () -> {
+			throw new DatabaseUnavailableException(DatabaseGuard.ORDERS, 1000, null);
+		};
+		assertThatThrownBy(() -> lastKnown.serve("a", MediaType.APPLICATION_JSON, unavailable))
+				.isInstanceOf(DatabaseUnavailableException.class);
+		assertThat(lastKnown.serve("b", MediaType.APPLICATION_JSON, unavailable).getBody())
+				.isEqualTo("\"bbbb\"".getBytes(StandardCharsets.UTF_8));
+
+		lastKnown.stop();
+	}
+
+	private void failRepeatedly(String name) {
+
+		for (int i = 0; i < 3; i++) {
+			assertThatThrownBy(() -> database.read(name, () -> {
+				throw new DataAccessResourceFailureException("Database may be already in use");
+			})).isInstanceOf(DatabaseUnavailableException.class);
+		}
+	}
+
+	private ResponseEntity<String> get(String path) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(MediaTypes.HAL_JSON));
+		return rest.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+	}
+
+	private static void sleep(long millis) {
+
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
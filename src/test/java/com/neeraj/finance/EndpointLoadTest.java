@@ -0,0 +1,79 @@
+package com.neeraj.finance;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+
+/**
+ * Drives a configurable mix of requests against the app on a random port and fails
+ * when p99 latency or throughput regress beyond the stored LoadBaseline, scaled to the
+ * speed of the machine it runs on.
+ *
+ * Tagged `load`, so it only runs with `./mvnw test -Pload-test`. Knobs (system
+ * properties): `load.mix`, `load.threads`, `load.warmup-seconds`,
+ * `load.duration-seconds`, `load.tolerance`, `load.base-url` (to target another
+ * running instance, e.g. 2_evolution with an employee mix, though the machine score
+ * is still this machine's) and
+ * `load.update-baseline=true` to record the current run as the new baseline.
+ * HDR percentile distributions are written to `target/load-test`.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class EndpointLoadTest {
+
+	private static final String DEFAULT_MIX = "list-orders:2,get-order:53,new-order:25,cancel-order:10,complete-order:10";
+
+	@LocalServerPort
+	int port;
+
+	@Test
+	void endpointsDoNotRegress() throws Exception {
+
+		String baseUrl = System.getProperty("load.base-url", "http://localhost:" + port);
+		LoadGenerator generator = new LoadGenerator(baseUrl,
+				LoadGenerator.parseMix(System.getProperty("load.mix", DEFAULT_MIX)));
+
+		int threads = Integer.getInteger("load.threads", 8);
+		double before = LoadBaseline.machineScore(threads);
+
+		List<LoadGenerator.Result> results = generator.run( //
+				threads, //
+				Long.getLong("load.warmup-seconds", 5), //
+				Long.getLong("load.duration-seconds", 20));
+
+		// Measured on both sides of the run, in case the machine was busier for part of it.
+		double score = Math.min(before, LoadBaseline.machineScore(threads));
+		System.out.printf("machine score %.0f (%.0f before the run)%n", score, before);
+
+		Path reports = Paths.get("target", "load-test");
+		Files.createDirectories(reports);
+		for (LoadGenerator.Result result : results) {
+			System.out.println(result);
+			try (PrintStream out = new PrintStream(Files.newOutputStream(reports.resolve(result.operation.key() + ".hgrm")))) {
+				result.latencies.outputPercentileDistribution(out, 1000.0);
+			}
+		}
+
+		if (Boolean.getBoolean("load.update-baseline")) {
+			LoadBaseline.store(results, score, Paths.get("src", "test", "resources", "load-baseline.properties"));
+			return;
+		}
+
+		LoadBaseline baseline = LoadBaseline.load(getClass().getResourceAsStream("/load-baseline.properties"));
+		List<String> regressions = baseline.regressions(results,
+				Double.parseDouble(System.getProperty("load.tolerance", "0.25")), score);
+
+		assertTrue(regressions.isEmpty(), "Load test regressed: " + regressions);
+		results.forEach(result -> assertEquals(0, result.errors, result.operation.key() + " had errors"));
+	}
+}
@@ -0,0 +1,109 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * A recording taken through the admin endpoint holds the FlightEvents of the
+ * requests made while it ran.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "finance.jfr.enabled=true")
+class FlightRecordingTest {
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Test
+	void recordsTheStagesOfRequests() throws Exception {
+
+		ResponseEntity<JsonNode> started = rest.postForEntity("/admin/recordings?duration=1m", null, JsonNode.class);
+		assertThat(started.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		long recording = started.getBody().get("id").asLong();
+		assertThat(started.getBody().get("state").asText()).isEqualTo("RUNNING");
+
+		assertThat(rest.postForEntity("/admin/recordings", null, JsonNode.class).getStatusCode())
+				.isEqualTo(HttpStatus.CONFLICT);
+
+		long id = rest.postForObject("/orders", Collections.singletonMap("description", "Phial of Galadriel"),
+				JsonNode.class).get("id").asLong();
+		assertThat(get("/orders/" + id, MediaTypes.HAL_JSON).getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(get("/orders", MediaType.APPLICATION_JSON).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		ResponseEntity<byte[]> stopped = rest.exchange("/admin/recordings/" + recording, HttpMethod.DELETE, null,
+				byte[].class);
+		assertThat(stopped.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(rest.getForEntity("/admin/recordings/" + recording, JsonNode.class).getStatusCode())
+				.isEqualTo(HttpStatus.NOT_FOUND);
+
+		Path file = Files.createTempFile("recording", ".jfr");
+		List<RecordedEvent> events;
+		try {
+			Files.write(file, stopped.getBody());
+			events = RecordingFile.readAllEvents(file);
+		} finally {
+			Files.delete(file);
+		}
+
+		assertThat(events).anySatisfy(event -> {
+			assertThat(event.getEventType().getName()).isEqualTo("com.neeraj.finance.Request");
+			assertThat(event.getString("endpoint")).isEqualTo("/orders/{id}");
+			assertThat(event.getLong("orderId")).isEqualTo(id);
+			assertThat(event.getInt("status")).isEqualTo(200);
+		});
+		assertThat(events).anySatisfy(event -> {
+			assertThat(event.getEventType().getName()).isEqualTo("com.neeraj.finance.Repository");
+			assertThat(event.getString("repository")).isEqualTo("OrderRepository");
+			assertThat(event.getString("method")).isEqualTo("findInAnyPartition");
+			assertThat(event.getLong("orderId")).isEqualTo(id);
+			assertThat(event.getInt("rows")).isEqualTo(1);
+		});
+		assertThat(events).anySatisfy(event -> {
+			assertThat(event.getEventType().getName()).isEqualTo("com.neeraj.finance.Assembler");
+			assertThat(event.getLong("orderId")).isEqualTo(id);
+			assertThat(event.getInt("links")).isEqualTo(4);
+		});
+		assertThat(events).anySatisfy(event -> {
+			assertThat(event.getEventType().getName()).isEqualTo("com.neeraj.finance.Serialization");
+			assertThat(event.getString("format")).isEqualTo("json");
+			assertThat(event.getInt("rows")).isGreaterThan(1);
+			assertThat(event.getLong("bytes")).isPositive();
+		});
+	}
+
+	@Test
+	void refusesUnboundedRecordings() {
+
+		assertThat(rest.postForEntity("/admin/recordings?duration=1h", null, JsonNode.class).getStatusCode())
+				.isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(rest.postForEntity("/admin/recordings?settings=everything", null, JsonNode.class).getStatusCode())
+				.isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	private ResponseEntity<JsonNode> get(String path, MediaType accept) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(accept));
+		return rest.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+	}
+}
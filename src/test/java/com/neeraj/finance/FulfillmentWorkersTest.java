@@ -0,0 +1,179 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Fulfillment workers on several nodes share the IN_PROGRESS orders without ever
+ * processing one twice, pick up the orders of a worker whose lease expired, and
+ * never have their transitions overwritten by the API.
+ *
+ * The background pool stays disabled; the tests drive fulfilNextBatch() themselves,
+ * on the context's workers and on a second instance standing in for another node.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = "finance.fulfillment.batch-size=20")
+class FulfillmentWorkersTest {
+
+	// How often the handler saw each order.
+	private static final Map<Long, Integer> handled = new ConcurrentHashMap<>();
+
+	@TestConfiguration
+	static class RecordingHandler {
+
+		@Bean
+		FulfillmentHandler fulfillmentHandler() {
+
+			return order -> {
+				handled.merge(order.getId(), 1, Integer::sum);
+				return order.getDescription().startsWith("cancel") ? Status.CANCELLED : Status.COMPLETED;
+			};
+		}
+	}
+
+	@Autowired
+	private FulfillmentWorkers workers;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Test
+	void twoNodesNeverFulfilTheSameOrderTwice() throws Exception {
+
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			ids.add(orderRepository.save(new Order((i % 10 == 0 ? "cancel " : "ship ") + i, Status.IN_PROGRESS))
+					.getId());
+		}
+		Long cancel = ids.get(0);
+
+		FulfillmentWorkers otherNode = context.getAutowireCapableBeanFactory().createBean(FulfillmentWorkers.class);
+
+		ExecutorService threads = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> running = new ArrayList<>();
+			for (FulfillmentWorkers node : new FulfillmentWorkers[] { workers, workers, otherNode, otherNode }) {
+				running.add(threads.submit(() -> {
+					while (node.fulfilNextBatch() > 0) {
+					}
+				}));
+			}
+			for (Future<?> thread : running) {
+				thread.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+
+		// A thread that lost every claim in its last round may stop early, another one
+		// still finishes the work.
+		while (workers.fulfilNextBatch() > 0) {
+		}
+
+		for (Long id : ids) {
+			assertThat(handled.get(id)).as("times order %d was handled", id).isEqualTo(1);
+		}
+		assertThat(orderRepository.findById(cancel).get().getStatus()).isEqualTo(Status.CANCELLED);
+		assertThat(orderRepository.findById(ids.get(1)).get().getStatus()).isEqualTo(Status.COMPLETED);
+	}
+
+	@Test
+	void reclaimsOrdersWhoseLeaseExpired() {
+
+		Long id = orderRepository.save(new Order("ship after crash", Status.IN_PROGRESS)).getId();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+		// Claimed by a worker that is still within its lease.
+		jdbcTemplate.update("UPDATE customer_order SET lease_owner = 'crashed', lease_until = ? WHERE id = ?",
+				Timestamp.from(Instant.now().plusSeconds(60)), id);
+		while (workers.fulfilNextBatch() > 0) {
+		}
+		assertThat(handled).doesNotContainKey(id);
+		assertThat(orderRepository.findById(id).get().getStatus()).isEqualTo(Status.IN_PROGRESS);
+
+		// That worker crashed and its lease ran out.
+		jdbcTemplate.update("UPDATE customer_order SET lease_until = ? WHERE id = ?",
+				Timestamp.from(Instant.now().minusSeconds(1)), id);
+		while (workers.fulfilNextBatch() > 0) {
+		}
+		assertThat(handled.get(id)).isEqualTo(1);
+		assertThat(orderRepository.findById(id).get().getStatus()).isEqualTo(Status.COMPLETED);
+	}
+
+	@Test
+	void doesNotLetTheApiOverwriteAWorkersTransition() throws Exception {
+
+		Long id = orderRepository.save(new Order("cancel while shipping", Status.IN_PROGRESS)).getId();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+		ExecutorService client = Executors.newSingleThreadExecutor();
+		try {
+			Future<ResponseEntity<String>> cancel = new TransactionTemplate(transactionManager).execute(status -> {
+
+				// A worker completes the order, but hasn't committed yet ...
+				jdbcTemplate.update("UPDATE customer_order SET status = ? WHERE id = ?", Status.COMPLETED.getCode(),
+						id);
+
+				// ... when the API, which still reads it IN_PROGRESS, tries to cancel it.
+				Future<ResponseEntity<String>> response = client.submit(
+						() -> rest.exchange("/orders/" + id + "/cancel", HttpMethod.DELETE, null, String.class));
+				awaitBlockedOn(jdbcTemplate);
+				return response;
+			});
+
+			assertThat(cancel.get(10, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+			assertThat(orderRepository.findById(id).get().getStatus()).isEqualTo(Status.COMPLETED);
+		} finally {
+			client.shutdownNow();
+		}
+	}
+
+	// Until another session waits for a row lock held by this one.
+	private static void awaitBlockedOn(JdbcTemplate jdbcTemplate) {
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS WHERE BLOCKER_ID = SESSION_ID()",
+				Integer.class) == 0) {
+			assertThat(System.currentTimeMillis()).as("time the API was blocked by").isLessThan(deadline);
+			Thread.yield();
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The stored p99 latency per operation and overall throughput that load test runs are
+ * compared against, kept in `src/test/resources/load-baseline.properties` as
+ * `<operation>.p99-us` and `all.throughput` entries. Throughput is compared for the
+ * whole mix because each operation's share of it varies with the random picks, and a
+ * p99 only once the run has at least MIN_P99_SAMPLES of the operation, as below that
+ * it is little more than the slowest call.
+ *
+ * Next to them is the `machine.score` of the machine that recorded them: how many
+ * rounds of a fixed CPU-bound workload it gets through per second on the load test's
+ * threads. A run on another machine scales the baseline by the ratio of the two
+ * scores before comparing, so that a baseline recorded on a laptop doesn't fail every
+ * run on a slower CI runner, or hide regressions on a faster one.
+ */
+class LoadBaseline {
+
+	static final String SCORE = "machine.score";
+	static final String THROUGHPUT = "all.throughput";
+	static final long MIN_P99_SAMPLES = 500;
+
+	// The score is the best of these windows, so that a burst of other work on the
+	// machine (the app finishing its startup, say) doesn't count against it.
+	private static final int CALIBRATION_WINDOWS = 20;
+	private static final long CALIBRATION_WINDOW_MILLIS = 200;
+
+	private final Properties values = new Properties();
+
+	static LoadBaseline load(InputStream in) throws IOException {
+
+		LoadBaseline baseline = new LoadBaseline();
+		if (in != null) {
+			try (InputStream stream = in) {
+				baseline.values.load(stream);
+			}
+		}
+		return baseline;
+	}
+
+	/**
+	 * This machine's score on `threads` threads, after a second of warmup.
+	 */
+	static double machineScore(int threads) throws InterruptedException {
+
+		// On one thread: with `threads` busy ones on a small machine, the JIT may not
+		// get to compile the workload before the windows are over.
+		byte[] warmup = new byte[4096];
+		MessageDigest digest = digest();
+		for (long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1); System.nanoTime() < end;) {
+			warmup[0] = digest.digest(warmup)[0];
+		}
+
+		long measureFrom = System.nanoTime();
+		long window = TimeUnit.MILLISECONDS.toNanos(CALIBRATION_WINDOW_MILLIS);
+		long end = measureFrom + CALIBRATION_WINDOWS * window;
+		LongAdder[] rounds = new LongAdder[CALIBRATION_WINDOWS];
+		for (int i = 0; i < rounds.length; i++) {
+			rounds[i] = new LongAdder();
+		}
+
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(() -> {
+				try {
+					MessageDigest own = digest();
+					byte[] block = new byte[4096];
+					long now;
+					while ((now = System.nanoTime()) < end) {
+						// Feeding the hash back in keeps the JIT from skipping the work.
+						block[0] = own.digest(block)[0];
+						rounds[(int) ((now - measureFrom) / window)].increment();
+					}
+				} finally {
+					done.countDown();
+				}
+			}, "calibrate-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		done.await();
+
+		long best = 0;
+		for (LongAdder counted : rounds) {
+			best = Math.max(best, counted.sum());
+		}
+		return best * 1000.0 / CALIBRATION_WINDOW_MILLIS;
+	}
+
+	private static MessageDigest digest() {
+
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Compares a run on a machine with `score` against the baseline, scaled to that
+	 * machine, and describes every regression bigger than `tolerance` (0.25 = 25%).
+	 * Operations without a baseline are not checked, and a baseline without a score is
+	 * taken as is.
+	 */
+	List<String> regressions(List<LoadGenerator.Result> results, double tolerance, double score) {
+
+		String recorded = values.getProperty(SCORE);
+		double speedup = recorded == null ? 1 : score / Double.parseDouble(recorded);
+
+		List<String> regressions = new ArrayList<>();
+
+		for (LoadGenerator.Result result : results) {
+
+			String key = result.operation.key();
+
+			String p99 = values.getProperty(key + ".p99-us");
+			if (p99 != null && result.latencies.getTotalCount() >= MIN_P99_SAMPLES) {
+				long expected = Math.round(Long.parseLong(p99) / speedup);
+				if (result.p99Micros() > expected * (1 + tolerance)) {
+					regressions.add(String.format("%s: p99 %d us, baseline %s us (%d us on this machine)", key,
+							result.p99Micros(), p99, expected));
+				}
+			}
+
+		}
+
+		String throughput = values.getProperty(THROUGHPUT);
+		double actual = throughput(results);
+		if (throughput != null) {
+			double expected = Double.parseDouble(throughput) * speedup;
+			if (actual < expected * (1 - tolerance)) {
+				regressions.add(String.format("throughput %.1f req/s, baseline %s req/s (%.1f on this machine)", actual,
+						throughput, expected));
+			}
+		}
+
+		return regressions;
+	}
+
+	static void store(List<LoadGenerator.Result> results, double score, Path file) throws IOException {
+
+		Properties values = new Properties();
+		values.setProperty(SCORE, String.format("%.0f", score));
+		values.setProperty(THROUGHPUT, String.format("%.1f", throughput(results)));
+		for (LoadGenerator.Result result : results) {
+			values.setProperty(result.operation.key() + ".p99-us", Long.toString(result.p99Micros()));
+		}
+
+		try (OutputStream out = Files.newOutputStream(file)) {
+			values.store(out, "Load test baseline, regenerate with ./mvnw test -Pload-test -Dload.update-baseline=true");
+		}
+	}
+
+	private static double throughput(List<LoadGenerator.Result> results) {
+		return results.stream().mapToDouble(result -> result.throughput).sum();
+	}
+}
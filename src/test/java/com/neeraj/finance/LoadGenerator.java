@@ -0,0 +1,348 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * A small closed-loop HTTP load generator for the REST endpoints.
+ *
+ * `threads` workers each pick an Operation at random (weighted by the configured mix),
+ * issue it, and record its latency in a per-operation HDR histogram. Latencies from
+ * the warmup period are thrown away. Only the JDK's HttpURLConnection is used, so it
+ * can point at any running instance of the app, including the 2_evolution module for
+ * the employee operations.
+ */
+class LoadGenerator {
+
+	/**
+	 * Everything the generator knows how to call. Transitions (cancel/complete) and the
+	 * employee writes consume ids created earlier in the run.
+	 */
+	enum Operation {
+		LIST_ORDERS, GET_ORDER, NEW_ORDER, CANCEL_ORDER, COMPLETE_ORDER, //
+		LIST_EMPLOYEES, GET_EMPLOYEE, NEW_EMPLOYEE, REPLACE_EMPLOYEE, DELETE_EMPLOYEE;
+
+		String key() {
+			return name().toLowerCase().replace('_', '-');
+		}
+
+		static Operation fromKey(String key) {
+			return valueOf(key.trim().toUpperCase().replace('-', '_'));
+		}
+	}
+
+	/**
+	 * What one operation did during the measured part of the run.
+	 */
+	static class Result {
+
+		final Operation operation;
+		final Histogram latencies;
+		final long errors;
+		final double throughput;
+
+		Result(Operation operation, Histogram latencies, long errors, double seconds) {
+			this.operation = operation;
+			this.latencies = latencies;
+			this.errors = errors;
+			this.throughput = latencies.getTotalCount() / seconds;
+		}
+
+		long p99Micros() {
+			return TimeUnit.NANOSECONDS.toMicros(latencies.getValueAtPercentile(99.0));
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-17s %8d req %9.1f req/s  p50 %7d us  p99 %7d us  p99.9 %7d us  max %8d us  errors %d",
+					operation.key(), latencies.getTotalCount(), throughput, micros(latencies.getValueAtPercentile(50)),
+					p99Micros(), micros(latencies.getValueAtPercentile(99.9)), micros(latencies.getMaxValue()), errors);
+		}
+
+		private static long micros(long nanos) {
+			return TimeUnit.NANOSECONDS.toMicros(nanos);
+		}
+	}
+
+	private final String baseUrl;
+	private final Map<Operation, Integer> mix;
+	private final int totalWeight;
+
+	private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+	private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+
+	private final ConcurrentLinkedQueue<Long> inProgressOrders = new ConcurrentLinkedQueue<>();
+	// Every order created in the run, whatever its status, for GET_ORDER to spread over.
+	private final List<Long> orders = Collections.synchronizedList(new ArrayList<>());
+	private final ConcurrentLinkedQueue<Long> employees = new ConcurrentLinkedQueue<>();
+
+	// Latencies of calls started before this point are warmup and not recorded.
+	private volatile long measureFrom = Long.MAX_VALUE;
+
+	LoadGenerator(String baseUrl, Map<Operation, Integer> mix) {
+
+		this.baseUrl = baseUrl;
+		this.mix = mix;
+		this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+		for (Operation operation : mix.keySet()) {
+			// Track up to one minute with 3 significant digits.
+			histograms.put(operation, new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(1), 3));
+			errors.put(operation, new AtomicLong());
+		}
+	}
+
+	/**
+	 * Parses a mix like `list-orders:10,get-order:50,new-order:20`.
+	 */
+	static Map<Operation, Integer> parseMix(String mix) {
+
+		Map<Operation, Integer> weights = new LinkedHashMap<>();
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.split(":");
+			weights.put(Operation.fromKey(parts[0]), Integer.parseInt(parts[1].trim()));
+		}
+		return weights;
+	}
+
+	List<Result> run(int threads, long warmupSeconds, long durationSeconds) throws InterruptedException {
+
+		seed();
+
+		long start = System.nanoTime();
+		measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(() -> {
+				try {
+					while (System.nanoTime() < end) {
+						call(pick());
+					}
+				} finally {
+					done.countDown();
+				}
+			}, "load-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		done.await();
+
+		List<Result> results = new ArrayList<>();
+		histograms.forEach((operation, histogram) -> results
+				.add(new Result(operation, histogram, errors.get(operation).get(), durationSeconds)));
+		return results;
+	}
+
+	// A few rows to read from before the clock starts.
+	private void seed() {
+
+		for (int i = 0; i < 20; i++) {
+			if (mix.containsKey(Operation.GET_ORDER) || mix.containsKey(Operation.CANCEL_ORDER)
+					|| mix.containsKey(Operation.COMPLETE_ORDER)) {
+				createOrder();
+			}
+			if (mix.keySet().stream().anyMatch(operation -> operation.name().contains("EMPLOYEE"))) {
+				createEmployee();
+			}
+		}
+	}
+
+	private Operation pick() {
+
+		int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+		for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+			ticket -= entry.getValue();
+			if (ticket < 0) {
+				return entry.getKey();
+			}
+		}
+		throw new IllegalStateException("Empty mix");
+	}
+
+	private void call(Operation operation) {
+
+		switch (operation) {
+		case LIST_ORDERS:
+			timed(operation, () -> request("GET", "/orders", null));
+			break;
+		case GET_ORDER:
+			Long order = anyOrder();
+			timed(operation, () -> request("GET", "/orders/" + order, null));
+			break;
+		case NEW_ORDER:
+			timed(operation, () -> {
+				Response response = request("POST", "/orders", "{\"description\":\"load test\"}");
+				inProgressOrders.add(response.id());
+				orders.add(response.id());
+				return response;
+			});
+			break;
+		case CANCEL_ORDER:
+			Long toCancel = nextInProgressOrder();
+			timed(operation, () -> request("DELETE", "/orders/" + toCancel + "/cancel", null));
+			break;
+		case COMPLETE_ORDER:
+			Long toComplete = nextInProgressOrder();
+			timed(operation, () -> request("PUT", "/orders/" + toComplete + "/complete", null));
+			break;
+		case LIST_EMPLOYEES:
+			timed(operation, () -> request("GET", "/employees", null));
+			break;
+		case GET_EMPLOYEE:
+			Long employee = anyEmployee();
+			timed(operation, () -> request("GET", "/employees/" + employee, null));
+			break;
+		case NEW_EMPLOYEE:
+			timed(operation, () -> {
+				Response response = request("POST", "/employees", "{\"name\":\"Load Test\",\"role\":\"tester\"}");
+				employees.add(response.id());
+				return response;
+			});
+			break;
+		case REPLACE_EMPLOYEE:
+			Long toReplace = anyEmployee();
+			timed(operation,
+					() -> request("PUT", "/employees/" + toReplace, "{\"name\":\"Load Replaced\",\"role\":\"tester\"}"));
+			break;
+		case DELETE_EMPLOYEE:
+			Long toDelete = employees.poll();
+			Long deleted = toDelete != null ? toDelete : createEmployee();
+			timed(operation, () -> request("DELETE", "/employees/" + deleted, null));
+			break;
+		}
+	}
+
+	private interface Call {
+		Response execute() throws IOException;
+	}
+
+	private void timed(Operation operation, Call call) {
+
+		long start = System.nanoTime();
+		boolean measured = start >= measureFrom;
+		try {
+			Response response = call.execute();
+			if (response.status >= 400 && measured) {
+				errors.get(operation).incrementAndGet();
+			}
+		} catch (IOException | RuntimeException e) {
+			if (measured) {
+				errors.get(operation).incrementAndGet();
+			}
+		}
+		if (measured) {
+			histograms.get(operation).recordValue(Math.min(System.nanoTime() - start, TimeUnit.MINUTES.toNanos(1)));
+		}
+	}
+
+	private Long anyOrder() {
+
+		synchronized (orders) {
+			if (!orders.isEmpty()) {
+				return orders.get(ThreadLocalRandom.current().nextInt(orders.size()));
+			}
+		}
+		return createOrder();
+	}
+
+	// Each transition needs its own IN_PROGRESS order; make one if none are left.
+	private Long nextInProgressOrder() {
+
+		Long id = inProgressOrders.poll();
+		return id != null ? id : createOrder();
+	}
+
+	private Long anyEmployee() {
+
+		Long id = employees.peek();
+		return id != null ? id : createEmployee();
+	}
+
+	private Long createOrder() {
+
+		try {
+			Long id = request("POST", "/orders", "{\"description\":\"load test\"}").id();
+			inProgressOrders.add(id);
+			orders.add(id);
+			return id;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Long createEmployee() {
+
+		try {
+			Long id = request("POST", "/employees", "{\"name\":\"Load Test\",\"role\":\"tester\"}").id();
+			employees.add(id);
+			return id;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class Response {
+
+		final int status;
+		final String location;
+
+		Response(int status, String location) {
+			this.status = status;
+			this.location = location;
+		}
+
+		// Every create returns the new resource in its Location header.
+		Long id() {
+			return Long.valueOf(location.substring(location.lastIndexOf('/') + 1));
+		}
+	}
+
+	private Response request(String method, String path, String body) throws IOException {
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setRequestProperty("Accept", "application/hal+json");
+
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		int status = connection.getResponseCode();
+
+		// Drain the body so the keep-alive connection can be reused.
+		InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+		if (in != null) {
+			try (InputStream stream = in) {
+				byte[] buffer = new byte[8192];
+				while (stream.read(buffer) >= 0) {
+				}
+			}
+		}
+
+		return new Response(status, connection.getHeaderField("Location"));
+	}
+}
@@ -0,0 +1,84 @@
+package com.neeraj.finance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Point-lookup and scan latency with every order in CUSTOMER_ORDER versus with the
+ * terminal ones moved to the OrderArchive partitions.
+ *
+ * Not picked up by the default surefire includes; run it explicitly with
+ * `./mvnw test -Dtest=OrderArchiveBenchmark`.
+ */
+@SpringBootTest(properties = { "finance.orders.archive.enabled=true",
+		"finance.orders.archive.interval-ms=3600000" })
+class OrderArchiveBenchmark {
+
+	private static final int ORDERS = 200_000;
+	private static final int LOOKUPS = 20_000;
+	private static final long FIRST_ID = 1_000_000;
+
+	@Autowired
+	OrderRepository orderRepository;
+
+	@Autowired
+	OrderArchive archive;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	void pointLookupAndScan() {
+
+		// One order in ten is still IN_PROGRESS, the rest is history.
+		List<Object[]> rows = new ArrayList<>(ORDERS);
+		for (long i = 0; i < ORDERS; i++) {
+			Status status = i % 10 == 0 ? Status.IN_PROGRESS : (i % 2 == 0 ? Status.COMPLETED : Status.CANCELLED);
+			rows.add(new Object[] { FIRST_ID + i, "order " + i, status.getCode() });
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO customer_order (id, description, status) VALUES (?, ?, ?)", rows);
+
+		report("single table", "hot lookup", lookups(0));
+		report("single table", "history lookup", lookups(1));
+		report("single table", "scan", scan());
+
+		while (archive.archiveTerminalOrders(10_000) > 0) {
+		}
+
+		report("partitioned", "hot lookup", lookups(0));
+		report("partitioned", "history lookup", lookups(1));
+		report("partitioned", "scan", scan());
+	}
+
+	// Looks up random ids whose position modulo 10 is `offset` (0 = IN_PROGRESS).
+	private long lookups(int offset) {
+
+		Random random = new Random(42);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < LOOKUPS; i++) {
+			long id = FIRST_ID + random.nextInt(ORDERS / 10) * 10L + offset;
+			orderRepository.findInAnyPartition(id).orElseThrow(() -> new OrderNotFoundException(id));
+		}
+
+		return (System.nanoTime() - start) / LOOKUPS;
+	}
+
+	private long scan() {
+
+		long start = System.nanoTime();
+		orderRepository.findAllInAnyPartition();
+		return System.nanoTime() - start;
+	}
+
+	private static void report(String layout, String operation, long nanos) {
+		System.out.printf("%-14s %-16s %,12d us%n", layout, operation, TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+}
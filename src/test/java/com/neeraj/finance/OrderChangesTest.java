@@ -0,0 +1,157 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * `GET /orders/changes` pages through what changed in change order, never moves a
+ * client's cursor past a change that hasn't committed yet, and reads the index.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class OrderChangesTest {
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private ChangeSequence changeSequence;
+
+	@Test
+	void pagesThroughChangesInOrder() {
+
+		long since = changes(0, 10000).get("next").asLong();
+
+		Order first = orderRepository.save(new Order("first", Status.IN_PROGRESS));
+		Order second = orderRepository.save(new Order("second", Status.IN_PROGRESS));
+		first.setStatus(Status.COMPLETED);
+		orderRepository.save(first);
+
+		JsonNode page = changes(since, 1);
+		assertThat(ids(page)).containsExactly(second.getId());
+
+		page = changes(page.get("next").asLong(), 1);
+		assertThat(ids(page)).containsExactly(first.getId());
+		assertThat(page.path("_embedded").path("orderList").get(0).get("status").asText()).isEqualTo("COMPLETED");
+
+		page = changes(page.get("next").asLong(), 1);
+		assertThat(ids(page)).isEmpty();
+	}
+
+	@Test
+	void holdsBackChangesBehindAnUncommittedOne() throws Exception {
+
+		long since = changes(0, 10000).get("next").asLong();
+
+		CountDownLatch saved = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService slowWriter = Executors.newSingleThreadExecutor();
+		try {
+			// Takes its change sequence value first, but commits last.
+			Future<Order> slow = slowWriter.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+				Order order = orderRepository.saveAndFlush(new Order("slow", Status.IN_PROGRESS));
+				saved.countDown();
+				await(release);
+				return order;
+			}));
+			saved.await();
+
+			Order fast = orderRepository.save(new Order("fast", Status.IN_PROGRESS));
+			assertThat(ids(changes(since, 100))).isEmpty();
+
+			release.countDown();
+			assertThat(ids(changes(since, 100))).containsExactly(slow.get().getId(), fast.getId());
+		} finally {
+			release.countDown();
+			slowWriter.shutdownNow();
+		}
+	}
+
+	@Test
+	void holdsBackChangesStartedAfterTheHorizonWasRead() throws Exception {
+
+		long since = changes(0, 10000).get("next").asLong();
+		long upTo = changeSequence.horizon();
+
+		CountDownLatch saved = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService slowWriter = Executors.newSingleThreadExecutor();
+		try {
+			Future<Order> slow = slowWriter.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+				Order order = orderRepository.saveAndFlush(new Order("slow", Status.IN_PROGRESS));
+				saved.countDown();
+				await(release);
+				return order;
+			}));
+			saved.await();
+			orderRepository.save(new Order("fast", Status.IN_PROGRESS));
+
+			// A reader that took its horizon before either write must not see the later one.
+			assertThat(orderRepository.findChangedInAnyPartition(since, upTo, 100)).isEmpty();
+
+			release.countDown();
+			slow.get();
+			assertThat(ids(changes(since, 100))).hasSize(2);
+		} finally {
+			release.countDown();
+			slowWriter.shutdownNow();
+		}
+	}
+
+	@Test
+	void readsTheChangeSequenceIndex() {
+
+		String plan = new JdbcTemplate(dataSource).queryForObject(
+				"EXPLAIN SELECT * FROM customer_order WHERE change_seq > 10 ORDER BY change_seq LIMIT 100",
+				String.class);
+
+		assertThat(plan).containsIgnoringCase("customer_order_change_seq");
+	}
+
+	private JsonNode changes(long since, int limit) {
+		return rest.getForObject("/orders/changes?since=" + since + "&limit=" + limit, JsonNode.class);
+	}
+
+	private static List<Long> ids(JsonNode page) {
+
+		List<Long> ids = new ArrayList<>();
+		page.path("_embedded").path("orderList").forEach(order -> ids.add(order.get("id").asLong()));
+		return ids;
+	}
+
+	private static void await(CountDownLatch latch) {
+
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
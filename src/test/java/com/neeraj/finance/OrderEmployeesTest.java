@@ -0,0 +1,184 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Orders are read with their employees in a constant number of queries, however many
+ * orders there are, and each employee lists the orders it handles. Unknown employees
+ * are remembered for a while, like unknown orders.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, //
+		properties = { "spring.jpa.properties.hibernate.generate_statistics=true",
+				// Loading 10k orders cold takes about as long as the DatabaseGuard's default
+				// timeout, and this test counts queries, not milliseconds.
+				"finance.database.timeout-ms=10000" })
+class OrderEmployeesTest {
+
+	// Far above anything the id generator hands out to the other tests.
+	private static final long FIRST_BULK_ID = 10_000_000L;
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	void listsTenThousandOrdersWithTheirEmployeesInOneQuery() {
+
+		List<Employee> employees = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			employees.add(employeeRepository.save(new Employee("Clerk", "No" + i, "clerk")));
+		}
+
+		// Inserted in one JDBC batch, saving 10k entities one by one would dominate the test.
+		Map<Long, Long> employeeOf = new HashMap<>();
+		List<Object[]> rows = new ArrayList<>();
+		Timestamp now = Timestamp.from(Instant.now());
+		for (int i = 0; i < 10_000; i++) {
+			long id = FIRST_BULK_ID + i;
+			Long employeeId = employees.get(i % employees.size()).getId();
+			employeeOf.put(id, employeeId);
+			rows.add(new Object[] { id, "bulk " + i, Status.IN_PROGRESS.getCode(), now, now, employeeId });
+		}
+		new JdbcTemplate(dataSource).batchUpdate("INSERT INTO customer_order"
+				+ " (id, description, status, created_at, updated_at, employee_id) VALUES (?, ?, ?, ?, ?, ?)", rows);
+
+		Statistics statistics = statistics();
+		statistics.clear();
+
+		ResponseEntity<JsonNode> response = get("/orders?embed=employee");
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+		int checked = 0;
+		for (JsonNode order : response.getBody().path("_embedded").path("orderList")) {
+			Long expected = employeeOf.get(order.get("id").asLong());
+			if (expected != null) {
+				assertThat(order.path("_embedded").path("employee").path("id").asLong()).isEqualTo(expected);
+				checked++;
+			}
+		}
+		assertThat(checked).isEqualTo(10_000);
+	}
+
+	@Test
+	void listsTheOrdersOfOneEmployee() {
+
+		Employee samwise = employeeRepository.save(new Employee("Samwise", "Gamgee", "gardener"));
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Order order = new Order("rope " + i, Status.IN_PROGRESS);
+			order.setEmployeeId(samwise.getId());
+			ids.add(orderRepository.save(order).getId());
+		}
+		orderRepository.save(new Order("unassigned", Status.IN_PROGRESS));
+
+		Statistics statistics = statistics();
+		statistics.clear();
+
+		ResponseEntity<JsonNode> response = get("/employees/" + samwise.getId() + "/orders");
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+		List<Long> returned = new ArrayList<>();
+		response.getBody().path("_embedded").path("orderList").forEach(order -> returned.add(order.get("id").asLong()));
+		assertThat(returned).isEqualTo(ids);
+
+		assertThat(get("/employees/" + (samwise.getId() + 1000) + "/orders").getStatusCode())
+				.isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	void remembersUnknownEmployees() {
+
+		long unknown = employeeRepository.save(new Employee("Peregrin", "Took", "guard")).getId() + 1000;
+
+		Statistics statistics = statistics();
+		statistics.clear();
+
+		assertThat(get("/employees/" + unknown).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+		assertThat(get("/employees/" + unknown).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+		assertThat(get("/employees/" + unknown + "/orders").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void assignsAndEmbedsTheEmployeeOfOneOrder() {
+
+		Employee merry = employeeRepository.save(new Employee("Meriadoc", "Brandybuck", "esquire"));
+
+		Map<String, Object> unknown = new HashMap<>();
+		unknown.put("description", "pipe-weed");
+		unknown.put("employeeId", merry.getId() + 1000);
+		assertThat(rest.postForEntity("/orders", unknown, JsonNode.class).getStatusCode())
+				.isEqualTo(HttpStatus.BAD_REQUEST);
+
+		Map<String, Object> assigned = new HashMap<>();
+		assigned.put("description", "pipe-weed");
+		assigned.put("employeeId", merry.getId());
+		JsonNode created = rest.postForObject("/orders", assigned, JsonNode.class);
+
+		assertThat(created.get("employeeId").asLong()).isEqualTo(merry.getId());
+		assertThat(created.path("_links").path("employee").path("href").asText())
+				.endsWith("/employees/" + merry.getId());
+
+		JsonNode order = get("/orders/" + created.get("id").asLong() + "?embed=employee").getBody();
+		assertThat(order.get("description").asText()).isEqualTo("pipe-weed");
+		assertThat(order.path("_links").path("self").path("href").asText()).isNotEmpty();
+		assertThat(order.path("_embedded").path("employee").path("firstName").asText()).isEqualTo("Meriadoc");
+
+		assertThat(get("/orders?embed=customer").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	private Statistics statistics() {
+		return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	private ResponseEntity<JsonNode> get(String path) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(MediaTypes.HAL_JSON));
+		return rest.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+	}
+}
@@ -0,0 +1,105 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * `GET /orders?ids=...` answers a whole page of orders with a single query, in the
+ * order they were asked for, and lists the ids that don't exist. Plain JSON callers
+ * get the orders without hypermedia, like from GET /orders.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, //
+		properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class OrderMultiGetTest {
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void fetchesRequestedOrdersWithOneQuery() {
+
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			ids.add(orderRepository.save(new Order("page item " + i, Status.IN_PROGRESS)).getId());
+		}
+		Collections.reverse(ids);
+
+		Long unknown = ids.get(0) + 1000;
+		List<Long> requested = new ArrayList<>(ids);
+		requested.add(5, unknown);
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		ResponseEntity<JsonNode> response = get("/orders?ids="
+				+ requested.stream().map(String::valueOf).collect(Collectors.joining(",")));
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+		List<Long> returned = new ArrayList<>();
+		response.getBody().path("_embedded").path("orderList").forEach(order -> returned.add(order.get("id").asLong()));
+		assertThat(returned).isEqualTo(ids);
+
+		assertThat(response.getBody().path("missing")).hasSize(1);
+		assertThat(response.getBody().path("missing").get(0).asLong()).isEqualTo(unknown);
+	}
+
+	@Test
+	void answersPlainJsonWhenAskedFor() {
+
+		Long first = orderRepository.save(new Order("plain 1", Status.IN_PROGRESS)).getId();
+		Long second = orderRepository.save(new Order("plain 2", Status.IN_PROGRESS)).getId();
+		String path = "/orders?ids=" + second + "," + first;
+
+		ResponseEntity<JsonNode> json = get(path, MediaType.APPLICATION_JSON);
+		assertThat(json.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+		assertThat(json.getBody().isArray()).isTrue();
+		assertThat(json.getBody().get(0).get("id").asLong()).isEqualTo(second);
+		assertThat(json.getBody().get(1).get("id").asLong()).isEqualTo(first);
+
+		// HAL stays the default.
+		assertThat(get(path, MediaType.ALL).getHeaders().getContentType()).isEqualTo(MediaTypes.HAL_JSON);
+		assertThat(get(path + "&embed=employee", MediaType.APPLICATION_JSON).getHeaders().getContentType())
+				.isEqualTo(MediaTypes.HAL_JSON);
+	}
+
+	private ResponseEntity<JsonNode> get(String path) {
+		return get(path, MediaTypes.HAL_JSON);
+	}
+
+	private ResponseEntity<JsonNode> get(String path, MediaType mediaType) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(mediaType));
+		return rest.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+	}
+}
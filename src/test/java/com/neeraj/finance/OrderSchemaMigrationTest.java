@@ -0,0 +1,103 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Orders tables of databases created before Status codes are migrated on startup, and
+ * ones that can't be stop it. Rows from before the change sequence get a value of it.
+ */
+class OrderSchemaMigrationTest {
+
+	private Connection connection;
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void openDatabase() throws SQLException {
+
+		connection = DriverManager.getConnection("jdbc:h2:mem:schema-migration");
+		jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+	}
+
+	@AfterEach
+	void closeDatabase() throws SQLException {
+		connection.close();
+	}
+
+	@Test
+	void migratesTheOrdinalLayout() {
+
+		// The table as Hibernate used to generate it.
+		jdbcTemplate.execute("CREATE TABLE customer_order (id BIGINT NOT NULL, description VARCHAR(255),"
+				+ " status INTEGER, PRIMARY KEY (id))");
+		jdbcTemplate.update("INSERT INTO customer_order VALUES (1, ?, 1)", repeat('x', 200));
+
+		OrderSchemaMigration.migrate(jdbcTemplate, "CUSTOMER_ORDER");
+		OrderSchemaMigration.migrate(jdbcTemplate, "CUSTOMER_ORDER");
+
+		assertThat(jdbcTemplate.queryForObject("SELECT status FROM customer_order", Integer.class))
+				.isEqualTo(Status.COMPLETED.getCode());
+		assertThat(jdbcTemplate.queryForObject("SELECT description FROM customer_order", String.class))
+				.hasSize(Order.DESCRIPTION_LENGTH);
+		assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO customer_order VALUES (2, 'no status', NULL)"))
+				.hasMessageContaining("NULL not allowed");
+	}
+
+	@Test
+	void rewritesStatusNamesToCodes() {
+
+		jdbcTemplate.execute("CREATE TABLE customer_order_archive_0 (id BIGINT PRIMARY KEY, description VARCHAR(255),"
+				+ " status VARCHAR(255))");
+		jdbcTemplate.update("INSERT INTO customer_order_archive_0 VALUES (1, 'done', 'COMPLETED'), (2, 'dropped', 'CANCELLED')");
+
+		OrderSchemaMigration.migrate(jdbcTemplate, "CUSTOMER_ORDER_ARCHIVE_0");
+
+		assertThat(jdbcTemplate.queryForList("SELECT status FROM customer_order_archive_0 ORDER BY id", Integer.class))
+				.containsExactly((int) Status.COMPLETED.getCode(), (int) Status.CANCELLED.getCode());
+	}
+
+	@Test
+	void refusesOrdersWithoutAStatus() {
+
+		jdbcTemplate.execute("CREATE TABLE customer_order (id BIGINT NOT NULL, description VARCHAR(255),"
+				+ " status INTEGER, PRIMARY KEY (id))");
+		jdbcTemplate.update("INSERT INTO customer_order VALUES (1, 'lost', NULL)");
+
+		assertThatIllegalStateException().isThrownBy(() -> OrderSchemaMigration.migrate(jdbcTemplate, "CUSTOMER_ORDER"))
+				.withMessageContaining("CUSTOMER_ORDER could not be migrated");
+	}
+
+	@Test
+	void backfillsTheChangeSequence() {
+
+		jdbcTemplate.execute("CREATE SEQUENCE change_sequence START WITH 10");
+		jdbcTemplate.execute("CREATE TABLE employee (id BIGINT PRIMARY KEY, first_name VARCHAR(255), change_seq BIGINT)");
+		jdbcTemplate.update("INSERT INTO employee VALUES (1, 'Bilbo', NULL), (2, 'Frodo', 3), (3, 'Sam', NULL)");
+
+		OrderSchemaMigration.backfillChangeSequence(jdbcTemplate, "EMPLOYEE");
+		OrderSchemaMigration.backfillChangeSequence(jdbcTemplate, "EMPLOYEE");
+		OrderSchemaMigration.backfillChangeSequence(jdbcTemplate, "CUSTOMER_ORDER");
+
+		assertThat(jdbcTemplate.queryForList("SELECT change_seq FROM employee ORDER BY id", Long.class))
+				.containsExactlyInAnyOrder(10L, 3L, 11L)
+				.element(1).isEqualTo(3L);
+	}
+
+	private static String repeat(char c, int times) {
+
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			builder.append(c);
+		}
+		return builder.toString();
+	}
+}
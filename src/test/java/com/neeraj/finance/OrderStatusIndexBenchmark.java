@@ -0,0 +1,85 @@
+package com.neeraj.finance;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Heap taken by the OrderStatusIndex bitmaps at 50M orders, and how long its
+ * queries take.
+ *
+ * The bitmaps are filled directly, the way the startup scan fills them: 90%
+ * COMPLETED, every 20th order CANCELLED, and the newest 5% IN_PROGRESS. Pass
+ * `-Dbenchmark.rows=` for another size. Not picked up by the default surefire
+ * includes; run it with `./mvnw test -Dtest=OrderStatusIndexBenchmark`.
+ */
+class OrderStatusIndexBenchmark {
+
+	private static final int ROWS = Integer.getInteger("benchmark.rows", 50_000_000);
+
+	@Test
+	void fiftyMillionOrders() {
+
+		long heapBefore = usedHeap();
+		long start = System.nanoTime();
+
+		OrderStatusIndex.Bitmap inProgress = new OrderStatusIndex.Bitmap();
+		OrderStatusIndex.Bitmap completed = new OrderStatusIndex.Bitmap();
+		OrderStatusIndex.Bitmap cancelled = new OrderStatusIndex.Bitmap();
+		long firstInProgress = ROWS - ROWS / 20;
+		for (long id = 1; id <= ROWS; id++) {
+			if (id >= firstInProgress) {
+				inProgress.set(id);
+			} else if (id % 20 == 0) {
+				cancelled.set(id);
+			} else {
+				completed.set(id);
+			}
+		}
+
+		long fillMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		long heapAfter = usedHeap();
+
+		System.out.printf("%,d orders indexed in %,d ms%n", ROWS, fillMillis);
+		System.out.printf("IN_PROGRESS %,12d bytes%n", inProgress.sizeInBytes());
+		System.out.printf("COMPLETED   %,12d bytes%n", completed.sizeInBytes());
+		System.out.printf("CANCELLED   %,12d bytes%n", cancelled.sizeInBytes());
+		System.out.printf("total       %,12d bytes (%,d measured on the heap), %.2f bits per order%n",
+				inProgress.sizeInBytes() + completed.sizeInBytes() + cancelled.sizeInBytes(), heapAfter - heapBefore,
+				(inProgress.sizeInBytes() + completed.sizeInBytes() + cancelled.sizeInBytes()) * 8.0 / ROWS);
+
+		// A page of 1000 ids, best of 1000 runs from varying cursors.
+		long best = Long.MAX_VALUE;
+		long found = 0;
+		for (int run = 0; run < 1000; run++) {
+			long from = firstInProgress + run * 997L;
+			long pageStart = System.nanoTime();
+			long id = inProgress.next(from);
+			for (int i = 0; i < 1000 && id >= 0; i++) {
+				found += id;
+				id = inProgress.next(id + 1);
+			}
+			best = Math.min(best, System.nanoTime() - pageStart);
+		}
+		System.out.printf("page of 1000 IN_PROGRESS ids: %,d us (checksum %d)%n", TimeUnit.NANOSECONDS.toMicros(best),
+				found);
+
+		// Every CANCELLED id, the sparse case.
+		long scanStart = System.nanoTime();
+		long count = 0;
+		for (long id = cancelled.next(0); id >= 0; id = cancelled.next(id + 1)) {
+			count++;
+		}
+		System.out.printf("all %,d CANCELLED ids: %,d ms%n", count,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scanStart));
+	}
+
+	private static long usedHeap() {
+
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,156 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The status index follows every transition, and agrees with the table after a
+ * rebuild.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class OrderStatusIndexTest {
+
+	// Above the ids of the other tests, OrderEmployeesTest's bulk orders included.
+	private static final long FIRST_BULK_ID = 20_000_000L;
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private OrderStatusIndex statusIndex;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	void followsTransitions() {
+
+		long inProgress = statusIndex.count(Status.IN_PROGRESS);
+		long cancelled = statusIndex.count(Status.CANCELLED);
+
+		long id = rest.postForObject("/orders", Collections.singletonMap("description", "Mithril coat"),
+				JsonNode.class).get("id").asLong();
+		assertThat(statusIndex.count(Status.IN_PROGRESS)).isEqualTo(inProgress + 1);
+		assertThat(ids("/orders?status=IN_PROGRESS&limit=1000")).contains(id);
+
+		rest.exchange("/orders/" + id + "/cancel", HttpMethod.DELETE, null, JsonNode.class);
+
+		JsonNode counts = get("/orders/counts").getBody().path("counts");
+		assertThat(counts.path("IN_PROGRESS").asLong()).isEqualTo(inProgress);
+		assertThat(counts.path("CANCELLED").asLong()).isEqualTo(cancelled + 1);
+		assertThat(ids("/orders?status=IN_PROGRESS&limit=1000")).doesNotContain(id);
+		assertThat(ids("/orders?status=CANCELLED&after=" + (id - 1) + "&limit=1")).containsExactly(id);
+
+		ResponseEntity<JsonNode> json = get("/orders?status=CANCELLED&after=" + (id - 1) + "&limit=1",
+				MediaType.APPLICATION_JSON);
+		assertThat(json.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+		assertThat(json.getBody().get(0).get("id").asLong()).isEqualTo(id);
+
+		assertThat(get("/orders?status=SHIPPED").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(get("/orders?status=CANCELLED&limit=0").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	void pagesThroughAStatusAndMatchesTheTableAfterARebuild() {
+
+		// Written behind the index's back, only a rebuild finds them.
+		List<Object[]> rows = new ArrayList<>();
+		Timestamp now = Timestamp.from(Instant.now());
+		for (int i = 0; i < 2500; i++) {
+			rows.add(new Object[] { FIRST_BULK_ID + i, "bulk " + i, Status.COMPLETED.getCode(), now, now });
+		}
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.batchUpdate("INSERT INTO customer_order (id, description, status, created_at, updated_at)"
+				+ " VALUES (?, ?, ?, ?, ?)", rows);
+
+		statusIndex.rebuild();
+
+		for (Status status : Status.values()) {
+			assertThat(statusIndex.count(status)).as(status.name()).isEqualTo(jdbcTemplate.queryForObject(
+					"SELECT COUNT(*) FROM customer_order WHERE status = ?", Long.class, status.getCode()));
+		}
+
+		// Follows `next` from the first bulk order to the last, 1000 at a time.
+		List<Long> paged = new ArrayList<>();
+		String next = "/orders?status=COMPLETED&after=" + (FIRST_BULK_ID - 1) + "&limit=1000";
+		int pages = 0;
+		while (next != null) {
+			JsonNode page = get(next).getBody();
+			page.path("_embedded").path("orderList").forEach(order -> paged.add(order.get("id").asLong()));
+			next = page.path("_links").path("next").path("href").asText(null);
+			pages++;
+		}
+		assertThat(pages).isEqualTo(3);
+		assertThat(paged).hasSize(2500);
+		assertThat(paged.get(0)).isEqualTo(FIRST_BULK_ID);
+		assertThat(paged).isSorted();
+	}
+
+	@Test
+	void bitmapFindsIdsAcrossPages() {
+
+		OrderStatusIndex.Bitmap bitmap = new OrderStatusIndex.Bitmap();
+		long[] ids = { 0, 63, 64, 65_535, 65_536, 3_000_000_000L };
+		for (long id : ids) {
+			assertThat(bitmap.set(id)).isTrue();
+		}
+		assertThat(bitmap.set(64)).isFalse();
+
+		List<Long> found = new ArrayList<>();
+		for (long id = bitmap.next(0); id >= 0; id = bitmap.next(id + 1)) {
+			found.add(id);
+		}
+		assertThat(found).containsExactly(0L, 63L, 64L, 65_535L, 65_536L, 3_000_000_000L);
+
+		assertThat(bitmap.clear(65_535)).isTrue();
+		assertThat(bitmap.clear(65_535)).isFalse();
+		assertThat(bitmap.clear(Long.MAX_VALUE)).isFalse();
+		assertThat(bitmap.next(65_535)).isEqualTo(65_536);
+		assertThat(bitmap.next(3_000_000_001L)).isEqualTo(-1);
+		assertThat(bitmap.get(63)).isTrue();
+		assertThat(bitmap.get(62)).isFalse();
+	}
+
+	private List<Long> ids(String path) {
+
+		List<Long> ids = new ArrayList<>();
+		ResponseEntity<JsonNode> response = get(path);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		response.getBody().path("_embedded").path("orderList").forEach(order -> ids.add(order.get("id").asLong()));
+		return ids;
+	}
+
+	private ResponseEntity<JsonNode> get(String path) {
+		return get(path, MediaTypes.HAL_JSON);
+	}
+
+	private ResponseEntity<JsonNode> get(String path, MediaType mediaType) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(mediaType));
+		return rest.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+	}
+}
@@ -0,0 +1,175 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The totals follow created, cancelled and completed orders, and a reconciliation
+ * that keeps finding the same difference from the table corrects them, as does the
+ * seed. Each test uses a currency of its own.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class OrderTotalsTest {
+
+	// Above the ids of the other tests, and cancelled so that OrderStatusIndexTest
+	// doesn't page through it with its completed bulk orders.
+	private static final long UNTRACKED_ID = 30_000_000L;
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private OrderTotals totals;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	void followsTransitions() {
+
+		long cancelled = create("Palantír", 1999, "CHF");
+		long completed = create("Elven rope", 501, "CHF");
+		create("Lembas", 250, "CHF");
+		rest.exchange("/orders/" + cancelled + "/cancel", HttpMethod.DELETE, null, JsonNode.class);
+		rest.exchange("/orders/" + completed + "/complete", HttpMethod.PUT, null, JsonNode.class);
+
+		assertThat(rest.getForObject("/orders/" + completed, JsonNode.class).get("amount").asLong()).isEqualTo(501);
+
+		JsonNode chf = totals("CHF");
+		assertThat(chf.path("CANCELLED").path("count").asLong()).isEqualTo(1);
+		assertThat(chf.path("CANCELLED").path("amount").asLong()).isEqualTo(1999);
+		assertThat(chf.path("COMPLETED").path("amount").asLong()).isEqualTo(501);
+		assertThat(chf.path("IN_PROGRESS").path("amount").asLong()).isEqualTo(250);
+		assertThat(chf.path("IN_PROGRESS").path("scale").asInt()).isEqualTo(2);
+
+		assertThat(post(order("No currency", 100L, null))).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(post(order("Unknown currency", 100L, "XYZ"))).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(post(order("Negative", -1L, "CHF"))).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(post(order("No amount", null, null))).isEqualTo(HttpStatus.CREATED);
+	}
+
+	@Test
+	void reconciliationCorrectsARepeatedDifference() {
+
+		// Written behind the counters' back, like an order saved by another node.
+		Timestamp now = Timestamp.from(Instant.now());
+		new JdbcTemplate(dataSource).update("INSERT INTO customer_order"
+				+ " (id, description, status, created_at, updated_at, amount, currency) VALUES (?, ?, ?, ?, ?, ?, ?)",
+				UNTRACKED_ID, "Untracked", Status.CANCELLED.getCode(), now, now, 5000, "JPY");
+
+		totals.reconcile();
+		assertThat(totals("JPY").size()).isZero();
+
+		totals.reconcile();
+		JsonNode jpy = totals("JPY");
+		assertThat(jpy.path("CANCELLED").path("count").asLong()).isEqualTo(1);
+		assertThat(jpy.path("CANCELLED").path("amount").asLong()).isEqualTo(5000);
+		assertThat(jpy.path("CANCELLED").path("scale").asInt()).isZero();
+
+		totals.reconcile();
+		assertThat(totals("JPY").path("CANCELLED").path("amount").asLong()).isEqualTo(5000);
+	}
+
+	@Test
+	void seedingDoesNotCountAnOrderCommittedMeanwhileTwice() {
+
+		Timestamp now = Timestamp.from(Instant.now());
+		Order racing = new Order("Racing", Status.CANCELLED);
+		racing.setId(UNTRACKED_ID + 1);
+		racing.setAmount(700L);
+		racing.setCurrency("NOK");
+
+		// The archive is asked for its tables right before each check reads the table.
+		// The order commits before the first check, and its writer records it only
+		// after that check has read the counters.
+		AtomicInteger checks = new AtomicInteger();
+		AtomicBoolean recorded = new AtomicBoolean();
+		OrderTotals[] seeded = new OrderTotals[1];
+		OrderArchive archive = new OrderArchive(dataSource, false, 0) {
+
+			@Override
+			List<String> tables() {
+
+				int check = checks.incrementAndGet();
+				if (check == 1) {
+					new JdbcTemplate(dataSource).update("INSERT INTO customer_order"
+							+ " (id, description, status, created_at, updated_at, amount, currency) VALUES (?, ?, ?, ?, ?, ?, ?)",
+							racing.getId(), racing.getDescription(), Status.CANCELLED.getCode(), now, now, 700, "NOK");
+				} else if (check == 2 && recorded.compareAndSet(false, true)) {
+					seeded[0].record(racing, null, Status.CANCELLED);
+				}
+				return Collections.emptyList();
+			}
+		};
+
+		seeded[0] = new OrderTotals(dataSource, archive, new SimpleMeterRegistry());
+		seeded[0].seed();
+		if (recorded.compareAndSet(false, true)) {
+			seeded[0].record(racing, null, Status.CANCELLED);
+		}
+
+		assertThat(seeded[0].totals()).filteredOn(total -> total.getCurrency().equals("NOK"))
+				.containsExactly(new OrderTotals.Total("NOK", Status.CANCELLED, 1, 700));
+	}
+
+	private long create(String description, long amount, String currency) {
+		return rest.postForObject("/orders", order(description, amount, currency), JsonNode.class).get("id").asLong();
+	}
+
+	private HttpStatus post(Map<String, Object> order) {
+		return rest.postForEntity("/orders", order, JsonNode.class).getStatusCode();
+	}
+
+	private static Map<String, Object> order(String description, Long amount, String currency) {
+
+		Map<String, Object> order = new HashMap<>();
+		order.put("description", description);
+		order.put("amount", amount);
+		order.put("currency", currency);
+		return order;
+	}
+
+	// The totals of one currency by status.
+	private JsonNode totals(String currency) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(MediaTypes.HAL_JSON));
+		JsonNode body = rest.exchange("/orders/totals", HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class)
+				.getBody();
+		assertThat(body.path("reconciledAt").isMissingNode()).isFalse();
+
+		Map<String, JsonNode> byStatus = new HashMap<>();
+		body.path("totals").forEach(total -> {
+			if (total.path("currency").asText().equals(currency)) {
+				byStatus.put(total.path("status").asText(), total);
+			}
+		});
+		return new ObjectMapper().valueToTree(byStatus);
+	}
+}
@@ -0,0 +1,122 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * An order the database rejects is dead-lettered on its own, and neither holds up
+ * the orders queued with it nor the writer. Orders the database can't take right now
+ * are still committed on shutdown, even from a full queue.
+ */
+@SpringBootTest(properties = { "finance.orders.write-behind.enabled=true",
+		"finance.orders.write-behind.queue-capacity=50", "finance.orders.write-behind.id-block-size=1000",
+		"spring.datasource.hikari.maximum-pool-size=4", "spring.datasource.hikari.connection-timeout=250" })
+class OrderWriteBehindTest {
+
+	@Autowired
+	private OrderWriteBehind writeBehind;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	void deadLettersOrdersTheDatabaseRejects() throws Exception {
+
+		List<Long> ids = new ArrayList<>();
+		Long rejected = null;
+		for (int i = 0; i < 20; i++) {
+			Order order = new Order("queued " + i, Status.IN_PROGRESS);
+			if (i == 13) {
+				// Its employee was deleted after the order was accepted.
+				order.setEmployeeId(999_999L);
+			}
+			Long id = writeBehind.enqueue(order).get().getId();
+			if (i == 13) {
+				rejected = id;
+			} else {
+				ids.add(id);
+			}
+		}
+		Long later = writeBehind.enqueue(new Order("queued later", Status.IN_PROGRESS)).get().getId();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (writeBehind.findPending(later).isPresent() || writeBehind.findPending(rejected).isPresent()) {
+			assertThat(System.currentTimeMillis()).as("time the queue took to drain").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+
+		assertThat(orderRepository.findAllById(ids)).hasSize(ids.size());
+		assertThat(orderRepository.findById(later)).isPresent();
+		assertThat(orderRepository.findById(rejected)).isEmpty();
+		assertThat(new JdbcTemplate(dataSource).queryForObject(
+				"SELECT error FROM order_dead_letter WHERE id = ? AND employee_id = 999999", String.class, rejected))
+						.isNotEmpty();
+	}
+
+	@Test
+	@DirtiesContext
+	void commitsTheBatchItWasRetryingOnShutdown() throws Exception {
+
+		// Reserves a block of ids while the database can still be asked.
+		Long first = writeBehind.enqueue(new Order("committed", Status.IN_PROGRESS)).get().getId();
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (writeBehind.findPending(first).isPresent()) {
+			assertThat(System.currentTimeMillis()).as("time until it was committed").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+
+		List<Long> accepted = new ArrayList<>();
+		List<Connection> held = new ArrayList<>();
+		try {
+			// The pool has nothing left for the writer.
+			for (int i = 0; i < 4; i++) {
+				held.add(dataSource.getConnection());
+			}
+
+			// Failed commits are timed too: once one is, the writer is waiting to retry.
+			Timer commits = meterRegistry.get("orders.write-behind.commit").timer();
+			long attempts = commits.count();
+			accepted.add(writeBehind.enqueue(new Order("retried", Status.IN_PROGRESS)).get().getId());
+			deadline = System.currentTimeMillis() + 10_000;
+			while (commits.count() == attempts) {
+				assertThat(System.currentTimeMillis()).as("time until the writer failed").isLessThan(deadline);
+				Thread.sleep(10);
+			}
+
+			Optional<Order> order;
+			while ((order = writeBehind.enqueue(new Order("queued behind", Status.IN_PROGRESS))).isPresent()) {
+				accepted.add(order.get().getId());
+			}
+		} finally {
+			for (Connection connection : held) {
+				connection.close();
+			}
+		}
+
+		writeBehind.stop();
+
+		assertThat(accepted).hasSize(51);
+		assertThat(orderRepository.findAllById(accepted)).hasSize(accepted.size());
+	}
+}
@@ -0,0 +1,97 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.server.core.DelegatingLinkRelationProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Wall-clock time to render a large HAL order collection sequentially versus in
+ * parallel chunks on 1, 2, 4 and 8 worker threads, and a check that every variant
+ * produces exactly the same bytes.
+ *
+ * The speedup is bounded by the cores the JVM actually gets (printed first). Not
+ * picked up by the default surefire includes; run it with
+ * `./mvnw test -Dtest=ParallelRenderingBenchmark`.
+ */
+@SpringBootTest
+class ParallelRenderingBenchmark {
+
+	private static final int ORDERS = 20_000;
+	private static final int ROUNDS = 10;
+
+	@Autowired
+	HalRenderer halRenderer;
+
+	@Autowired
+	DelegatingLinkRelationProvider relProvider;
+
+	@Autowired
+	OrderModelAssembler assembler;
+
+	private final List<Order> orders = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+		for (long i = 0; i < ORDERS; i++) {
+			Order order = new Order("order " + i, i % 3 == 0 ? Status.IN_PROGRESS : Status.COMPLETED);
+			order.setId(i + 1);
+			orders.add(order);
+		}
+	}
+
+	@AfterEach
+	void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void sequentialVersusParallel() {
+
+		System.out.printf("%d available processors, %,d orders%n",
+				ManagementFactory.getOperatingSystemMXBean().getAvailableProcessors(), ORDERS);
+
+		Link self = linkTo(methodOn(OrderController.class).all()).withSelfRel();
+		byte[] expected = measure("sequential", new ParallelHalRenderer(halRenderer, relProvider, false, 0, 0, 1), self);
+
+		for (int threads : new int[] { 1, 2, 4, 8 }) {
+			ParallelHalRenderer renderer = new ParallelHalRenderer(halRenderer, relProvider, true, 0, 500, threads);
+			try {
+				assertThat(measure("parallel x" + threads, renderer, self)).isEqualTo(expected);
+			} finally {
+				renderer.shutdown();
+			}
+		}
+	}
+
+	private byte[] measure(String mode, ParallelHalRenderer renderer, Link self) {
+
+		byte[] document = null;
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			document = renderer.render(orders, assembler::toModel, Order.class, self);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		System.out.printf("%-13s %,8d us %,12d bytes%n", mode, TimeUnit.NANOSECONDS.toMicros(best), document.length);
+		return document;
+	}
+}
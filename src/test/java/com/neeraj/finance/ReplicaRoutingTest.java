@@ -0,0 +1,171 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Scans read from the replica, which only has what the ReplicaSync has copied to it,
+ * except for the client that wrote what it hasn't copied yet. The sync round is only
+ * run by the test (after the first one at startup).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, //
+		properties = { "finance.replica.enabled=true", "finance.replica.interval-ms=3600000" })
+class ReplicaRoutingTest {
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private ReplicaSync replicaSync;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private SingleFlight<String, byte[]> orderReads;
+
+	@LocalServerPort
+	private int port;
+
+	@Test
+	void readsItsOwnWritesUntilTheReplicaHasThem() {
+
+		replicaSync.sync();
+
+		ResponseEntity<JsonNode> created = rest.postForEntity("/orders",
+				Collections.singletonMap("description", "Palantir"), JsonNode.class);
+		assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		long id = created.getBody().get("id").asLong();
+
+		String cookie = created.getHeaders().getFirst(HttpHeaders.SET_COOKIE);
+		assertThat(cookie).startsWith(ReadYourWritesFilter.COOKIE + "=");
+		cookie = cookie.substring(0, cookie.indexOf(';'));
+
+		// Everyone else reads the replica, which hasn't got it yet.
+		assertThat(ids(get("/orders", null))).doesNotContain(id);
+		assertThat(ids(get("/orders", cookie))).contains(id);
+
+		// Single orders always come from the primary.
+		assertThat(get("/orders/" + id, null).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		double replicaReads = meterRegistry.get("replica.reads").tag("target", "replica").counter().count();
+
+		replicaSync.sync();
+		assertThat(meterRegistry.get("replica.lag.changes").gauge().value()).isGreaterThanOrEqualTo(1);
+
+		assertThat(ids(get("/orders", null))).contains(id);
+		assertThat(ids(get("/orders", cookie))).contains(id);
+		assertThat(meterRegistry.get("replica.reads").tag("target", "replica").counter().count())
+				.isEqualTo(replicaReads + 2);
+	}
+
+	@Test
+	void doesNotShareAReplicaLoadWithAClientThatMustReadItsWrite() throws Exception {
+
+		replicaSync.sync();
+
+		ResponseEntity<JsonNode> created = rest.postForEntity("/orders",
+				Collections.singletonMap("description", "Seeing stone"), JsonNode.class);
+		long id = created.getBody().get("id").asLong();
+		String cookie = created.getHeaders().getFirst(HttpHeaders.SET_COOKIE);
+		cookie = cookie.substring(0, cookie.indexOf(';'));
+
+		// After the write, a client without the cookie starts a slow scan of the
+		// replica, which hasn't got the order yet.
+		CountDownLatch release = new CountDownLatch(1);
+		String key = "hal:all:http://localhost:" + port;
+		CompletableFuture<byte[]> scan = CompletableFuture.supplyAsync(() -> orderReads.load(key, () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "{}".getBytes(StandardCharsets.UTF_8);
+		}));
+		Counter shared = meterRegistry.get("orders.reads.coalescing").tag("outcome", "shared").counter();
+		double sharedBefore = shared.count();
+
+		try {
+			// Another client without the cookie joins it, the one that wrote doesn't.
+			CompletableFuture<ResponseEntity<JsonNode>> joined = CompletableFuture.supplyAsync(() -> get("/orders", null));
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (shared.count() == sharedBefore) {
+				assertThat(System.currentTimeMillis()).as("time until the other client joined").isLessThan(deadline);
+				Thread.sleep(10);
+			}
+			String writer = cookie;
+			assertThat(ids(CompletableFuture.supplyAsync(() -> get("/orders", writer)).get(10, TimeUnit.SECONDS)))
+					.contains(id);
+
+			release.countDown();
+			assertThat(ids(joined.get(10, TimeUnit.SECONDS))).isEmpty();
+		} finally {
+			release.countDown();
+			scan.get(10, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	void copiesEmployeesForEmbeddedScans() throws SQLException {
+
+		replicaSync.sync();
+
+		JsonNode orders = get("/orders?embed=employee", null).getBody();
+		List<String> employees = new ArrayList<>();
+		orders.path("_embedded").path("orderList")
+				.forEach(order -> employees.add(order.path("_embedded").path("employee").path("firstName").asText()));
+		assertThat(employees).contains("Bilbo", "Frodo");
+
+		assertThat(new JdbcTemplate(dataSource.unwrap(ReplicaRoutingDataSource.class).replica()).queryForObject("SELECT COUNT(*) FROM employee", Long.class))
+				.isGreaterThanOrEqualTo(2);
+	}
+
+	private ResponseEntity<JsonNode> get(String path, String cookie) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(MediaTypes.HAL_JSON));
+		if (cookie != null) {
+			headers.add(HttpHeaders.COOKIE, cookie);
+		}
+		return rest.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+	}
+
+	private static List<Long> ids(ResponseEntity<JsonNode> response) {
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		List<Long> ids = new ArrayList<>();
+		response.getBody().path("_embedded").path("orderList").forEach(order -> ids.add(order.get("id").asLong()));
+		return ids;
+	}
+}
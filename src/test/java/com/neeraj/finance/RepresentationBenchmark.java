@@ -0,0 +1,72 @@
+package com.neeraj.finance;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Per-request CPU time and payload size of application/hal+json versus the plain
+ * application/json fast path on the order endpoints.
+ *
+ * MockMvc runs each request on the calling thread, so the thread's CPU time covers
+ * the whole controller, assembler and serialization cost. Not picked up by the
+ * default surefire includes; run it with `./mvnw test -Dtest=RepresentationBenchmark`.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class RepresentationBenchmark {
+
+	private static final int ORDERS = 1_000;
+	private static final int WARMUP = 200;
+	private static final int REQUESTS = 1_000;
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	OrderRepository orderRepository;
+
+	@Test
+	void halVersusPlainJson() throws Exception {
+
+		List<Order> orders = new ArrayList<>();
+		for (int i = 0; i < ORDERS; i++) {
+			orders.add(new Order("order " + i, i % 2 == 0 ? Status.IN_PROGRESS : Status.COMPLETED));
+		}
+		Long id = orderRepository.saveAll(orders).get(0).getId();
+
+		for (MediaType mediaType : new MediaType[] { MediaTypes.HAL_JSON, MediaType.APPLICATION_JSON }) {
+			measure("GET /orders/{id}", "/orders/" + id, mediaType, REQUESTS);
+			measure("GET /orders", "/orders", mediaType, REQUESTS / 10);
+		}
+	}
+
+	private void measure(String endpoint, String uri, MediaType mediaType, int requests) throws Exception {
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		for (int i = 0; i < WARMUP; i++) {
+			mvc.perform(get(uri).accept(mediaType));
+		}
+
+		long bytes = 0;
+		long cpuStart = threads.getCurrentThreadCpuTime();
+		for (int i = 0; i < requests; i++) {
+			bytes = mvc.perform(get(uri).accept(mediaType)).andReturn().getResponse().getContentAsByteArray().length;
+		}
+		long cpuPerRequest = (threads.getCurrentThreadCpuTime() - cpuStart) / requests;
+
+		System.out.printf("%-18s %-22s %,10d ns cpu/request %,10d bytes%n", endpoint, mediaType, cpuPerRequest, bytes);
+	}
+}
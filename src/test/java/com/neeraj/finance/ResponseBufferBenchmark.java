@@ -0,0 +1,144 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Sustained load on representation-model endpoints with and without
+ * `finance.http.pooled-buffers.enabled`, comparing how much the server allocates.
+ *
+ * `CLIENTS` keep requesting one order's history (`TRANSITIONS` entries, ~20 KB), then
+ * the activity metrics (a few hundred bytes), for `SECONDS` each. Allocation is the sum of
+ * ThreadMXBean's allocated bytes over Tomcat's request threads, so the clients, which
+ * run in the same JVM, are left out; the GC counts are for the whole JVM. Not picked up
+ * by the default surefire includes; run it with
+ * `./mvnw test -Dtest=ResponseBufferBenchmark`.
+ */
+class ResponseBufferBenchmark {
+
+	private static final int TRANSITIONS = 200;
+	private static final int CLIENTS = 8;
+	private static final int WARMUP_SECONDS = 5;
+	private static final int SECONDS = 15;
+
+	@Test
+	void sustainedLoad() throws Exception {
+
+		for (boolean pooled : new boolean[] { false, true }) {
+
+			ConfigurableApplicationContext context = new SpringApplicationBuilder(FinanceApplication.class) //
+					.run("--server.port=0", "--finance.http.pooled-buffers.enabled=" + pooled);
+			try {
+				String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+				Long id = context.getBean(OrderRepository.class).save(new Order("audited", Status.IN_PROGRESS)).getId();
+				OrderHistory history = context.getBean(OrderHistory.class);
+				for (int i = 0; i < TRANSITIONS; i++) {
+					history.record(id, Status.IN_PROGRESS, Status.IN_PROGRESS);
+				}
+
+				String[] urls = { baseUrl + "/orders/" + id + "/history", baseUrl + "/orders/metrics" };
+
+				for (String url : urls) {
+
+					load(url, WARMUP_SECONDS);
+
+					long allocatedBefore = serverAllocatedBytes();
+					long[] gcBefore = gc();
+					long requests = load(url, SECONDS);
+					long allocated = serverAllocatedBytes() - allocatedBefore;
+					long[] gcAfter = gc();
+
+					System.out.printf(
+							"pooled %-5s %-20s %,7d req/s  %,9d bytes allocated/request  %,7.1f MB/s  %,4d GCs  %,5d ms in GC%n",
+							pooled, url.substring(baseUrl.length()).replace(id.toString(), "{id}"), requests / SECONDS,
+							allocated / requests, allocated / (1024.0 * 1024.0) / SECONDS, gcAfter[0] - gcBefore[0],
+							gcAfter[1] - gcBefore[1]);
+				}
+			} finally {
+				context.close();
+			}
+		}
+	}
+
+	private static long load(String url, int seconds) throws Exception {
+
+		long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		AtomicLong requests = new AtomicLong();
+
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		try {
+			List<Future<?>> running = new ArrayList<>(CLIENTS);
+			for (int client = 0; client < CLIENTS; client++) {
+				running.add(clients.submit(() -> {
+					while (System.nanoTime() < until) {
+						get(url);
+						requests.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+			for (Future<?> client : running) {
+				client.get();
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+
+		return requests.get();
+	}
+
+	private static long serverAllocatedBytes() {
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+
+		long[] ids = Arrays.stream(threads.getThreadInfo(threads.getAllThreadIds())) //
+				.filter(thread -> thread != null && thread.getThreadName().startsWith("http-nio-")) //
+				.mapToLong(ThreadInfo::getThreadId) //
+				.toArray();
+
+		return Arrays.stream(threads.getThreadAllocatedBytes(ids)).filter(bytes -> bytes > 0).sum();
+	}
+
+	private static long[] gc() {
+
+		long[] totals = new long[2];
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			totals[0] += collector.getCollectionCount();
+			totals[1] += collector.getCollectionTime();
+		}
+		return totals;
+	}
+
+	private static void get(String url) throws IOException {
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestProperty("Accept", "application/hal+json");
+		if (connection.getResponseCode() != 200) {
+			throw new IllegalStateException(url + " answered " + connection.getResponseCode());
+		}
+		try (InputStream in = connection.getInputStream()) {
+			byte[] buffer = new byte[8192];
+			while (in.read(buffer) >= 0) {
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.neeraj.finance;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Table size and scan time of CUSTOMER_ORDER in the old layout, after
+ * OrderSchemaMigration, and with the status narrowed further to a TINYINT, on
+ * the same rows.
+ *
+ * Runs the migration itself on a throwaway H2 file database in `target/` rather than
+ * in the application context. Defaults to 1M rows; pass `-Dbenchmark.rows=10000000`
+ * for the full-size run (about 2GB of disk and several minutes). Not picked up by
+ * the default surefire includes; run it with `./mvnw test -Dtest=StatusColumnBenchmark`.
+ */
+class StatusColumnBenchmark {
+
+	private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+	private static final Path DATABASE = Paths.get("target", "status-codes.mv.db");
+
+	@Test
+	void legacyVersusCompactLayout() throws SQLException, IOException {
+
+		// A file database, so DISK_SPACE_USED has something to measure.
+		Files.deleteIfExists(DATABASE);
+
+		try (Connection connection = DriverManager.getConnection("jdbc:h2:file:./target/status-codes");
+				Statement statement = connection.createStatement()) {
+
+			// The table as Hibernate used to generate it.
+			statement.execute("CREATE TABLE customer_order (id BIGINT NOT NULL, created_at TIMESTAMP, "
+					+ "description VARCHAR(255), status INTEGER, updated_at TIMESTAMP, PRIMARY KEY (id))");
+			statement.execute("INSERT INTO customer_order SELECT x, CURRENT_TIMESTAMP, 'order ' || x, "
+					+ "MOD(x, 3), CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, " + ROWS + ")");
+			// The kind of index the archive job's `WHERE status IN (...)` benefits from.
+			statement.execute("CREATE INDEX customer_order_status ON customer_order (status)");
+
+			report("legacy", statement);
+
+			OrderSchemaMigration.migrate(new JdbcTemplate(new SingleConnectionDataSource(connection, true)),
+					"CUSTOMER_ORDER");
+			report("migrated", statement);
+
+			statement.execute("ALTER TABLE customer_order ALTER COLUMN status TINYINT NOT NULL");
+			report("status TINYINT", statement);
+		}
+	}
+
+	private static void report(String layout, Statement statement) throws SQLException {
+
+		long bytes = single(statement, "CALL DISK_SPACE_USED('CUSTOMER_ORDER')");
+
+		// Best of three, so the first pass can warm up the caches. The sum makes H2
+		// read every row instead of answering from an index, and the changing bound
+		// keeps it from reusing the previous result.
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			single(statement, "SELECT SUM(status) FROM customer_order WHERE id > " + -i + " AND description IS NOT NULL");
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		System.out.printf("%-16s %,10d rows %,14d bytes %,10d ms scan%n", layout, ROWS, bytes,
+				TimeUnit.NANOSECONDS.toMillis(best));
+	}
+
+	private static long single(Statement statement, String sql) throws SQLException {
+
+		try (ResultSet rs = statement.executeQuery(sql)) {
+			rs.next();
+			return rs.getLong(1);
+		}
+	}
+}
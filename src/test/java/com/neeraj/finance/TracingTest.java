@@ -0,0 +1,165 @@
+package com.neeraj.finance;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A sampled request is traced through the repository, its JDBC statements, the
+ * assembler and the serializer, and the trace is taken over from the caller and
+ * passed on. New traces are never sampled here, only those a caller asks for.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = { "finance.tracing.enabled=true", "finance.tracing.sample-rate=0" })
+class TracingTest {
+
+	private static final String CALLER_SPAN = "00f067aa0ba902b7";
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private Tracer tracer;
+
+	@Autowired
+	private InMemorySpanExporter exporter;
+
+	@Autowired
+	private RestTemplateBuilder restTemplateBuilder;
+
+	@LocalServerPort
+	private int port;
+
+	@Test
+	void tracesTheStagesOfASampledRequest() {
+
+		long id = newOrder();
+		String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+		ResponseEntity<JsonNode> response = get("/orders/" + id, "00-" + traceId + "-" + CALLER_SPAN + "-01");
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getFirst(TracingFilter.TRACERESPONSE)).startsWith("00-" + traceId + "-")
+				.endsWith("-01");
+
+		List<Span> spans = awaitTrace(traceId, "GET /orders/{id}");
+
+		Span root = find(spans, "GET /orders/{id}");
+		assertThat(root.getParentSpanId()).isEqualTo(CALLER_SPAN);
+		assertThat(root.getAttributes()).containsEntry("http.status_code", 200);
+
+		Span repository = find(spans, "OrderRepository.findInAnyPartition");
+		assertThat(repository.getParentSpanId()).isEqualTo(root.getSpanId());
+		assertThat(repository.getAttributes()).containsEntry("rows", 1);
+
+		assertThat(spans).anySatisfy(span -> {
+			assertThat(span.getName()).startsWith("jdbc execute");
+			assertThat(span.getParentSpanId()).isEqualTo(repository.getSpanId());
+			assertThat((String) span.getAttributes().get("db.statement")).containsIgnoringCase("customer_order");
+		});
+		assertThat(find(spans, "assemble Order").getAttributes()).containsEntry("order.id", id);
+		assertThat(find(spans, "serialize hal").getParentSpanId()).isEqualTo(root.getSpanId());
+		assertThat(spans).allSatisfy(span -> assertThat(span.getDurationMicros()).isNotNegative());
+	}
+
+	@Test
+	void recordsNothingOfUnsampledTraces() {
+
+		long id = newOrder();
+		String traceId = "0af7651916cd43dd8448eb211c80319c";
+
+		ResponseEntity<JsonNode> response = get("/orders/" + id, "00-" + traceId + "-" + CALLER_SPAN + "-00");
+		assertThat(response.getHeaders().getFirst(TracingFilter.TRACERESPONSE)).startsWith("00-" + traceId + "-")
+				.endsWith("-00");
+
+		// A new trace, not sampled at a rate of 0.
+		String started = get("/orders/" + id, "not a traceparent").getHeaders().getFirst(TracingFilter.TRACERESPONSE);
+		assertThat(Tracer.parse(started)).isNotNull();
+
+		tracer.flush();
+		assertThat(exporter.trace(traceId)).isEmpty();
+		assertThat(exporter.trace(Tracer.parse(started)[0])).isEmpty();
+	}
+
+	@Test
+	void passesTheTraceOnToOutgoingRequests() {
+
+		long id = newOrder();
+		String traceId = "5c3e1a2b4d6f8091a2b3c4d5e6f70819";
+
+		String clientSpan;
+		try (Span span = tracer.startRequest("client", "00-" + traceId + "-" + CALLER_SPAN + "-01", null)) {
+			clientSpan = span.getSpanId();
+			restTemplateBuilder.rootUri("http://localhost:" + port).build().getForObject("/orders/" + id, String.class);
+		}
+
+		List<Span> spans = awaitTrace(traceId, "GET /orders/{id}");
+		assertThat(find(spans, "client").getParentSpanId()).isEqualTo(CALLER_SPAN);
+		assertThat(find(spans, "GET /orders/{id}").getParentSpanId()).isEqualTo(clientSpan);
+		assertThat(Tracing.current()).isNull();
+	}
+
+	@Test
+	void parsesOnlyValidTraceParents() {
+
+		assertThat(Tracer.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"))
+				.containsExactly("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7", "01");
+		// Later versions may add fields.
+		assertThat(Tracer.parse("01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra")).isNotNull();
+
+		assertThat(Tracer.parse(null)).isNull();
+		assertThat(Tracer.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra")).isNull();
+		assertThat(Tracer.parse("ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01")).isNull();
+		assertThat(Tracer.parse("00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01")).isNull();
+		assertThat(Tracer.parse("00-00000000000000000000000000000000-00f067aa0ba902b7-01")).isNull();
+		assertThat(Tracer.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01")).isNull();
+	}
+
+	private long newOrder() {
+		return rest.postForObject("/orders", Collections.singletonMap("description", "Horn of Gondor"),
+				JsonNode.class).get("id").asLong();
+	}
+
+	private ResponseEntity<JsonNode> get(String path, String traceParent) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(MediaTypes.HAL_JSON));
+		headers.set(Tracing.TRACEPARENT, traceParent);
+		return rest.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+	}
+
+	// The root span of a request closes just after its response has gone out.
+	private List<Span> awaitTrace(String traceId, String name) {
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (true) {
+			tracer.flush();
+			List<Span> spans = exporter.trace(traceId);
+			if (spans.stream().anyMatch(span -> span.getName().equals(name)) || System.currentTimeMillis() > deadline) {
+				return spans;
+			}
+			Thread.yield();
+		}
+	}
+
+	private static Span find(List<Span> spans, String name) {
+
+		return spans.stream().filter(span -> span.getName().equals(name)).findFirst()
+				.orElseThrow(() -> new AssertionError("No span " + name + " in " + spans));
+	}
+}